@@ -1,6 +1,16 @@
 package com.pharmacy.config;
 
+import java.util.Map;
+import java.util.List;
+import java.sql.Date;
+import java.time.LocalDate;
+
 import jakarta.annotation.PostConstruct;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Equipment;
+import com.pharmacy.services.servicesImplementation.ProductNameIndex;
+import com.pharmacy.services.servicesImplementation.ProductSearchIndex;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Component;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +22,12 @@ public class DataInitializer {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductNameIndex productNameIndex;
+
     @PostConstruct
     public void init() {
         // Check and insert suppliers if no suppliers exist
@@ -59,6 +75,31 @@ public class DataInitializer {
             insertIfNotExistsEquipment(11, "1 year", "2023-12-31");
             insertIfNotExistsEquipment(12, "2 years", "2023-12-31");
         }
+
+        // Fill in the natural keys of products stored without one
+        backfillNaturalKeys();
+
+        // Bring the product inventory read model in line with the products table
+        syncProductInventory();
+
+        // Recount the products of every supplier
+        syncSupplierProductCounts();
+
+        // Rebuild the set of products below their reorder threshold
+        syncLowStockProducts();
+
+        // Recount the stock valuation of every supplier and product type
+        syncInventoryValuation();
+
+        // Add the products the search index does not have yet
+        productSearchIndex.indexMissing();
+
+        // Load the product names for autocomplete
+        productNameIndex.load();
+
+        // Move the id sequences past the ids already in use
+        restartSequence("products_seq", "products");
+        restartSequence("suppliers_seq", "suppliers");
     }
 
     // Helper method to check if suppliers exist
@@ -115,4 +156,94 @@ public class DataInitializer {
                 "WHERE NOT EXISTS (SELECT 1 FROM equipments WHERE id = ?)";
         jdbcTemplate.update(sql, id, warranty, purchaseDate, id);
     }
-}
\ No newline at end of file
+
+    // Helper method to add missing products to the product inventory, refresh the
+    // rows that drifted from their product and remove the rows of products that
+    // no longer exist
+    private void syncProductInventory() {
+        jdbcTemplate.update("DELETE FROM product_inventory i " +
+                "WHERE NOT EXISTS (SELECT 1 FROM products p WHERE p.id = i.id)");
+
+        String sql = "MERGE INTO product_inventory i USING (" +
+                "SELECT p.id, p.name, p.product_type, p.quantity, CAST(p.price AS DECIMAL(10, 2)) AS price, " +
+                "p.supplier_id, s.name AS supplier_name FROM products p JOIN suppliers s ON s.id = p.supplier_id) p " +
+                "ON i.id = p.id " +
+                "WHEN MATCHED AND (i.name <> p.name OR i.quantity <> p.quantity OR i.price <> p.price " +
+                "OR i.supplier_id <> p.supplier_id OR i.supplier_name <> p.supplier_name) THEN UPDATE SET " +
+                "name = p.name, quantity = p.quantity, price = p.price, supplier_id = p.supplier_id, " +
+                "supplier_name = p.supplier_name " +
+                "WHEN NOT MATCHED THEN INSERT (id, name, product_type, quantity, price, supplier_id, supplier_name) " +
+                "VALUES (p.id, p.name, p.product_type, p.quantity, p.price, p.supplier_id, p.supplier_name)";
+        jdbcTemplate.update(sql);
+    }
+
+    // Helper method to set the product count of every supplier from the products
+    // table, covering products inserted over JDBC and rows of older databases
+    private void syncSupplierProductCounts() {
+        jdbcTemplate.update("UPDATE suppliers s SET product_count = " +
+                "(SELECT COUNT(*) FROM products p WHERE p.supplier_id = s.id)");
+    }
+
+    // Helper method to fill the low stock set from the stored quantities and the
+    // movements not compacted yet, covering products inserted over JDBC and rows
+    // of older databases
+    private void syncLowStockProducts() {
+        String lowStock = "SELECT p.id FROM products p WHERE p.reorder_threshold > 0 AND p.quantity + " +
+                "COALESCE((SELECT SUM(m.delta) FROM stock_movements m " +
+                "WHERE m.compacted = FALSE AND m.product_id = p.id), 0) < p.reorder_threshold";
+        jdbcTemplate.update("DELETE FROM low_stock_products WHERE product_id NOT IN (" + lowStock + ")");
+        jdbcTemplate.update("INSERT INTO low_stock_products (product_id) " + lowStock +
+                " AND NOT EXISTS (SELECT 1 FROM low_stock_products l WHERE l.product_id = p.id)");
+    }
+
+    // Helper method to recount the valuation totals from the products table
+    private void syncInventoryValuation() {
+        jdbcTemplate.update("DELETE FROM inventory_valuation");
+        jdbcTemplate.update("INSERT INTO inventory_valuation " +
+                "SELECT supplier_id, product_type, COUNT(*), SUM(quantity), " +
+                "SUM(quantity * CAST(price AS DECIMAL(10, 2))) FROM products GROUP BY supplier_id, product_type");
+    }
+
+    // Helper method to give products inserted over JDBC or before the natural key
+    // existed their key. If older rows are duplicates of each other only the first
+    // one gets the key, the others keep working but are not protected by it
+    private void backfillNaturalKeys() {
+        String sql = "SELECT p.id, p.product_type, p.name, p.supplier_id, m.manufacturer, m.expiry_date, " +
+                "e.purchase_date, e.warranty FROM products p " +
+                "LEFT JOIN medicines m ON m.id = p.id LEFT JOIN equipments e ON e.id = p.id " +
+                "WHERE p.natural_key IS NULL ORDER BY p.id";
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql);
+
+        for (Map<String, Object> row : rows) {
+            String name = (String) row.get("NAME");
+            int supplierId = (Integer) row.get("SUPPLIER_ID");
+            String naturalKey = "Medicine".equals(row.get("PRODUCT_TYPE"))
+                    ? Medicine.naturalKey(name, supplierId, (String) row.get("MANUFACTURER"),
+                            toLocalDate(row.get("EXPIRY_DATE")))
+                    : Equipment.naturalKey(name, supplierId, toLocalDate(row.get("PURCHASE_DATE")),
+                            (String) row.get("WARRANTY"));
+
+            try {
+                jdbcTemplate.update("UPDATE products SET natural_key = ? WHERE id = ?", naturalKey, row.get("ID"));
+            } catch (DuplicateKeyException e) {
+                // An earlier product already has this key
+            }
+        }
+    }
+
+    // Helper method to read a DATE column value as a LocalDate
+    private static LocalDate toLocalDate(Object date) {
+        if (date instanceof Date sqlDate) {
+            return sqlDate.toLocalDate();
+        }
+        return (LocalDate) date;
+    }
+
+    // Helper method to restart an id sequence above the highest id of a table.
+    // Hibernate hands out the 50 ids up to each value it reads from the sequence,
+    // so the sequence starts a full block above the highest id
+    private void restartSequence(String sequence, String table) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (maxId + 51));
+    }
+}
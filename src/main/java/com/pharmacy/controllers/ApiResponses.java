@@ -0,0 +1,51 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+// Helpers shared by the JSON API controllers. The ETag of a product or supplier
+// is its version in quotes, so an If-Match header tells which version an update
+// was made from.
+final class ApiResponses {
+    private ApiResponses() {
+    }
+
+    // Answer with an entity and its version as the ETag
+    static ResponseEntity<Object> versioned(Object body, int version) {
+        return ResponseEntity.ok().eTag(eTag(version)).body(body);
+    }
+
+    // Answer with the given status and an {"error": ...} body
+    static ResponseEntity<Object> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(Map.of("error", String.valueOf(message)));
+    }
+
+    static String eTag(int version) {
+        return "\"" + version + "\"";
+    }
+
+    // Read the version from an If-Match header, or null if the header is missing
+    // or does not hold one of our ETags
+    static Integer ifMatchVersion(String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+
+        if (value.length() < 3 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return null;
+        }
+
+        try {
+            return Integer.valueOf(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.pharmacy.controllers;
+
+import com.pharmacy.models.DashboardSummary;
+import com.pharmacy.models.InventoryValuation;
+import com.pharmacy.services.ProductService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.beans.factory.annotation.Autowired;
+
+@Controller
+@RequestMapping("/api/dashboard")
+public class DashboardApiController {
+    @Autowired
+    private ProductService productService;
+
+    // Get the counters shown on the homepage
+    @GetMapping
+    public ResponseEntity<DashboardSummary> getSummary() {
+        return ResponseEntity.ok(productService.getDashboardSummary());
+    }
+
+    // Get the value of the stock in total, per supplier and per product type
+    @GetMapping("/valuation")
+    public ResponseEntity<InventoryValuation> getValuation() {
+        return ResponseEntity.ok(productService.getInventoryValuation());
+    }
+}
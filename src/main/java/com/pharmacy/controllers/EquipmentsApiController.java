@@ -0,0 +1,123 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+
+import com.pharmacy.models.ListQuery;
+import com.pharmacy.models.Equipment;
+import com.pharmacy.models.EquipmentPatch;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.EquipmentService;
+import com.pharmacy.services.ListingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pharmacy.services.SupplierService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Controller
+@RequestMapping("/api/equipments")
+public class EquipmentsApiController {
+    @Autowired
+    private EquipmentService equipmentService;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Get a page of the equipments, filtered by name prefix, supplier or purchase
+    // date
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> listEquipments(@RequestParam Map<String, String> parameters) {
+        return ListingResponseWriter.write(objectMapper,
+                () -> listingService.listEquipments(ListQuery.fromParameters(parameters)));
+    }
+
+    // Get an equipment with its version as the ETag
+    @GetMapping("/{id}")
+    public ResponseEntity<Object> getEquipment(@PathVariable("id") int id) {
+        Equipment equipment = equipmentService.getEquipmentById(id);
+
+        if (equipment == null) {
+            return ApiResponses.error(HttpStatus.NOT_FOUND, "The equipment does not exist");
+        }
+
+        return ApiResponses.versioned(equipment, equipment.getVersion());
+    }
+
+    // Update an equipment if it still has the version given in the If-Match header
+    @PutMapping("/{id}")
+    public ResponseEntity<Object> updateEquipment(@PathVariable("id") int id,
+            @RequestHeader(name = "If-Match", required = false) String ifMatch, @RequestBody Equipment equipment) {
+        Integer version = ApiResponses.ifMatchVersion(ifMatch);
+
+        if (version == null) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_REQUIRED,
+                    "The If-Match header must hold the ETag of the equipment");
+        }
+
+        equipment.setId(id);
+        equipment.setVersion(version);
+
+        // The body only names the supplier by id, load the supplier it refers to
+        if (equipment.getSupplier() != null) {
+            equipment.setSupplier(supplierService.getSupplierById(equipment.getSupplier().getId()));
+        }
+
+        try {
+            Equipment updated = equipmentService.updateEquipment(equipment);
+            return ApiResponses.versioned(updated, updated.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        } catch (RuntimeException e) {
+            return ApiResponses.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Change only the fields sent in the body, if the equipment still has the version
+    // given in the If-Match header
+    @PatchMapping("/{id}")
+    public ResponseEntity<Object> patchEquipment(@PathVariable("id") int id,
+            @RequestHeader(name = "If-Match", required = false) String ifMatch, @RequestBody EquipmentPatch patch) {
+        Integer version = ApiResponses.ifMatchVersion(ifMatch);
+
+        if (version == null) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_REQUIRED,
+                    "The If-Match header must hold the ETag of the equipment");
+        }
+
+        // The patch only names the supplier by id, load the supplier it refers to
+        if (patch.getSupplier() != null) {
+            Supplier supplier = supplierService.getSupplierById(patch.getSupplier().getId());
+
+            if (supplier == null) {
+                return ApiResponses.error(HttpStatus.BAD_REQUEST, "The supplier does not exist");
+            }
+            patch.setSupplier(supplier);
+        }
+
+        try {
+            Equipment patched = equipmentService.patchEquipment(id, version, patch);
+            return ApiResponses.versioned(patched, patched.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        } catch (RuntimeException e) {
+            return ApiResponses.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
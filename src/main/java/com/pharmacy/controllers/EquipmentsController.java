@@ -1,17 +1,26 @@
 package com.pharmacy.controllers;
 
+import java.io.IOException;
+
+import jakarta.servlet.http.HttpServletResponse;
+
 import org.springframework.ui.Model;
 import com.pharmacy.models.Equipment;
+import com.pharmacy.models.KeysetPage;
 import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.ProductImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pharmacy.services.EquipmentService;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Controller
@@ -22,19 +31,46 @@ public class EquipmentsController {
     @Autowired
     private SupplierService supplierService;
 
-    // Get all equipments
+    @Autowired
+    private ModelLoader modelLoader;
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Get a page of equipments
     @GetMapping("/equipments")
-    public String homepage(Model model) {
+    public String homepage(@RequestParam(name = "after", required = false) Integer after,
+            @RequestParam(name = "before", required = false) Integer before,
+            @RequestParam(name = "size", defaultValue = "20") int size, Model model) {
 
-        // Get all the equipments from the database
-        model.addAttribute("equipments", equipmentService.getAllEquipments());
+        // Get a page of equipments, the total number of equipments and all the
+        // suppliers from the database at the same time
+        ModelLoader.Loads loads = modelLoader.into(model);
+        ModelLoader.Load<KeysetPage<Equipment>> page = loads.load("page",
+                () -> equipmentService.getEquipmentsPage(after, before, size));
+        loads.add("equipmentCount", () -> equipmentService.countEquipments())
+                .add("suppliers", () -> supplierService.getAllSuppliers())
+                .await();
 
-        // Get all the suppliers from the database
-        model.addAttribute("suppliers", supplierService.getAllSuppliers());
+        model.addAttribute("equipments", page.get().getContent());
 
         return "equipments"; // This will return the equipments.html template
     }
 
+    // Search equipments by name and return only the table rows
+    @GetMapping("/equipments/search")
+    public String searchEquipments(@RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(name = "limit", defaultValue = "20") int limit, Model model) {
+
+        // Get the matching equipments from the database
+        model.addAttribute("equipments", equipmentService.searchEquipments(query, limit));
+
+        return "equipments :: rows"; // This will return the rows fragment of equipments.html
+    }
+
     // Add a new equipment
     @PostMapping("/equipments/add")
     public String addEquipment(@ModelAttribute Equipment equipment, RedirectAttributes redirectAttributes) {
@@ -48,6 +84,16 @@ public class EquipmentsController {
         return "redirect:/equipments"; // Redirect to equipments.html
     }
 
+    // Import equipments from a CSV file, streaming one JSON progress line per
+    // committed batch
+    @PostMapping(value = "/equipments/import", produces = ImportResponseWriter.NDJSON)
+    public void importEquipments(@RequestParam("file") MultipartFile file,
+            @RequestParam(name = "batchSize", defaultValue = "500") int batchSize, HttpServletResponse response)
+            throws IOException {
+        ImportResponseWriter.write(response, objectMapper,
+                progress -> productImportService.importEquipments(file.getInputStream(), batchSize, progress));
+    }
+
     // Update an equipment
     @PutMapping("/equipments/update")
     public String updateEquipment(@ModelAttribute Equipment equipment, RedirectAttributes redirectAttributes) {
@@ -0,0 +1,76 @@
+package com.pharmacy.controllers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import com.pharmacy.models.ExportFormat;
+import com.pharmacy.services.ExportService;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.beans.factory.annotation.Autowired;
+
+@Controller
+public class ExportController {
+    @Autowired
+    private ExportService exportService;
+
+    // An export that writes its rows to the output stream
+    private interface ExportTask {
+        void export(ExportFormat format, OutputStream out) throws IOException;
+    }
+
+    // Export all the products as CSV or NDJSON
+    @GetMapping("/products/export")
+    public void exportProducts(@RequestParam(name = "format", defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+        export("products", format, response, exportService::exportProducts);
+    }
+
+    // Export all the medicines as CSV or NDJSON
+    @GetMapping("/medicines/export")
+    public void exportMedicines(@RequestParam(name = "format", defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+        export("medicines", format, response, exportService::exportMedicines);
+    }
+
+    // Export all the equipments as CSV or NDJSON
+    @GetMapping("/equipments/export")
+    public void exportEquipments(@RequestParam(name = "format", defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+        export("equipments", format, response, exportService::exportEquipments);
+    }
+
+    // Export all the suppliers as CSV or NDJSON
+    @GetMapping("/suppliers/export")
+    public void exportSuppliers(@RequestParam(name = "format", defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+        export("suppliers", format, response, exportService::exportSuppliers);
+    }
+
+    // Stream an export as a file download
+    private void export(String name, String formatName, HttpServletResponse response, ExportTask task)
+            throws IOException {
+        ExportFormat format;
+        try {
+            format = ExportFormat.fromName(formatName);
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"" + name + "." + format.getExtension() + "\"");
+
+        try {
+            task.export(format, response.getOutputStream());
+        } catch (IOException e) {
+            // The client disconnected, the export has already stopped and released
+            // its connection and there is nobody left to send an error to
+        }
+    }
+}
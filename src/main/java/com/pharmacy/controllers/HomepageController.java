@@ -1,9 +1,12 @@
 package com.pharmacy.controllers;
 
 import org.springframework.ui.Model;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.models.KeysetPage;
 import com.pharmacy.services.ProductService;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Controller
@@ -12,11 +15,29 @@ public class HomepageController {
     private ProductService productService;
 
     @GetMapping("/homepage")
-    public String homepage(Model model) {
+    public String homepage(@RequestParam(name = "after", required = false) Integer after,
+            @RequestParam(name = "before", required = false) Integer before,
+            @RequestParam(name = "size", defaultValue = "20") int size, Model model) {
 
-        // Get all the products from the database
-        model.addAttribute("products", productService.getAllProducts());
+        // Get a page of products from the database
+        KeysetPage<ProductInventory> page = productService.getProductsPage(after, before, size);
+        model.addAttribute("products", page.getContent());
+        model.addAttribute("page", page);
+
+        // Get the counters of the inventory, computed without the product list
+        model.addAttribute("dashboard", productService.getDashboardSummary());
 
         return "homepage"; // This will return the homepage.html template
     }
+
+    // Search products by name and return only the table rows
+    @GetMapping("/homepage/search")
+    public String searchProducts(@RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(name = "limit", defaultValue = "20") int limit, Model model) {
+
+        // Get the matching products from the database
+        model.addAttribute("products", productService.searchProducts(query, limit));
+
+        return "homepage :: rows"; // This will return the rows fragment of homepage.html
+    }
 }
@@ -0,0 +1,60 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import com.pharmacy.models.ImportProgress;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+// Streams the progress of a CSV import to the client as newline-delimited JSON,
+// one line per committed batch followed by a final summary line. A failure that
+// stops the import is reported as a last {"error": ...} line.
+final class ImportResponseWriter {
+    static final String NDJSON = "application/x-ndjson";
+
+    // An import that reports its progress to the given consumer
+    interface ImportTask {
+        void run(Consumer<ImportProgress> progress) throws IOException;
+    }
+
+    private ImportResponseWriter() {
+    }
+
+    static void write(HttpServletResponse response, ObjectMapper objectMapper, ImportTask task) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+
+        try {
+            task.run(progress -> {
+                out.println(toJson(objectMapper, progress));
+                // Send every line as soon as its batch is committed
+                out.flush();
+            });
+        } catch (Exception e) {
+            // Before the first progress line nothing was imported, so the request
+            // itself was bad. After it the batches already reported stay committed,
+            // and the error line after them tells the client where the import stopped.
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            out.println(toJson(objectMapper, Map.of("error", String.valueOf(e.getMessage()))));
+        }
+
+        out.flush();
+    }
+
+    private static String toJson(ObjectMapper objectMapper, Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.pharmacy.models.ListingPage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// Writes the pages of the JSON list endpoints. The page is read on the request
+// thread, so a bad query is answered with a 400, and is then written field by
+// field with a JSON generator from an async thread, without building the
+// response in memory first:
+// {"content": [{...}], "size": 20, "hasNext": true, "lastId": 42}
+final class ListingResponseWriter {
+    private ListingResponseWriter() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> write(ObjectMapper objectMapper, Supplier<ListingPage> query) {
+        ListingPage page;
+        try {
+            page = query.get();
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, Map.of("error", String.valueOf(e.getMessage()))));
+        }
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.writeStartObject();
+
+            generator.writeArrayFieldStart("content");
+            for (Object[] row : page.getRows()) {
+                generator.writeStartObject();
+                for (int i = 0; i < row.length; i++) {
+                    generator.writeFieldName(page.getFields().get(i));
+                    generator.writeObject(row[i]);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
+            generator.writeNumberField("size", page.getSize());
+            generator.writeBooleanField("hasNext", page.isHasNext());
+            generator.writeObjectField("lastId", page.getLastId());
+            generator.writeEndObject();
+            generator.flush();
+        });
+    }
+}
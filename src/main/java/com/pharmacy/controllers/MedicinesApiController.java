@@ -0,0 +1,147 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+import java.time.LocalDate;
+
+import com.pharmacy.models.ListQuery;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.MedicinePatch;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.MedicineService;
+import com.pharmacy.services.ListingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pharmacy.services.SupplierService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Controller
+@RequestMapping("/api/medicines")
+public class MedicinesApiController {
+    @Autowired
+    private MedicineService medicineService;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Get a page of the medicines, filtered by name prefix, supplier, manufacturer or
+    // expiry date
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> listMedicines(@RequestParam Map<String, String> parameters) {
+        return ListingResponseWriter.write(objectMapper,
+                () -> listingService.listMedicines(ListQuery.fromParameters(parameters)));
+    }
+
+    // Get a page of the medicines expiring within the given number of days, soonest
+    // first. The next page starts after the expiry date and id of the last medicine.
+    @GetMapping("/expiring")
+    public ResponseEntity<Object> getExpiringMedicines(@RequestParam(name = "days", defaultValue = "30") int days,
+            @RequestParam(name = "afterDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate afterDate,
+            @RequestParam(name = "afterId", required = false) Integer afterId,
+            @RequestParam(name = "size", defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(medicineService.getExpiringMedicines(days, afterDate, afterId, size));
+        } catch (RuntimeException e) {
+            return ApiResponses.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Get the expiry alerts raised after the alert with the given id, oldest first
+    @GetMapping("/expiry-alerts")
+    public ResponseEntity<Object> getExpiryAlerts(@RequestParam(name = "after", defaultValue = "0") long after,
+            @RequestParam(name = "size", defaultValue = "20") int size) {
+        return ResponseEntity.ok(medicineService.getExpiryAlerts(after, size));
+    }
+
+    // Get a medicine with its version as the ETag
+    @GetMapping("/{id}")
+    public ResponseEntity<Object> getMedicine(@PathVariable("id") int id) {
+        Medicine medicine = medicineService.getMedicineById(id);
+
+        if (medicine == null) {
+            return ApiResponses.error(HttpStatus.NOT_FOUND, "The medicine does not exist");
+        }
+
+        return ApiResponses.versioned(medicine, medicine.getVersion());
+    }
+
+    // Update a medicine if it still has the version given in the If-Match header
+    @PutMapping("/{id}")
+    public ResponseEntity<Object> updateMedicine(@PathVariable("id") int id,
+            @RequestHeader(name = "If-Match", required = false) String ifMatch, @RequestBody Medicine medicine) {
+        Integer version = ApiResponses.ifMatchVersion(ifMatch);
+
+        if (version == null) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_REQUIRED,
+                    "The If-Match header must hold the ETag of the medicine");
+        }
+
+        medicine.setId(id);
+        medicine.setVersion(version);
+
+        // The body only names the supplier by id, load the supplier it refers to
+        if (medicine.getSupplier() != null) {
+            medicine.setSupplier(supplierService.getSupplierById(medicine.getSupplier().getId()));
+        }
+
+        try {
+            Medicine updated = medicineService.updateMedicine(medicine);
+            return ApiResponses.versioned(updated, updated.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        } catch (RuntimeException e) {
+            return ApiResponses.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Change only the fields sent in the body, if the medicine still has the version
+    // given in the If-Match header
+    @PatchMapping("/{id}")
+    public ResponseEntity<Object> patchMedicine(@PathVariable("id") int id,
+            @RequestHeader(name = "If-Match", required = false) String ifMatch, @RequestBody MedicinePatch patch) {
+        Integer version = ApiResponses.ifMatchVersion(ifMatch);
+
+        if (version == null) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_REQUIRED,
+                    "The If-Match header must hold the ETag of the medicine");
+        }
+
+        // The patch only names the supplier by id, load the supplier it refers to
+        if (patch.getSupplier() != null) {
+            Supplier supplier = supplierService.getSupplierById(patch.getSupplier().getId());
+
+            if (supplier == null) {
+                return ApiResponses.error(HttpStatus.BAD_REQUEST, "The supplier does not exist");
+            }
+            patch.setSupplier(supplier);
+        }
+
+        try {
+            Medicine patched = medicineService.patchMedicine(id, version, patch);
+            return ApiResponses.versioned(patched, patched.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        } catch (RuntimeException e) {
+            return ApiResponses.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
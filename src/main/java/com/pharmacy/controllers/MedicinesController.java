@@ -1,16 +1,27 @@
 package com.pharmacy.controllers;
 
+import java.io.IOException;
+import java.time.LocalDate;
+
+import jakarta.servlet.http.HttpServletResponse;
+
 import org.springframework.ui.Model;
 import com.pharmacy.models.Medicine;
+import com.pharmacy.models.KeysetPage;
 import com.pharmacy.services.MedicineService;
 import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.ProductImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
@@ -22,19 +33,67 @@ public class MedicinesController {
     @Autowired
     private SupplierService supplierService;
 
-    // Get all medicines
+    @Autowired
+    private ModelLoader modelLoader;
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Get a page of medicines
     @GetMapping("/medicines")
-    public String homepage(Model model) {
+    public String homepage(@RequestParam(name = "after", required = false) Integer after,
+            @RequestParam(name = "before", required = false) Integer before,
+            @RequestParam(name = "size", defaultValue = "20") int size, Model model) {
 
-        // Get all the medicines from the database
-        model.addAttribute("medicines", medicineService.getAllMedicines());
+        // Get a page of medicines, the total number of medicines and all the
+        // suppliers from the database at the same time
+        ModelLoader.Loads loads = modelLoader.into(model);
+        ModelLoader.Load<KeysetPage<Medicine>> page = loads.load("page",
+                () -> medicineService.getMedicinesPage(after, before, size));
+        loads.add("medicineCount", () -> medicineService.countMedicines())
+                .add("suppliers", () -> supplierService.getAllSuppliers())
+                .await();
 
-        // Get all the suppliers from the database
-        model.addAttribute("suppliers", supplierService.getAllSuppliers());
+        model.addAttribute("medicines", page.get().getContent());
 
         return "medicines"; // This will return the medicines.html template
     }
 
+    // Get a page of the medicines expiring within the given number of days, soonest
+    // first
+    @GetMapping("/medicines/expiring")
+    public String expiringMedicines(@RequestParam(name = "days", defaultValue = "30") int days,
+            @RequestParam(name = "afterDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate afterDate,
+            @RequestParam(name = "afterId", required = false) Integer afterId,
+            @RequestParam(name = "size", defaultValue = "20") int size, Model model) {
+        model.addAttribute("days", days);
+
+        try {
+            KeysetPage<Medicine> page = medicineService.getExpiringMedicines(days, afterDate, afterId, size);
+            model.addAttribute("medicines", page.getContent());
+            model.addAttribute("page", page);
+        } catch (RuntimeException e) {
+            model.addAttribute("errorMessage", e.getMessage());
+        }
+
+        return "expiring"; // This will return the expiring.html template
+    }
+
+    // Search medicines by name and return only the table rows
+    @GetMapping("/medicines/search")
+    public String searchMedicines(@RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(name = "limit", defaultValue = "20") int limit, Model model) {
+
+        // Get the matching medicines from the database
+        model.addAttribute("medicines", medicineService.searchMedicines(query, limit));
+
+        return "medicines :: rows"; // This will return the rows fragment of medicines.html
+    }
+
     // Add a new medicine
     @PostMapping("/medicines/add")
     public String addMedicine(@ModelAttribute Medicine medicine, RedirectAttributes redirectAttributes) {
@@ -48,6 +107,16 @@ public class MedicinesController {
         return "redirect:/medicines"; // Redirect to medicines.html
     }
 
+    // Import medicines from a CSV file, streaming one JSON progress line per
+    // committed batch
+    @PostMapping(value = "/medicines/import", produces = ImportResponseWriter.NDJSON)
+    public void importMedicines(@RequestParam("file") MultipartFile file,
+            @RequestParam(name = "batchSize", defaultValue = "500") int batchSize, HttpServletResponse response)
+            throws IOException {
+        ImportResponseWriter.write(response, objectMapper,
+                progress -> productImportService.importMedicines(file.getInputStream(), batchSize, progress));
+    }
+
     // Update a medicine
     @PutMapping("/medicines/update")
     public String updateMedicine(@ModelAttribute Medicine medicine, RedirectAttributes redirectAttributes) {
@@ -0,0 +1,193 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+import java.util.List;
+import java.util.Locale;
+import java.util.ArrayList;
+import java.util.StringJoiner;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.MDC;
+import org.springframework.ui.Model;
+import org.springframework.stereotype.Component;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Loads independent model attributes of a page at the same time, so the page
+ * waits for its slowest query instead of the sum of all of them. The loads run
+ * on a bounded pool. When the pool and its queue are full, the request thread
+ * runs the load itself. Each load has its own timeout, and the time each one
+ * took is sent in a Server-Timing header so it shows in the browser's network
+ * tools.
+ *
+ * The loads run outside the request's persistence context, so they must return
+ * data that is fully loaded, like the keyset pages and the cached suppliers.
+ * They also run outside any transaction of the caller, each load in its own,
+ * so they only see committed data: rows written by a transaction the request
+ * is still in are not visible to them.
+ */
+@Component
+public class ModelLoader {
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    private final long timeoutMillis;
+
+    public ModelLoader(@Value("${pharmacy.model-loader.threads:8}") int threads,
+            @Value("${pharmacy.model-loader.queue:100}") int queue,
+            @Value("${pharmacy.model-loader.timeout-ms:5000}") long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queue);
+        executor.setThreadNamePrefix("model-loader-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        // Keep the logging context of the request on the loading threads
+        executor.setTaskDecorator(task -> {
+            Map<String, String> context = MDC.getCopyOfContextMap();
+            return () -> {
+                Map<String, String> previous = MDC.getCopyOfContextMap();
+                setMdc(context);
+                try {
+                    task.run();
+                } finally {
+                    setMdc(previous);
+                }
+            };
+        });
+        executor.initialize();
+    }
+
+    // Start a set of loads that add their results to the given model
+    public Loads into(Model model) {
+        return new Loads(model);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static void setMdc(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+
+    // The loads of one request, started as soon as they are added
+    public class Loads {
+        private final Model model;
+
+        private final List<Load<?>> loads = new ArrayList<>();
+
+        private Loads(Model model) {
+            this.model = model;
+        }
+
+        // Start loading a model attribute
+        public Loads add(String name, Supplier<?> loader) {
+            load(name, loader);
+            return this;
+        }
+
+        // Start loading a model attribute and return the load, so the caller can
+        // use the typed result once await() returns
+        public <T> Load<T> load(String name, Supplier<T> loader) {
+            Load<T> load = new Load<>(name);
+            load.future = executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return loader.get();
+                } finally {
+                    load.nanos = System.nanoTime() - start;
+                }
+            });
+            loads.add(load);
+            return load;
+        }
+
+        /**
+         * Wait for every load and add the results to the model. A load that
+         * fails or takes longer than the timeout fails the request, and the loads
+         * still running are cancelled.
+         */
+        public void await() {
+            try {
+                for (Load<?> load : loads) {
+                    long remaining = load.started + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - System.nanoTime();
+                    model.addAttribute(load.name, load.await(remaining));
+                }
+            } catch (TimeoutException e) {
+                throw new RuntimeException("Loading the page took longer than " + timeoutMillis + " ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Loading the page was interrupted");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+            } finally {
+                loads.forEach(load -> load.future.cancel(true));
+                addServerTiming();
+            }
+        }
+
+        // Report how long each finished load took, in milliseconds
+        private void addServerTiming() {
+            if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                    || attributes.getResponse() == null) {
+                return;
+            }
+
+            StringJoiner timing = new StringJoiner(", ");
+            for (Load<?> load : loads) {
+                if (load.nanos >= 0) {
+                    timing.add(load.name + ";dur=" + String.format(Locale.ROOT, "%.1f", load.nanos / 1e6));
+                }
+            }
+
+            if (timing.length() > 0) {
+                attributes.getResponse().addHeader("Server-Timing", timing.toString());
+            }
+        }
+    }
+
+    // One model attribute being loaded
+    public static class Load<T> {
+        private final String name;
+
+        private final long started = System.nanoTime();
+
+        private Future<T> future;
+
+        private T result;
+
+        // Set by the loading thread when it is done, -1 until then
+        private volatile long nanos = -1;
+
+        private Load(String name) {
+            this.name = name;
+        }
+
+        private T await(long remainingNanos) throws InterruptedException, ExecutionException, TimeoutException {
+            result = future.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+            return result;
+        }
+
+        // Get the loaded value, only once await() of its loads has returned
+        public T get() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+import java.util.List;
+
+import com.pharmacy.models.ListQuery;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.LowStockProduct;
+import com.pharmacy.models.ProductSuggestion;
+import com.pharmacy.services.ProductService;
+import com.pharmacy.services.ListingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Controller
+@RequestMapping("/api/products")
+public class ProductsApiController {
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Get a page of all the products, filtered by name prefix, type or supplier
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> listProducts(@RequestParam Map<String, String> parameters) {
+        return ListingResponseWriter.write(objectMapper,
+                () -> listingService.listProducts(ListQuery.fromParameters(parameters)));
+    }
+
+    // Suggest the products whose name starts with what was typed, for the
+    // autocomplete of the point of sale
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<ProductSuggestion>> suggestProducts(
+            @RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productService.suggestProducts(query, limit));
+    }
+
+    // Get a page of the products whose quantity in stock is below their reorder
+    // threshold, after the given id
+    @GetMapping("/low-stock")
+    public ResponseEntity<KeysetPage<LowStockProduct>> getLowStockProducts(
+            @RequestParam(name = "after", required = false) Integer after,
+            @RequestParam(name = "size", defaultValue = "20") int size) {
+        return ResponseEntity.ok(productService.getLowStockProducts(after, size));
+    }
+}
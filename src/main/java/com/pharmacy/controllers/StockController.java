@@ -0,0 +1,71 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+import org.springframework.ui.Model;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.LowStockProduct;
+import com.pharmacy.models.StockBufferStats;
+import com.pharmacy.services.ProductService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.beans.factory.annotation.Autowired;
+
+@Controller
+public class StockController {
+    @Autowired
+    private ProductService productService;
+
+    // Get the quantity of a product in stock
+    @GetMapping("/products/{id}/stock")
+    public ResponseEntity<Map<String, Object>> stock(@PathVariable("id") int id) {
+        return stockLevel(id, () -> productService.getQuantity(id));
+    }
+
+    // Take some units of a product out of stock and return the new quantity
+    @PostMapping("/products/{id}/dispense")
+    public ResponseEntity<Map<String, Object>> dispense(@PathVariable("id") int id,
+            @RequestParam("quantity") int quantity) {
+        return stockLevel(id, () -> productService.dispense(id, quantity));
+    }
+
+    // Add some units of a product to the stock and return the new quantity
+    @PostMapping("/products/{id}/receive")
+    public ResponseEntity<Map<String, Object>> receive(@PathVariable("id") int id,
+            @RequestParam("quantity") int quantity) {
+        return stockLevel(id, () -> productService.receive(id, quantity));
+    }
+
+    // Get a page of the products to reorder
+    @GetMapping("/stock/low")
+    public String lowStock(@RequestParam(name = "after", required = false) Integer after,
+            @RequestParam(name = "size", defaultValue = "20") int size, Model model) {
+        KeysetPage<LowStockProduct> page = productService.getLowStockProducts(after, size);
+        model.addAttribute("products", page.getContent());
+        model.addAttribute("page", page);
+
+        return "low-stock"; // This will return the low-stock.html template
+    }
+
+    // Get how many stock changes were coalesced into each ledger row and how long
+    // the buffer takes to write them
+    @GetMapping("/stock/buffer")
+    public ResponseEntity<StockBufferStats> bufferStats() {
+        return ResponseEntity.ok(productService.getStockBufferStats());
+    }
+
+    // Answer with the new quantity of the product, or with the reason the stock
+    // was not changed
+    private ResponseEntity<Map<String, Object>> stockLevel(int id, IntSupplier change) {
+        try {
+            return ResponseEntity.ok(Map.of("id", id, "quantity", change.getAsInt()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.pharmacy.controllers;
+
+import java.util.Map;
+
+import com.pharmacy.models.ListQuery;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.models.SupplierPatch;
+import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.ListingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Controller
+@RequestMapping("/api/suppliers")
+public class SuppliersApiController {
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private ListingService listingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Get a page of the suppliers, filtered by name prefix
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> listSuppliers(@RequestParam Map<String, String> parameters) {
+        return ListingResponseWriter.write(objectMapper,
+                () -> listingService.listSuppliers(ListQuery.fromParameters(parameters)));
+    }
+
+    // Get a supplier with its version as the ETag
+    @GetMapping("/{id}")
+    public ResponseEntity<Object> getSupplier(@PathVariable("id") int id) {
+        Supplier supplier = supplierService.getSupplierById(id);
+
+        if (supplier == null) {
+            return ApiResponses.error(HttpStatus.NOT_FOUND, "Supplier does not exist");
+        }
+
+        return ApiResponses.versioned(supplier, supplier.getVersion());
+    }
+
+    // Update a supplier if it still has the version given in the If-Match header
+    @PutMapping("/{id}")
+    public ResponseEntity<Object> updateSupplier(@PathVariable("id") int id,
+            @RequestHeader(name = "If-Match", required = false) String ifMatch, @RequestBody Supplier supplier) {
+        Integer version = ApiResponses.ifMatchVersion(ifMatch);
+
+        if (version == null) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_REQUIRED,
+                    "The If-Match header must hold the ETag of the supplier");
+        }
+
+        supplier.setId(id);
+        supplier.setVersion(version);
+
+        try {
+            Supplier updated = supplierService.updateSupplier(supplier);
+            return ApiResponses.versioned(updated, updated.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        } catch (RuntimeException e) {
+            return ApiResponses.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Change only the fields sent in the body, if the supplier still has the version
+    // given in the If-Match header
+    @PatchMapping("/{id}")
+    public ResponseEntity<Object> patchSupplier(@PathVariable("id") int id,
+            @RequestHeader(name = "If-Match", required = false) String ifMatch, @RequestBody SupplierPatch patch) {
+        Integer version = ApiResponses.ifMatchVersion(ifMatch);
+
+        if (version == null) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_REQUIRED,
+                    "The If-Match header must hold the ETag of the supplier");
+        }
+
+        try {
+            Supplier patched = supplierService.patchSupplier(id, version, patch);
+            return ApiResponses.versioned(patched, patched.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return ApiResponses.error(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        } catch (RuntimeException e) {
+            return ApiResponses.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
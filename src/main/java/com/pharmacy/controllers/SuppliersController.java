@@ -25,6 +25,9 @@ public class SuppliersController {
         // Get all the suppliers from the database
         model.addAttribute("suppliers", supplierService.getAllSuppliers());
 
+        // Get the number of products of each supplier
+        model.addAttribute("productCounts", supplierService.getProductCounts());
+
         return "suppliers"; // This will return the suppliers.html template
     }
 
@@ -0,0 +1,92 @@
+package com.pharmacy.events;
+
+import java.util.List;
+import java.util.Collection;
+
+import com.pharmacy.models.Product;
+import com.pharmacy.models.ProductInventory;
+
+/**
+ * Published by the product services inside the write transaction whenever
+ * products are created, updated or deleted. Each change carries a snapshot of
+ * the product before and after the write so that listeners maintaining derived
+ * data (read models, counters, indexes) can apply it incrementally.
+ */
+public class ProductChangedEvent {
+    private final List<Change> changes;
+
+    // True when only the stock of the products changed, not their fields
+    private final boolean stockOnly;
+
+    public ProductChangedEvent(List<Change> changes) {
+        this(changes, false);
+    }
+
+    private ProductChangedEvent(List<Change> changes, boolean stockOnly) {
+        this.changes = List.copyOf(changes);
+        this.stockOnly = stockOnly;
+    }
+
+    // A product was created
+    public static ProductChangedEvent created(Product product) {
+        return new ProductChangedEvent(List.of(new Change(null, ProductInventory.of(product))));
+    }
+
+    // Several products were created in the same transaction
+    public static ProductChangedEvent createdAll(Collection<? extends Product> products) {
+        return new ProductChangedEvent(
+                products.stream().map(product -> new Change(null, ProductInventory.of(product))).toList());
+    }
+
+    // A product was updated, the before snapshot must be taken before the write
+    public static ProductChangedEvent updated(ProductInventory before, Product product) {
+        return new ProductChangedEvent(List.of(new Change(before, ProductInventory.of(product))));
+    }
+
+    // The quantity of a product was changed by the given amount, the before
+    // snapshot is derived from the after one so the product is not read first
+    public static ProductChangedEvent quantityChanged(ProductInventory after, int delta) {
+        ProductInventory before = new ProductInventory(after.getId(), after.getName(), after.getProductType(),
+                after.getQuantity() - delta, after.getPrice(), after.getSupplierId(), after.getSupplierName());
+        return new ProductChangedEvent(List.of(new Change(before, after)), true);
+    }
+
+    // A product was deleted
+    public static ProductChangedEvent deleted(ProductInventory before) {
+        return new ProductChangedEvent(List.of(new Change(before, null)));
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isStockOnly() {
+        return stockOnly;
+    }
+
+    // The state of a single product before and after a write
+    public static class Change {
+        // Null when the product was created
+        private final ProductInventory before;
+
+        // Null when the product was deleted
+        private final ProductInventory after;
+
+        public Change(ProductInventory before, ProductInventory after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public ProductInventory getBefore() {
+            return before;
+        }
+
+        public ProductInventory getAfter() {
+            return after;
+        }
+
+        public boolean isDeleted() {
+            return after == null;
+        }
+    }
+}
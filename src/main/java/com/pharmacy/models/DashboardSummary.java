@@ -0,0 +1,87 @@
+package com.pharmacy.models;
+
+import java.util.Map;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// The key counters of the inventory shown on the homepage
+public class DashboardSummary {
+    private final long productCount;
+
+    // Number of products of each product type, by type name
+    private final Map<String, Long> productCountByType;
+
+    private final long supplierCount;
+
+    // Units in stock and their value, from the compacted quantities
+    private final long totalUnits;
+
+    private final BigDecimal stockValue;
+
+    // Medicines past their expiry date, and the ones expiring within the next
+    // expiryHorizonDays days
+    private final long expiredCount;
+
+    private final long expiringSoonCount;
+
+    private final int expiryHorizonDays;
+
+    private final long lowStockCount;
+
+    private final LocalDateTime computedAt;
+
+    public DashboardSummary(long productCount, Map<String, Long> productCountByType, long supplierCount,
+            long totalUnits, BigDecimal stockValue, long expiredCount, long expiringSoonCount, int expiryHorizonDays,
+            long lowStockCount, LocalDateTime computedAt) {
+        this.productCount = productCount;
+        this.productCountByType = productCountByType;
+        this.supplierCount = supplierCount;
+        this.totalUnits = totalUnits;
+        this.stockValue = stockValue;
+        this.expiredCount = expiredCount;
+        this.expiringSoonCount = expiringSoonCount;
+        this.expiryHorizonDays = expiryHorizonDays;
+        this.lowStockCount = lowStockCount;
+        this.computedAt = computedAt;
+    }
+
+    public long getProductCount() {
+        return productCount;
+    }
+
+    public Map<String, Long> getProductCountByType() {
+        return productCountByType;
+    }
+
+    public long getSupplierCount() {
+        return supplierCount;
+    }
+
+    public long getTotalUnits() {
+        return totalUnits;
+    }
+
+    public BigDecimal getStockValue() {
+        return stockValue;
+    }
+
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    public long getExpiringSoonCount() {
+        return expiringSoonCount;
+    }
+
+    public int getExpiryHorizonDays() {
+        return expiryHorizonDays;
+    }
+
+    public long getLowStockCount() {
+        return lowStockCount;
+    }
+
+    public LocalDateTime getComputedAt() {
+        return computedAt;
+    }
+}
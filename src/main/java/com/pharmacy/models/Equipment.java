@@ -2,8 +2,11 @@ package com.pharmacy.models;
 
 import java.time.LocalDate;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
+// Updates only write the changed columns, like the products table
 @Entity
+@DynamicUpdate
 @DiscriminatorValue("Equipment")
 @Table(name = "equipments")
 public class Equipment extends Product {
@@ -35,6 +38,16 @@ public class Equipment extends Product {
         return "Equipment";
     }
 
+    @Override
+    public String getNaturalKey() {
+        return naturalKey(name, supplier != null ? supplier.getId() : 0, purchaseDate, warranty);
+    }
+
+    // Natural key of a equipment with the given name, supplier, purchase date and warranty
+    public static String naturalKey(String name, int supplierId, LocalDate purchaseDate, String warranty) {
+        return Product.naturalKey("Equipment", name, supplierId, purchaseDate, warranty);
+    }
+
     // Default no-argument constructor required by JPA
     public Equipment() {
     }
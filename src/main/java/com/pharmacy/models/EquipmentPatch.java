@@ -0,0 +1,27 @@
+package com.pharmacy.models;
+
+import java.time.LocalDate;
+
+// The fields of a partial update of an equipment, a null field is not changed
+public class EquipmentPatch extends ProductPatch {
+    private String warranty;
+
+    private LocalDate purchaseDate;
+
+    // Getters and Setters
+    public String getWarranty() {
+        return warranty;
+    }
+
+    public void setWarranty(String warranty) {
+        this.warranty = warranty;
+    }
+
+    public LocalDate getPurchaseDate() {
+        return purchaseDate;
+    }
+
+    public void setPurchaseDate(LocalDate purchaseDate) {
+        this.purchaseDate = purchaseDate;
+    }
+}
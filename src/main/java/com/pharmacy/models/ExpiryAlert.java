@@ -0,0 +1,46 @@
+package com.pharmacy.models;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// A medicine whose expiry date came within the alert horizon
+public class ExpiryAlert {
+    private final long id;
+
+    private final int medicineId;
+
+    private final String medicineName;
+
+    private final LocalDate expiryDate;
+
+    private final LocalDateTime createdAt;
+
+    public ExpiryAlert(long id, int medicineId, String medicineName, LocalDate expiryDate,
+            LocalDateTime createdAt) {
+        this.id = id;
+        this.medicineId = medicineId;
+        this.medicineName = medicineName;
+        this.expiryDate = expiryDate;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getMedicineId() {
+        return medicineId;
+    }
+
+    public String getMedicineName() {
+        return medicineName;
+    }
+
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,78 @@
+package com.pharmacy.models;
+
+import java.util.List;
+
+/**
+ * Progress of a CSV import, reported after every committed batch. The totals
+ * are cumulative, the errors only cover the rows of the batch just processed so
+ * that a long import never has to keep all of its errors in memory.
+ */
+public class ImportProgress {
+    private final int batch;
+
+    private final long rowsRead;
+
+    private final long imported;
+
+    private final long failed;
+
+    private final List<RowError> errors;
+
+    // True for the final report sent once the whole file has been read
+    private final boolean done;
+
+    public ImportProgress(int batch, long rowsRead, long imported, long failed, List<RowError> errors,
+            boolean done) {
+        this.batch = batch;
+        this.rowsRead = rowsRead;
+        this.imported = imported;
+        this.failed = failed;
+        this.errors = List.copyOf(errors);
+        this.done = done;
+    }
+
+    // Getters
+    public int getBatch() {
+        return batch;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    // A row of the file that was not imported, and why
+    public static class RowError {
+        private final int line;
+
+        private final String message;
+
+        public RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.pharmacy.models;
+
+import java.util.List;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// The number, quantity and value of the products in stock, in total, per
+// supplier and per product type
+public class InventoryValuation {
+    private final Totals total;
+
+    private final List<Totals> bySupplier;
+
+    private final List<Totals> byProductType;
+
+    // When the stored totals were last compared with a full recount, and how
+    // many supplier and product type groups had drifted, null before the first
+    private final LocalDateTime reconciledAt;
+
+    private final Integer driftedGroups;
+
+    public InventoryValuation(Totals total, List<Totals> bySupplier, List<Totals> byProductType,
+            LocalDateTime reconciledAt, Integer driftedGroups) {
+        this.total = total;
+        this.bySupplier = bySupplier;
+        this.byProductType = byProductType;
+        this.reconciledAt = reconciledAt;
+        this.driftedGroups = driftedGroups;
+    }
+
+    public Totals getTotal() {
+        return total;
+    }
+
+    public List<Totals> getBySupplier() {
+        return bySupplier;
+    }
+
+    public List<Totals> getByProductType() {
+        return byProductType;
+    }
+
+    public LocalDateTime getReconciledAt() {
+        return reconciledAt;
+    }
+
+    public Integer getDriftedGroups() {
+        return driftedGroups;
+    }
+
+    // The totals of a group of products, named by their supplier or type
+    public static class Totals {
+        private final String name;
+
+        private final long productCount;
+
+        private final long quantity;
+
+        private final BigDecimal value;
+
+        public Totals(String name, long productCount, long quantity, BigDecimal value) {
+            this.name = name;
+            this.productCount = productCount;
+            this.quantity = quantity;
+            this.value = value;
+        }
+
+        // These totals with the given ones added, under this name
+        public Totals plus(Totals other) {
+            return new Totals(name, productCount + other.productCount, quantity + other.quantity,
+                    value.add(other.value));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getProductCount() {
+            return productCount;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.pharmacy.models;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.ToIntFunction;
+
+/**
+ * A single page of a keyset (seek) paginated listing. Instead of an offset,
+ * the page remembers the id of its first and last row so that the next and
+ * previous pages can be fetched with an indexed "id > ?" / "id < ?" lookup.
+ */
+public class KeysetPage<T> {
+    // Default and maximum number of rows per page
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    private final List<T> content;
+
+    private final boolean hasPrevious;
+
+    private final boolean hasNext;
+
+    private final Integer firstId;
+
+    private final Integer lastId;
+
+    private final int size;
+
+    public KeysetPage(List<T> content, boolean hasPrevious, boolean hasNext, Integer firstId, Integer lastId,
+            int size) {
+        this.content = content;
+        this.hasPrevious = hasPrevious;
+        this.hasNext = hasNext;
+        this.firstId = firstId;
+        this.lastId = lastId;
+        this.size = size;
+    }
+
+    // Keep the requested page size within [1, MAX_SIZE]
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    /**
+     * Build a page from rows fetched after a cursor in ascending id order. The
+     * rows are expected to contain one extra row (size + 1) used only to detect
+     * whether a next page exists.
+     */
+    public static <T> KeysetPage<T> forward(List<T> rows, int size, boolean hasCursor, ToIntFunction<T> idOf) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = new ArrayList<>(rows.subList(0, Math.min(size, rows.size())));
+
+        return of(content, hasCursor, hasNext, size, idOf);
+    }
+
+    /**
+     * Build a page from rows fetched before a cursor in descending id order. The
+     * rows are reversed back to ascending order and, like {@link #forward}, are
+     * expected to contain one extra row used to detect a previous page.
+     */
+    public static <T> KeysetPage<T> backward(List<T> rows, int size, ToIntFunction<T> idOf) {
+        boolean hasPrevious = rows.size() > size;
+        List<T> content = new ArrayList<>(rows.subList(0, Math.min(size, rows.size())));
+        Collections.reverse(content);
+
+        return of(content, hasPrevious, true, size, idOf);
+    }
+
+    private static <T> KeysetPage<T> of(List<T> content, boolean hasPrevious, boolean hasNext, int size,
+            ToIntFunction<T> idOf) {
+        Integer firstId = content.isEmpty() ? null : idOf.applyAsInt(content.get(0));
+        Integer lastId = content.isEmpty() ? null : idOf.applyAsInt(content.get(content.size() - 1));
+
+        return new KeysetPage<>(Collections.unmodifiableList(content), hasPrevious && !content.isEmpty(),
+                hasNext && !content.isEmpty(), firstId, lastId, size);
+    }
+
+    // Getters
+    public List<T> getContent() {
+        return content;
+    }
+
+    public boolean isHasPrevious() {
+        return hasPrevious;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public Integer getFirstId() {
+        return firstId;
+    }
+
+    public Integer getLastId() {
+        return lastId;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
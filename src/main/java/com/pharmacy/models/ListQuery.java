@@ -0,0 +1,72 @@
+package com.pharmacy.models;
+
+import java.util.Map;
+import java.util.List;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * The paging, field selection and filters of a request to a JSON list
+ * endpoint, read from its query parameters. Pages are keyset pages: "after" is
+ * the last id of the previous page. "fields" is a comma separated list of the
+ * fields to return, the id is always returned. Every other parameter is a
+ * filter.
+ */
+public class ListQuery {
+    private final int after;
+
+    private final int size;
+
+    // Null when all the fields are wanted
+    private final List<String> fields;
+
+    private final Map<String, String> filters;
+
+    public ListQuery(int after, int size, List<String> fields, Map<String, String> filters) {
+        this.after = after;
+        this.size = KeysetPage.clampSize(size);
+        this.fields = fields;
+        this.filters = filters;
+    }
+
+    // Read a query from request parameters, throwing a RuntimeException if the
+    // paging parameters are not numbers
+    public static ListQuery fromParameters(Map<String, String> parameters) {
+        Map<String, String> filters = new LinkedHashMap<>(parameters);
+        int after = number(filters.remove("after"), 0, "after");
+        int size = number(filters.remove("size"), KeysetPage.DEFAULT_SIZE, "size");
+        String fields = filters.remove("fields");
+
+        return new ListQuery(after, size, fields == null || fields.isBlank() ? null
+                : Arrays.stream(fields.split(",")).map(String::trim).filter(field -> !field.isEmpty()).toList(),
+                filters);
+    }
+
+    private static int number(String value, int defaultValue, String name) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("The " + name + " parameter must be a whole number");
+        }
+    }
+
+    public int getAfter() {
+        return after;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public Map<String, String> getFilters() {
+        return filters;
+    }
+}
@@ -0,0 +1,48 @@
+package com.pharmacy.models;
+
+import java.util.List;
+
+/**
+ * A keyset page of rows read for a JSON list endpoint. Each row holds the
+ * values of the selected fields in the order of {@link #getFields()}, read
+ * straight from the database instead of as entities.
+ */
+public class ListingPage {
+    private final List<String> fields;
+
+    private final List<Object[]> rows;
+
+    private final boolean hasNext;
+
+    private final Integer lastId;
+
+    private final int size;
+
+    public ListingPage(List<String> fields, List<Object[]> rows, boolean hasNext, Integer lastId, int size) {
+        this.fields = fields;
+        this.rows = rows;
+        this.hasNext = hasNext;
+        this.lastId = lastId;
+        this.size = size;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public Integer getLastId() {
+        return lastId;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
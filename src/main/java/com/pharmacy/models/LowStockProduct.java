@@ -0,0 +1,58 @@
+package com.pharmacy.models;
+
+import java.time.LocalDateTime;
+
+// A product whose available quantity is below its reorder threshold
+public class LowStockProduct {
+    private final int id;
+
+    private final String name;
+
+    private final String productType;
+
+    private final int quantity;
+
+    private final int reorderThreshold;
+
+    // When the product went below its threshold
+    private final LocalDateTime since;
+
+    public LowStockProduct(int id, String name, String productType, int quantity, int reorderThreshold,
+            LocalDateTime since) {
+        this.id = id;
+        this.name = name;
+        this.productType = productType;
+        this.quantity = quantity;
+        this.reorderThreshold = reorderThreshold;
+        this.since = since;
+    }
+
+    // Copy of the product with the given available quantity
+    public LowStockProduct withQuantity(int quantity) {
+        return new LowStockProduct(id, name, productType, quantity, reorderThreshold, since);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getProductType() {
+        return productType;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getReorderThreshold() {
+        return reorderThreshold;
+    }
+
+    public LocalDateTime getSince() {
+        return since;
+    }
+}
@@ -2,8 +2,11 @@ package com.pharmacy.models;
 
 import java.time.LocalDate;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
+// Updates only write the changed columns, like the products table
 @Entity
+@DynamicUpdate
 @DiscriminatorValue("Medicine")
 @Table(name = "medicines")
 public class Medicine extends Product {
@@ -35,6 +38,16 @@ public class Medicine extends Product {
         return "Medicine";
     }
 
+    @Override
+    public String getNaturalKey() {
+        return naturalKey(name, supplier != null ? supplier.getId() : 0, manufacturer, expiryDate);
+    }
+
+    // Natural key of a medicine with the given name, supplier, manufacturer and expiry date
+    public static String naturalKey(String name, int supplierId, String manufacturer, LocalDate expiryDate) {
+        return Product.naturalKey("Medicine", name, supplierId, manufacturer, expiryDate);
+    }
+
     // Default no-argument constructor required by JPA
     public Medicine() {
     }
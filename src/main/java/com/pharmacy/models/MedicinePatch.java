@@ -0,0 +1,27 @@
+package com.pharmacy.models;
+
+import java.time.LocalDate;
+
+// The fields of a partial update of a medicine, a null field is not changed
+public class MedicinePatch extends ProductPatch {
+    private String manufacturer;
+
+    private LocalDate expiryDate;
+
+    // Getters and Setters
+    public String getManufacturer() {
+        return manufacturer;
+    }
+
+    public void setManufacturer(String manufacturer) {
+        this.manufacturer = manufacturer;
+    }
+
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(LocalDate expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+}
@@ -1,30 +1,71 @@
 package com.pharmacy.models;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
+// Updates only write the changed columns, and skip the products or subclass
+// table when none of its columns changed
 @Entity
+@DynamicUpdate
 @Inheritance(strategy = InheritanceType.JOINED)
 @DiscriminatorColumn(name = "product_type")
 @Table(name = "products")
 public abstract class Product {
+    // Ids come from a pooled sequence so Hibernate can batch inserts, one
+    // sequence call hands out 50 ids
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     @Column(name = "id")
     protected int id;
 
     @Column(name = "name")
     protected String name;
 
-    @Column(name = "quantity")
+    // Lower-cased name generated by the database, used for indexed searches
+    @Column(name = "search_name", insertable = false, updatable = false)
+    protected String searchName;
+
+    // Only written on insert. Later changes go through the stock ledger, which
+    // folds them into this column, so an entity update never overwrites them
+    @Column(name = "quantity", updatable = false)
     protected int quantity;
 
     @Column(name = "price")
     protected Double price;
 
+    // The product is low on stock while its available quantity is below this, 0
+    // turns the check off
+    @Column(name = "reorder_threshold")
+    protected int reorderThreshold;
+
     @ManyToOne
     @JoinColumn(name = "supplier_id")
     protected Supplier supplier;
 
+    // The fields that make two products duplicates joined into one value. It has
+    // a unique index so the database rejects duplicates, even ones posted at the
+    // same time. As long as the column data.sql creates, so the schema update
+    // does not shrink it to the default length.
+    @Column(name = "natural_key", length = 1100)
+    protected String naturalKey;
+
+    // Incremented by every update. An update only succeeds if it was made from
+    // the current version, so concurrent edits cannot overwrite each other
+    @Version
+    @Column(name = "version")
+    protected int version;
+
+    // The available quantity an edit form or API client showed when the edit was
+    // made. Only the difference between it and the new quantity is applied, so
+    // stock taken or received since then is kept. Sent with edits, never stored
+    // or returned.
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    protected Integer shownQuantity;
+
     // Getters and Setters
     public int getId() {
         return id;
@@ -58,6 +99,14 @@ public abstract class Product {
         this.price = price;
     }
 
+    public int getReorderThreshold() {
+        return reorderThreshold;
+    }
+
+    public void setReorderThreshold(int reorderThreshold) {
+        this.reorderThreshold = reorderThreshold;
+    }
+
     public Supplier getSupplier() {
         return supplier;
     }
@@ -66,6 +115,22 @@ public abstract class Product {
         this.supplier = supplier;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public Integer getShownQuantity() {
+        return shownQuantity;
+    }
+
+    public void setShownQuantity(Integer shownQuantity) {
+        this.shownQuantity = shownQuantity;
+    }
+
     // Default no-argument constructor required by JPA
     protected Product() {
     }
@@ -79,4 +144,29 @@ public abstract class Product {
     }
 
     public abstract String getProductType(); // Polymorphic method
+
+    // Natural key of the product, built from its current fields
+    @JsonIgnore
+    public abstract String getNaturalKey();
+
+    // Store the natural key of the current fields before every insert and update
+    @PrePersist
+    @PreUpdate
+    protected void updateNaturalKey() {
+        naturalKey = getNaturalKey();
+    }
+
+    // Join the parts of a natural key, ignoring surrounding spaces in text
+    protected static String naturalKey(Object... parts) {
+        StringBuilder key = new StringBuilder();
+
+        for (Object part : parts) {
+            if (key.length() > 0) {
+                key.append('\u001F');
+            }
+            key.append(part instanceof String text ? text.trim() : String.valueOf(part));
+        }
+
+        return key.toString();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.pharmacy.models;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Flattened, read-only view of a product and its supplier stored in a single
+ * narrow table. The homepage and its search read from this table so they do
+ * not have to join the products, medicines, equipments and suppliers tables.
+ * Rows are written by {@code ProductInventoryRepository} only.
+ */
+@Entity
+@Immutable
+@Table(name = "product_inventory")
+public class ProductInventory {
+    @Id
+    @Column(name = "id")
+    private int id;
+
+    @Column(name = "name")
+    private String name;
+
+    // Lower-cased name generated by the database, used for indexed searches
+    @Column(name = "search_name", insertable = false, updatable = false)
+    private String searchName;
+
+    @Column(name = "product_type")
+    private String productType;
+
+    @Column(name = "quantity")
+    private int quantity;
+
+    @Column(name = "price")
+    private Double price;
+
+    @Column(name = "supplier_id")
+    private int supplierId;
+
+    @Column(name = "supplier_name")
+    private String supplierName;
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getProductType() {
+        return productType;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public int getSupplierId() {
+        return supplierId;
+    }
+
+    public String getSupplierName() {
+        return supplierName;
+    }
+
+    // Default no-argument constructor required by JPA
+    protected ProductInventory() {
+    }
+
+    public ProductInventory(int id, String name, String productType, int quantity, Double price, int supplierId,
+            String supplierName) {
+        this.id = id;
+        this.name = name;
+        this.productType = productType;
+        this.quantity = quantity;
+        this.price = price;
+        this.supplierId = supplierId;
+        this.supplierName = supplierName;
+    }
+
+    // Take a snapshot of the current state of a product
+    public static ProductInventory of(Product product) {
+        Supplier supplier = product.getSupplier();
+
+        return new ProductInventory(product.getId(), product.getName(), product.getProductType(),
+                product.getQuantity(), product.getPrice(), supplier != null ? supplier.getId() : 0,
+                supplier != null ? supplier.getName() : null);
+    }
+}
@@ -0,0 +1,60 @@
+package com.pharmacy.models;
+
+/**
+ * The fields of a partial update of a product. A field left null is not
+ * changed, so a client only sends the fields it wants to change and only
+ * those are checked and written.
+ */
+public class ProductPatch {
+    private String name;
+
+    private Integer quantity;
+
+    private Double price;
+
+    private Integer reorderThreshold;
+
+    // Only the id is read from the request, the supplier is loaded from it
+    private Supplier supplier;
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public Integer getReorderThreshold() {
+        return reorderThreshold;
+    }
+
+    public void setReorderThreshold(Integer reorderThreshold) {
+        this.reorderThreshold = reorderThreshold;
+    }
+
+    public Supplier getSupplier() {
+        return supplier;
+    }
+
+    public void setSupplier(Supplier supplier) {
+        this.supplier = supplier;
+    }
+}
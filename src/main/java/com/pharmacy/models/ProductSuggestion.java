@@ -0,0 +1,29 @@
+package com.pharmacy.models;
+
+// A product name suggested for what has been typed, with the product's
+// available quantity
+public class ProductSuggestion {
+    private final int id;
+
+    private final String name;
+
+    private final int quantity;
+
+    public ProductSuggestion(int id, String name, int quantity) {
+        this.id = id;
+        this.name = name;
+        this.quantity = quantity;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pharmacy.models;
+
+// Counters of the write-behind buffer of the stock ledger since startup
+public class StockBufferStats {
+    // Stock changes written to the ledger and the rows they were written as
+    private final long changesWritten;
+
+    private final long rowsWritten;
+
+    private final long flushes;
+
+    private final double averageFlushMillis;
+
+    private final double maxFlushMillis;
+
+    // Products with changes waiting in the buffer
+    private final int pendingProducts;
+
+    public StockBufferStats(long changesWritten, long rowsWritten, long flushes, double averageFlushMillis,
+            double maxFlushMillis, int pendingProducts) {
+        this.changesWritten = changesWritten;
+        this.rowsWritten = rowsWritten;
+        this.flushes = flushes;
+        this.averageFlushMillis = averageFlushMillis;
+        this.maxFlushMillis = maxFlushMillis;
+        this.pendingProducts = pendingProducts;
+    }
+
+    public long getChangesWritten() {
+        return changesWritten;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    // Average number of stock changes coalesced into one ledger row
+    public double getCoalescingRatio() {
+        return rowsWritten == 0 ? 0 : (double) changesWritten / rowsWritten;
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public double getAverageFlushMillis() {
+        return averageFlushMillis;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushMillis;
+    }
+
+    public int getPendingProducts() {
+        return pendingProducts;
+    }
+}
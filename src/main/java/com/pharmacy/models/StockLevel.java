@@ -0,0 +1,26 @@
+package com.pharmacy.models;
+
+// The available quantity of a product and the threshold it is reordered below
+public class StockLevel {
+    private final int quantity;
+
+    private final int reorderThreshold;
+
+    public StockLevel(int quantity, int reorderThreshold) {
+        this.quantity = quantity;
+        this.reorderThreshold = reorderThreshold;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getReorderThreshold() {
+        return reorderThreshold;
+    }
+
+    // Whether the given quantity of the product is below its reorder threshold
+    public boolean isLow(int quantity) {
+        return quantity < reorderThreshold;
+    }
+}
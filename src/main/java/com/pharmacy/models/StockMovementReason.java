@@ -0,0 +1,8 @@
+package com.pharmacy.models;
+
+// Why the stock of a product changed, stored with every row of the stock ledger
+public enum StockMovementReason {
+    DISPENSE,
+    RECEIVE,
+    ADJUSTMENT
+}
@@ -1,12 +1,18 @@
 package com.pharmacy.models;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
+// Updates only write the changed columns
 @Entity
+@DynamicUpdate
 @Table(name = "suppliers")
 public class Supplier {
+    // Ids come from a pooled sequence so Hibernate can batch inserts, one
+    // sequence call hands out 50 ids
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "suppliers_seq")
+    @SequenceGenerator(name = "suppliers_seq", sequenceName = "suppliers_seq", allocationSize = 50)
     @Column(name = "id")
     private int id;
 
@@ -16,6 +22,11 @@ public class Supplier {
     @Column(name = "contact")
     private String contact;
 
+    // Incremented by every update so concurrent edits are detected
+    @Version
+    @Column(name = "version")
+    private int version;
+
     // Getters and Setters
     public int getId() {
         return id;
@@ -41,6 +52,14 @@ public class Supplier {
         this.contact = contact;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     // Default no-argument constructor required by JPA
     public Supplier() {
     }
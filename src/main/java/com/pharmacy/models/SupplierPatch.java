@@ -0,0 +1,25 @@
+package com.pharmacy.models;
+
+// The fields of a partial update of a supplier, a null field is not changed
+public class SupplierPatch {
+    private String name;
+
+    private String contact;
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getContact() {
+        return contact;
+    }
+
+    public void setContact(String contact) {
+        this.contact = contact;
+    }
+}
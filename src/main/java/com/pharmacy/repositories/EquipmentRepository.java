@@ -1,16 +1,37 @@
 package com.pharmacy.repositories;
 
+import java.util.List;
+import java.util.Collection;
 import java.time.LocalDate;
 
 import com.pharmacy.models.Supplier;
 import com.pharmacy.models.Equipment;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 @Repository
 public interface EquipmentRepository extends JpaRepository<Equipment, Integer> {
+    // Find all equipments, fetching their suppliers in the same query
+    @Override
+    @EntityGraph(attributePaths = "supplier")
+    public List<Equipment> findAll();
+
     // Find an equipment by name, supplier, purchase date, and warranty
     public Equipment findByNameAndSupplierAndPurchaseDateAndWarranty(String name, Supplier supplier,
             LocalDate purchaseDate, String warranty);
-}
\ No newline at end of file
+
+    // Find the next page of equipments after the given id (keyset pagination)
+    @EntityGraph(attributePaths = "supplier")
+    public List<Equipment> findByIdGreaterThanOrderByIdAsc(int id, Limit limit);
+
+    // Find the previous page of equipments before the given id (keyset pagination)
+    @EntityGraph(attributePaths = "supplier")
+    public List<Equipment> findByIdLessThanOrderByIdDesc(int id, Limit limit);
+
+    // Find the equipments with the given ids, in any order
+    @EntityGraph(attributePaths = "supplier")
+    public List<Equipment> findByIdIn(Collection<Integer> ids);
+}
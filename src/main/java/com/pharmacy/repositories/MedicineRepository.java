@@ -1,16 +1,52 @@
 package com.pharmacy.repositories;
 
+import java.util.List;
+import java.util.Collection;
 import java.time.LocalDate;
 
 import com.pharmacy.models.Medicine;
 import com.pharmacy.models.Supplier;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 @Repository
 public interface MedicineRepository extends JpaRepository<Medicine, Integer> {
+    // Find all medicines, fetching their suppliers in the same query
+    @Override
+    @EntityGraph(attributePaths = "supplier")
+    public List<Medicine> findAll();
+
     // Find a medicine by name, manufacturer, supplier, and expiry date
     public Medicine findByNameAndManufacturerAndSupplierAndExpiryDate(String name, String manufacturer,
             Supplier supplier, LocalDate expiryDate);
-}
\ No newline at end of file
+
+    // Find the next page of medicines after the given id (keyset pagination)
+    @EntityGraph(attributePaths = "supplier")
+    public List<Medicine> findByIdGreaterThanOrderByIdAsc(int id, Limit limit);
+
+    // Find the previous page of medicines before the given id (keyset pagination)
+    @EntityGraph(attributePaths = "supplier")
+    public List<Medicine> findByIdLessThanOrderByIdDesc(int id, Limit limit);
+
+    // Find the medicines with the given ids, in any order
+    @EntityGraph(attributePaths = "supplier")
+    public List<Medicine> findByIdIn(Collection<Integer> ids);
+
+    // Find the first page of medicines expiring on or before the given date,
+    // soonest first (uses the expiry_date index)
+    @EntityGraph(attributePaths = "supplier")
+    public List<Medicine> findByExpiryDateLessThanEqualOrderByExpiryDateAscIdAsc(LocalDate until, Limit limit);
+
+    // Find the next page of medicines expiring on or before the given date, after
+    // the (expiry date, id) of the last medicine of the previous page
+    @EntityGraph(attributePaths = "supplier")
+    @Query("SELECT m FROM Medicine m WHERE m.expiryDate <= :until AND (m.expiryDate > :afterDate "
+            + "OR (m.expiryDate = :afterDate AND m.id > :afterId)) ORDER BY m.expiryDate ASC, m.id ASC")
+    public List<Medicine> findExpiringAfter(@Param("until") LocalDate until, @Param("afterDate") LocalDate afterDate,
+            @Param("afterId") int afterId, Limit limit);
+}
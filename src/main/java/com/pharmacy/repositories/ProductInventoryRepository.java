@@ -0,0 +1,45 @@
+package com.pharmacy.repositories;
+
+import java.util.List;
+import java.util.Collection;
+
+import com.pharmacy.models.ProductInventory;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+@Repository
+public interface ProductInventoryRepository extends JpaRepository<ProductInventory, Integer> {
+    // Find the next page of products after the given id (keyset pagination)
+    List<ProductInventory> findByIdGreaterThanOrderByIdAsc(int id, Limit limit);
+
+    // Find the previous page of products before the given id (keyset pagination)
+    List<ProductInventory> findByIdLessThanOrderByIdDesc(int id, Limit limit);
+
+    // Find the products with the given ids, in any order
+    List<ProductInventory> findByIdIn(Collection<Integer> ids);
+
+    // Insert or replace the row of a product in a single statement, taking the
+    // supplier name from the suppliers table
+    @Modifying
+    @Query(value = "MERGE INTO product_inventory (id, name, product_type, quantity, price, supplier_id, supplier_name) "
+            + "KEY (id) SELECT :id, :name, :productType, :quantity, :price, s.id, s.name "
+            + "FROM suppliers s WHERE s.id = :supplierId", nativeQuery = true)
+    int upsert(@Param("id") int id, @Param("name") String name, @Param("productType") String productType,
+            @Param("quantity") int quantity, @Param("price") Double price, @Param("supplierId") int supplierId);
+
+    // Remove the row of a deleted product
+    @Modifying
+    @Query(value = "DELETE FROM product_inventory WHERE id = :id", nativeQuery = true)
+    int deleteRow(@Param("id") int id);
+
+    // Copy a supplier's new name onto all of its products
+    @Modifying
+    @Query(value = "UPDATE product_inventory SET supplier_name = :name WHERE supplier_id = :supplierId",
+            nativeQuery = true)
+    int renameSupplier(@Param("supplierId") int supplierId, @Param("name") String name);
+}
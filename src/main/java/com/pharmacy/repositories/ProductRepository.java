@@ -1,14 +1,27 @@
 package com.pharmacy.repositories;
 
+import java.util.Set;
+import java.util.List;
 import java.util.Collection;
 
 import com.pharmacy.models.Product;
 
 import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Integer> {
+    // Find all products, fetching their suppliers in the same query
+    @Override
+    @EntityGraph(attributePaths = "supplier")
+    List<Product> findAll();
+
     // Find all products by supplier id
     Collection<Product> findBySupplierId(int supplierId);
+
+    // Find which of the given natural keys are already used by a product
+    @Query("SELECT p.naturalKey FROM Product p WHERE p.naturalKey IN :keys")
+    Set<String> findExistingNaturalKeys(Collection<String> keys);
 }
\ No newline at end of file
@@ -1,8 +1,14 @@
 package com.pharmacy.repositories;
 
+import java.util.List;
+import java.util.Collection;
+
 import com.pharmacy.models.Supplier;
 
 import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 @Repository
@@ -12,4 +18,24 @@ public interface SupplierRepository extends JpaRepository<Supplier, Integer> {
 
     // Find a supplier by contact
     public Supplier findByContact(String contact);
-}
\ No newline at end of file
+
+    // Find the suppliers using the given name or the given contact, at most one
+    // of each because both columns are unique
+    public List<Supplier> findByNameOrContact(String name, String contact);
+
+    // Find all the suppliers with one of the given names
+    public List<Supplier> findByNameIn(Collection<String> names);
+
+    // Read the number of products of a supplier from its product_count column
+    @Query(value = "SELECT product_count FROM suppliers WHERE id = :id", nativeQuery = true)
+    public Integer findProductCount(@Param("id") int id);
+
+    // Read the product count of every supplier as (id, count) pairs
+    @Query(value = "SELECT id, product_count FROM suppliers", nativeQuery = true)
+    public List<Object[]> findProductCounts();
+
+    // Add to or subtract from the product count of a supplier
+    @Modifying
+    @Query(value = "UPDATE suppliers SET product_count = product_count + :delta WHERE id = :id", nativeQuery = true)
+    public int addToProductCount(@Param("id") int id, @Param("delta") int delta);
+}
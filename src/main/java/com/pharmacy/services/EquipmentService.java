@@ -1,18 +1,38 @@
 package com.pharmacy.services;
 
+import java.util.List;
 import java.util.Collection;
 
 import com.pharmacy.models.Equipment;
+import com.pharmacy.models.EquipmentPatch;
+import com.pharmacy.models.KeysetPage;
 
 public interface EquipmentService {
   // Get all the equipments
   public Collection<Equipment> getAllEquipments();
 
+  // Get a page of equipments after or before the given id (keyset pagination)
+  public KeysetPage<Equipment> getEquipmentsPage(Integer afterId, Integer beforeId, int size);
+
+  // Count all the equipments
+  public long countEquipments();
+
+  // Search equipments by name, ranking names that start with the query first
+  public List<Equipment> searchEquipments(String query, int limit);
+
   // Create a new equipment
   public void createEquipment(Equipment equipment);
 
-  // Update an equipment
-  public void updateEquipment(Equipment equipment);
+  // Get an equipment by id, or null if it does not exist
+  public Equipment getEquipmentById(int id);
+
+  // Update an equipment and return it with its new version. Fails if the equipment was
+  // changed since the version it holds.
+  public Equipment updateEquipment(Equipment equipment);
+
+  // Partially update an equipment from the version it was read at, only the fields
+  // set in the patch are checked and changed
+  public Equipment patchEquipment(int id, int version, EquipmentPatch patch);
 
   // Delete an equipment
   public void deleteEquipment(int id);
@@ -0,0 +1,20 @@
+package com.pharmacy.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.pharmacy.models.ExportFormat;
+
+public interface ExportService {
+  // Write all the products to the output stream
+  public void exportProducts(ExportFormat format, OutputStream out) throws IOException;
+
+  // Write all the medicines to the output stream
+  public void exportMedicines(ExportFormat format, OutputStream out) throws IOException;
+
+  // Write all the equipments to the output stream
+  public void exportEquipments(ExportFormat format, OutputStream out) throws IOException;
+
+  // Write all the suppliers to the output stream
+  public void exportSuppliers(ExportFormat format, OutputStream out) throws IOException;
+}
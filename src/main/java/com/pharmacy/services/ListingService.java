@@ -0,0 +1,18 @@
+package com.pharmacy.services;
+
+import com.pharmacy.models.ListQuery;
+import com.pharmacy.models.ListingPage;
+
+public interface ListingService {
+  // Get a page of all the products, medicines and equipments together
+  public ListingPage listProducts(ListQuery query);
+
+  // Get a page of the medicines
+  public ListingPage listMedicines(ListQuery query);
+
+  // Get a page of the equipments
+  public ListingPage listEquipments(ListQuery query);
+
+  // Get a page of the suppliers
+  public ListingPage listSuppliers(ListQuery query);
+}
@@ -1,18 +1,47 @@
 package com.pharmacy.services;
 
+import java.util.List;
 import java.util.Collection;
+import java.time.LocalDate;
 
 import com.pharmacy.models.Medicine;
+import com.pharmacy.models.ExpiryAlert;
+import com.pharmacy.models.MedicinePatch;
+import com.pharmacy.models.KeysetPage;
 
 public interface MedicineService {
   // Get all the medicines
   public Collection<Medicine> getAllMedicines();
 
+  // Get a page of medicines after or before the given id (keyset pagination)
+  public KeysetPage<Medicine> getMedicinesPage(Integer afterId, Integer beforeId, int size);
+
+  // Count all the medicines
+  public long countMedicines();
+
+  // Get a page of the medicines expiring within the given number of days, soonest
+  // first, after the expiry date and id of the last medicine of the previous page
+  public KeysetPage<Medicine> getExpiringMedicines(int days, LocalDate afterDate, Integer afterId, int size);
+
+  // Get the expiry alerts raised after the one with the given id, oldest first
+  public List<ExpiryAlert> getExpiryAlerts(long afterId, int limit);
+
+  // Search medicines by name, ranking names that start with the query first
+  public List<Medicine> searchMedicines(String query, int limit);
+
   // Create a new medicine
   public void createMedicine(Medicine medicine);
 
-  // Update a medicine
-  public void updateMedicine(Medicine medicine);
+  // Get a medicine by id, or null if it does not exist
+  public Medicine getMedicineById(int id);
+
+  // Update a medicine and return it with its new version. Fails if the medicine was
+  // changed since the version it holds.
+  public Medicine updateMedicine(Medicine medicine);
+
+  // Partially update a medicine from the version it was read at, only the fields
+  // set in the patch are checked and changed
+  public Medicine patchMedicine(int id, int version, MedicinePatch patch);
 
   // Delete a medicine
   public void deleteMedicine(int id);
@@ -0,0 +1,16 @@
+package com.pharmacy.services;
+
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import com.pharmacy.models.ImportProgress;
+
+public interface ProductImportService {
+  // Import medicines from a CSV file with the columns name, quantity, price,
+  // supplier, manufacturer and expiry_date, committing every batchSize rows
+  public ImportProgress importMedicines(InputStream csv, int batchSize, Consumer<ImportProgress> progress);
+
+  // Import equipments from a CSV file with the columns name, quantity, price,
+  // supplier, warranty and purchase_date, committing every batchSize rows
+  public ImportProgress importEquipments(InputStream csv, int batchSize, Consumer<ImportProgress> progress);
+}
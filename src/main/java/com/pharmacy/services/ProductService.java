@@ -1,13 +1,61 @@
 package com.pharmacy.services;
 
+import java.util.List;
 import java.util.Collection;
 
 import com.pharmacy.models.Product;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.LowStockProduct;
+import com.pharmacy.models.DashboardSummary;
+import com.pharmacy.models.InventoryValuation;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.models.ProductSuggestion;
+import com.pharmacy.models.StockBufferStats;
 
 public interface ProductService {
   // Get all the products
   public Collection<Product> getAllProducts();
 
+  // Get a page of the product inventory after or before the given id (keyset
+  // pagination)
+  public KeysetPage<ProductInventory> getProductsPage(Integer afterId, Integer beforeId, int size);
+
+  // Count all the products
+  public long countProducts();
+
+  // Search products by name, ranking names that start with the query first
+  public List<ProductInventory> searchProducts(String query, int limit);
+
+  // Suggest up to the given number of products whose name starts with the query,
+  // with their available quantities, in name order
+  public List<ProductSuggestion> suggestProducts(String query, int limit);
+
+  // Get the quantity of a product in stock, including the stock movements not
+  // compacted into the product yet
+  public int getQuantity(int productId);
+
+  // Take the given quantity of a product out of stock, returning the new
+  // quantity. Fails without changing anything if there is not enough stock.
+  public int dispense(int productId, int quantity);
+
+  // Add the given quantity of a product to the stock, returning the new quantity
+  public int receive(int productId, int quantity);
+
+  // Get a page of the products whose available quantity is below their reorder
+  // threshold, after the given id
+  public KeysetPage<LowStockProduct> getLowStockProducts(Integer afterId, int size);
+
+  // Get the number, quantity and value of the products in stock per supplier and
+  // product type, from totals kept up to date by every product write
+  public InventoryValuation getInventoryValuation();
+
+  // Get the counters of the dashboard: products per type, suppliers, units and
+  // value in stock, expired, expiring and low stock products
+  public DashboardSummary getDashboardSummary();
+
+  // Get the counters of the buffer the stock movements are written through
+  public StockBufferStats getStockBufferStats();
+
   // Get a list of products by the supplier's id
   public Collection<Product> getProductsBySupplierId(int supplierId);
 }
\ No newline at end of file
@@ -1,18 +1,31 @@
 package com.pharmacy.services;
 
+import java.util.Map;
 import java.util.Collection;
 
 import com.pharmacy.models.Supplier;
+import com.pharmacy.models.SupplierPatch;
 
 public interface SupplierService {
   // Get all the suppliers
   public Collection<Supplier> getAllSuppliers();
 
+  // Get the number of products of every supplier by supplier id
+  public Map<Integer, Integer> getProductCounts();
+
   // Create a new supplier
   public void createSupplier(Supplier supplier);
 
-  // Update a supplier
-  public void updateSupplier(Supplier supplier);
+  // Get a supplier by id, or null if it does not exist
+  public Supplier getSupplierById(int id);
+
+  // Update a supplier and return it with its new version. Fails if the supplier
+  // was changed since the version it holds.
+  public Supplier updateSupplier(Supplier supplier);
+
+  // Partially update a supplier from the version it was read at, only the
+  // fields set in the patch are checked and changed
+  public Supplier patchSupplier(int id, int version, SupplierPatch patch);
 
   // Delete a supplier
   public void deleteSupplier(int id);
@@ -0,0 +1,88 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.io.Reader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.BufferedReader;
+import java.util.List;
+import java.util.ArrayList;
+
+// Reads one CSV record at a time from a stream. Fields may be quoted, quoted
+// fields can contain commas, line breaks and doubled quotes ("").
+final class CsvReader {
+  private final BufferedReader reader;
+
+  // Line number the last record returned by next() started on
+  private int recordLine;
+
+  private int line = 1;
+
+  CsvReader(Reader reader) {
+    this.reader = new BufferedReader(reader);
+  }
+
+  // Read the next record, or return null at the end of the stream. Blank lines
+  // are skipped.
+  List<String> next() {
+    try {
+      int c = reader.read();
+
+      // Skip blank lines between records
+      while (c == '\r' || c == '\n') {
+        if (c == '\n') {
+          line++;
+        }
+        c = reader.read();
+      }
+
+      if (c == -1) {
+        return null;
+      }
+
+      recordLine = line;
+      List<String> fields = new ArrayList<>();
+      StringBuilder field = new StringBuilder();
+      boolean quoted = false;
+
+      while (c != -1) {
+        if (quoted) {
+          if (c == '"') {
+            reader.mark(1);
+            if (reader.read() == '"') {
+              field.append('"');
+            } else {
+              reader.reset();
+              quoted = false;
+            }
+          } else {
+            if (c == '\n') {
+              line++;
+            }
+            field.append((char) c);
+          }
+        } else if (c == '"' && field.length() == 0) {
+          quoted = true;
+        } else if (c == ',') {
+          fields.add(field.toString());
+          field.setLength(0);
+        } else if (c == '\n') {
+          line++;
+          break;
+        } else if (c != '\r') {
+          field.append((char) c);
+        }
+
+        c = reader.read();
+      }
+
+      fields.add(field.toString());
+      return fields;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  int getRecordLine() {
+    return recordLine;
+  }
+}
@@ -1,13 +1,23 @@
 package com.pharmacy.services.servicesImplementation;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Collection;
 
 import com.pharmacy.models.Equipment;
+import com.pharmacy.models.EquipmentPatch;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.events.ProductChangedEvent;
 import com.pharmacy.services.EquipmentService;
 import com.pharmacy.repositories.EquipmentRepository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Service
@@ -15,63 +25,144 @@ public class EquipmentServiceImpl implements EquipmentService {
 
   private EquipmentRepository equipmentRepository;
 
+  private ApplicationEventPublisher eventPublisher;
+
+  private StockLedger stockLedger;
+
+  private ProductSearchIndex productSearchIndex;
+
   @Autowired
-  public EquipmentServiceImpl(EquipmentRepository equipmentRepository) {
+  public EquipmentServiceImpl(EquipmentRepository equipmentRepository, ApplicationEventPublisher eventPublisher,
+      StockLedger stockLedger, ProductSearchIndex productSearchIndex) {
     this.equipmentRepository = equipmentRepository;
+    this.eventPublisher = eventPublisher;
+    this.stockLedger = stockLedger;
+    this.productSearchIndex = productSearchIndex;
   }
 
-  // Validation helper methods
-  private void checkEquipmentFields(Equipment equipment) {
-    if (equipment.getSupplier() == null) {
-      throw new RuntimeException("The supplier does not exist");
-    }
+  // Validation helper methods, also used by the CSV import
+  static void checkEquipmentFields(Equipment equipment) {
+    ProductFields.checkSupplier(equipment.getSupplier());
+    ProductFields.checkPrice(equipment.getPrice());
+    ProductFields.checkQuantity(equipment.getQuantity());
+    ProductFields.checkReorderThreshold(equipment.getReorderThreshold());
+    checkPurchaseDate(equipment.getPurchaseDate());
+  }
 
-    if (equipment.getPrice() < 0 || equipment.getPrice() == null) {
-      throw new RuntimeException("The price cannot be negative");
+  private static void checkPurchaseDate(LocalDate purchaseDate) {
+    if (purchaseDate.isAfter(LocalDate.now())) {
+      throw new RuntimeException("The purchase date cannot be in the future");
     }
+  }
 
-    if (equipment.getQuantity() < 0) {
-      throw new RuntimeException("The quantity cannot be negative");
+  // Turn a violation of the natural key index into the given duplicate message,
+  // any other integrity violation is passed on as it is
+  private static RuntimeException duplicateOr(DataIntegrityViolationException e, String duplicateMessage) {
+    if (UniqueConstraints.isViolated(e, UniqueConstraints.PRODUCT_NATURAL_KEY)) {
+      return new RuntimeException(duplicateMessage);
     }
 
-    if (equipment.getPurchaseDate().isAfter(LocalDate.now())) {
-      throw new RuntimeException("The purchase date cannot be in the future");
-    }
+    return e;
   }
 
-  // Check if a equipment with the same name, supplier, purchase date, and
-  // warranty
-  private void checkForDuplicateEquipment(Equipment equipment) {
-    Equipment existingEquipment = equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(
-        equipment.getName().trim(),
-        equipment.getSupplier(),
-        equipment.getPurchaseDate(),
-        equipment.getWarranty());
+  // The error for an update made from an older version of the equipment
+  private static OptimisticLockingFailureException staleVersion() {
+    return new OptimisticLockingFailureException(
+        "The equipment was changed by someone else, reload it and try again");
+  }
 
-    if (existingEquipment != null) {
-      throw new RuntimeException(
-          "The equipment with the same name, supplier, purchase date, and warranty already exists");
-    }
+  // Show the equipments with the stock they have available, their pending
+  // movements added to the stored quantity
+  private <T extends Collection<Equipment>> T available(T equipments) {
+    stockLedger.addPendingDeltas(equipments);
+    return equipments;
+  }
+
+  private KeysetPage<Equipment> available(KeysetPage<Equipment> page) {
+    available(page.getContent());
+    return page;
   }
 
   // Get all the equipments
   @Override
   public Collection<Equipment> getAllEquipments() {
-    return equipmentRepository.findAll();
+    return available(equipmentRepository.findAll());
+  }
+
+  // Get a page of equipments after or before the given id (keyset pagination)
+  @Override
+  public KeysetPage<Equipment> getEquipmentsPage(Integer afterId, Integer beforeId, int size) {
+    size = KeysetPage.clampSize(size);
+
+    // Fetch one extra row to know whether there is another page
+    Limit limit = Limit.of(size + 1);
+
+    if (beforeId != null) {
+      return available(KeysetPage.backward(equipmentRepository.findByIdLessThanOrderByIdDesc(beforeId, limit),
+          size, Equipment::getId));
+    }
+
+    int cursor = afterId != null ? afterId : 0;
+    return available(KeysetPage.forward(equipmentRepository.findByIdGreaterThanOrderByIdAsc(cursor, limit),
+        size, afterId != null, Equipment::getId));
+  }
+
+  // Count all the equipments
+  @Override
+  public long countEquipments() {
+    return equipmentRepository.count();
+  }
+
+  // Search equipments by name and supplier name, best matches first
+  @Override
+  public List<Equipment> searchEquipments(String query, int limit) {
+    List<Integer> ids = productSearchIndex.search(query, "Equipment", KeysetPage.clampSize(limit));
+
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+
+    return available(NameSearch.inRankOrder(ids, equipmentRepository.findByIdIn(ids), Equipment::getId));
+  }
+
+  // Get an equipment by id, or null if it does not exist
+  @Override
+  public Equipment getEquipmentById(int id) {
+    Equipment equipment = equipmentRepository.findById(id).orElse(null);
+
+    if (equipment != null) {
+      available(List.of(equipment));
+    }
+
+    return equipment;
   }
 
   // Create a new equipment
   @Override
+  @Transactional
   public void createEquipment(Equipment equipment) {
     checkEquipmentFields(equipment);
-    checkForDuplicateEquipment(equipment);
-    equipmentRepository.save(equipment);
+
+    // The unique natural key index rejects duplicates
+    try {
+      equipmentRepository.saveAndFlush(equipment);
+    } catch (DataIntegrityViolationException e) {
+      throw duplicateOr(e,
+          "The equipment with the same name, supplier, purchase date, and warranty already exists");
+    }
+
+    eventPublisher.publishEvent(ProductChangedEvent.created(equipment));
   }
 
   // Update an equipment
   @Override
-  public void updateEquipment(Equipment equipment) {
-    // Check if the equipment exists
+  @Transactional
+  public Equipment updateEquipment(Equipment equipment) {
+    // Read the stored equipment once. The update needs its values from before the
+    // change: the event compares them for the inventory, the stock alerts, the
+    // valuation and the search indexes, and a versioned UPDATE without the read
+    // could not give them back. The save below merges into this loaded equipment,
+    // so it is not read a second time.
     Equipment existingEquipment = equipmentRepository.findById(equipment.getId()).orElse(null);
 
     // If the equipment does not exist
@@ -82,26 +173,113 @@ public class EquipmentServiceImpl implements EquipmentService {
     // Check the fields of the equipment
     checkEquipmentFields(equipment);
 
-    // Check if a equipment with the same name, supplier, purchase date, and
-    // warranty already exists
-    Equipment duplicateEquipment = equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(
-        equipment.getName().trim(),
-        equipment.getSupplier(),
-        equipment.getPurchaseDate(),
-        equipment.getWarranty());
-
-    // If a equipment with the same name, supplier, purchase date, and warranty
-    // already exists
-    if (duplicateEquipment != null && duplicateEquipment.getId() != equipment.getId()) {
-      throw new RuntimeException(
+    // Check the equipment was not changed since the version the update was made from
+    if (equipment.getVersion() != existingEquipment.getVersion()) {
+      throw staleVersion();
+    }
+
+    // Take a snapshot of the stored equipment before it is overwritten by the save
+    ProductInventory before = ProductInventory.of(existingEquipment);
+    int storedVersion = existingEquipment.getVersion();
+
+    // Take the stock lock before the row lock of the save when the quantity or
+    // the reorder threshold is changed, the same order as the dispenses. The
+    // quantity is changed if it differs from the one the form showed, or from the
+    // stored one when the form did not send it.
+    boolean quantityChanged = equipment.getQuantity() != (equipment.getShownQuantity() != null
+        ? equipment.getShownQuantity() : before.getQuantity());
+    if (quantityChanged || equipment.getReorderThreshold() != existingEquipment.getReorderThreshold()) {
+      stockLedger.lock(equipment.getId());
+    }
+
+    // The unique natural key index rejects duplicates and the version column
+    // rejects an update committed in between. The save merges the changes into
+    // the equipment loaded above, so the flush is one versioned UPDATE.
+    try {
+      equipmentRepository.saveAndFlush(equipment);
+
+      // The quantity is changed through the stock ledger, the save only copied
+      // the typed one onto the loaded equipment
+      existingEquipment.setQuantity(quantityChanged
+          ? stockLedger.applyEdit(existingEquipment, equipment.getShownQuantity(), storedVersion)
+          : before.getQuantity());
+    } catch (DataIntegrityViolationException e) {
+      throw duplicateOr(e,
+          "The equipment with the same name, supplier, purchase date, and warranty already exists");
+    } catch (OptimisticLockingFailureException e) {
+      throw staleVersion();
+    }
+
+    eventPublisher.publishEvent(ProductChangedEvent.updated(before, existingEquipment));
+    return existingEquipment;
+  }
+
+  // Partially update an equipment, only the fields set in the patch are checked and
+  // changed, and only the changed columns are written
+  @Override
+  @Transactional
+  public Equipment patchEquipment(int id, int version, EquipmentPatch patch) {
+    Equipment equipment = equipmentRepository.findById(id).orElse(null);
+
+    // If the equipment does not exist
+    if (equipment == null) {
+      throw new RuntimeException("The equipment does not exist");
+    }
+
+    // Check the equipment was not changed since the version the patch was made from
+    if (version != equipment.getVersion()) {
+      throw staleVersion();
+    }
+
+    // Check every field before changing any, so a rejected patch leaves the
+    // stored equipment as it was
+    ProductFields.check(patch);
+    if (patch.getPurchaseDate() != null) {
+      checkPurchaseDate(patch.getPurchaseDate());
+    }
+
+    ProductInventory before = ProductInventory.of(equipment);
+    int storedVersion = equipment.getVersion();
+
+    // Take the stock lock before the row lock of the save when the quantity is
+    // sent or the reorder threshold is changed, the same order as the dispenses.
+    // A sent quantity becomes the available quantity.
+    boolean quantityChanged = patch.getQuantity() != null;
+    if (quantityChanged || (patch.getReorderThreshold() != null
+        && patch.getReorderThreshold() != equipment.getReorderThreshold())) {
+      stockLedger.lock(id);
+    }
+
+    ProductFields.apply(patch, equipment);
+    if (patch.getWarranty() != null) {
+      equipment.setWarranty(patch.getWarranty());
+    }
+    if (patch.getPurchaseDate() != null) {
+      equipment.setPurchaseDate(patch.getPurchaseDate());
+    }
+
+    // The equipment is managed, so the flush only updates it if a field changed
+    try {
+      equipmentRepository.saveAndFlush(equipment);
+
+      // The quantity is changed through the stock ledger
+      if (quantityChanged) {
+        equipment.setQuantity(stockLedger.applyEdit(equipment, null, storedVersion));
+      }
+    } catch (DataIntegrityViolationException e) {
+      throw duplicateOr(e,
           "The equipment with the same name, supplier, purchase date, and warranty already exists");
+    } catch (OptimisticLockingFailureException e) {
+      throw staleVersion();
     }
 
-    equipmentRepository.save(equipment);
+    eventPublisher.publishEvent(ProductChangedEvent.updated(before, equipment));
+    return equipment;
   }
 
   // Delete an equipment
   @Override
+  @Transactional
   public void deleteEquipment(int id) {
     // Check if the equipment exists
     Equipment existingEquipment = equipmentRepository.findById(id).orElse(null);
@@ -112,5 +290,7 @@ public class EquipmentServiceImpl implements EquipmentService {
     }
 
     equipmentRepository.deleteById(id);
+    stockLedger.discard(id);
+    eventPublisher.publishEvent(ProductChangedEvent.deleted(ProductInventory.of(existingEquipment)));
   }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.List;
+import java.util.Objects;
+import java.time.LocalDate;
+
+import com.pharmacy.models.ExpiryAlert;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.events.ProductChangedEvent;
+
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Raises an alert, a row in expiry_alerts, when the expiry date of a medicine
+ * comes within the alert horizon. The scheduled check remembers the last date
+ * it processed, so each run only reads the dates that entered the horizon since
+ * the previous one, a range of the expiry date index. Medicines written with a
+ * date already inside the horizon are alerted by the event listener, in the
+ * transaction of the write.
+ */
+@Component
+public class ExpiryAlerts {
+  // Add an alert for the selected medicines that have none for their date yet
+  private static final String ADD_ALERTS_SQL = "INSERT INTO expiry_alerts (medicine_id, expiry_date) "
+      + "SELECT m.id, m.expiry_date FROM medicines m WHERE %s AND NOT EXISTS (SELECT 1 FROM expiry_alerts a "
+      + "WHERE a.medicine_id = m.id AND a.expiry_date = m.expiry_date)";
+
+  private static final String ALERTS_SQL = "SELECT a.id, a.medicine_id, p.name, a.expiry_date, a.created_at "
+      + "FROM expiry_alerts a JOIN products p ON p.id = a.medicine_id WHERE a.id > ? ORDER BY a.id LIMIT ?";
+
+  private final int horizonDays;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  public ExpiryAlerts(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+      @Value("${pharmacy.expiry.horizon-days:30}") int horizonDays) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.horizonDays = horizonDays;
+  }
+
+  // Number of days before its expiry date a medicine is alerted
+  public int getHorizonDays() {
+    return horizonDays;
+  }
+
+  // The last expiry date inside the horizon today
+  public LocalDate getHorizonEnd() {
+    return LocalDate.now().plusDays(horizonDays);
+  }
+
+  @Scheduled(fixedDelayString = "${pharmacy.expiry.check-delay-ms:3600000}")
+  public void checkPeriodically() {
+    check();
+  }
+
+  // Alert the medicines whose expiry date entered the horizon since the last
+  // check, returning the number of alerts added
+  public int check() {
+    Integer added = transactionTemplate.execute(status -> {
+      LocalDate horizonEnd = getHorizonEnd();
+      List<LocalDate> processed = jdbcTemplate.queryForList(
+          "SELECT alerted_through FROM expiry_alert_state WHERE id = 1 FOR UPDATE", LocalDate.class);
+
+      // Nothing new entered the horizon since the last check
+      if (!processed.isEmpty() && !processed.get(0).isBefore(horizonEnd)) {
+        return 0;
+      }
+
+      // The first check has no processed date and takes every date up to the
+      // end of the horizon, later ones only the dates after the processed one
+      int count = processed.isEmpty()
+          ? jdbcTemplate.update(String.format(ADD_ALERTS_SQL, "m.expiry_date <= ?"), horizonEnd)
+          : jdbcTemplate.update(String.format(ADD_ALERTS_SQL, "m.expiry_date > ? AND m.expiry_date <= ?"),
+              processed.get(0), horizonEnd);
+
+      jdbcTemplate.update("MERGE INTO expiry_alert_state (id, alerted_through) KEY (id) VALUES (1, ?)",
+          horizonEnd);
+      return count;
+    });
+
+    return added != null ? added : 0;
+  }
+
+  // Alert the medicines created or changed with an expiry date already inside
+  // the horizon, the scheduled check has passed their date
+  @EventListener
+  public void onProductChanged(ProductChangedEvent event) {
+    if (event.isStockOnly()) {
+      return;
+    }
+
+    List<Integer> medicineIds = event.getChanges().stream()
+        .map(ProductChangedEvent.Change::getAfter)
+        .filter(Objects::nonNull)
+        .filter(after -> "Medicine".equals(after.getProductType()))
+        .map(ProductInventory::getId)
+        .toList();
+
+    if (medicineIds.isEmpty()) {
+      return;
+    }
+
+    namedParameterJdbcTemplate.update(String.format(ADD_ALERTS_SQL, "m.id IN (:ids) AND m.expiry_date <= :end"),
+        new MapSqlParameterSource("ids", medicineIds).addValue("end", getHorizonEnd()));
+  }
+
+  // Get the alerts raised after the one with the given id, oldest first, so a
+  // reader can pick up where it stopped
+  public List<ExpiryAlert> getAlerts(long afterId, int limit) {
+    return jdbcTemplate.query(ALERTS_SQL, (rs, rowNum) -> new ExpiryAlert(rs.getLong(1), rs.getInt(2),
+        rs.getString(3), rs.getObject(4, LocalDate.class), rs.getTimestamp(5).toLocalDateTime()), afterId, limit);
+  }
+}
@@ -0,0 +1,196 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.io.Writer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.util.Locale;
+
+import com.pharmacy.models.ExportFormat;
+import com.pharmacy.services.ExportService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.stereotype.Service;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Exports whole tables by reading them through a forward-only JDBC cursor and
+ * writing every row to the output as soon as it is read. No entities are
+ * loaded, so memory use stays the same whatever the size of the inventory.
+ * Medicines and equipments use the column names of the CSV import so an
+ * export can be imported again.
+ */
+@Service
+public class ExportServiceImpl implements ExportService {
+  // Rows fetched from the database per round trip
+  static final int FETCH_SIZE = 500;
+
+  // The available quantity, the stored one with the pending movements added
+  private static final String QUANTITY = "p.quantity + COALESCE((SELECT SUM(m.delta) FROM stock_movements m "
+      + "WHERE m.compacted = FALSE AND m.product_id = p.id), 0) AS quantity";
+
+  // The product queries cast prices so they are always written with two
+  // decimals, whatever the type of the price column in older databases
+  private static final String PRODUCTS_SQL = "SELECT p.id, p.name, p.product_type, " + QUANTITY + ", "
+      + "CAST(p.price AS DECIMAL(10, 2)) AS price, s.name AS supplier "
+      + "FROM products p JOIN suppliers s ON s.id = p.supplier_id ORDER BY p.id";
+
+  private static final String MEDICINES_SQL = "SELECT p.id, p.name, " + QUANTITY + ", "
+      + "CAST(p.price AS DECIMAL(10, 2)) AS price, s.name AS supplier, m.manufacturer, m.expiry_date "
+      + "FROM products p JOIN medicines m ON m.id = p.id JOIN suppliers s ON s.id = p.supplier_id ORDER BY p.id";
+
+  private static final String EQUIPMENTS_SQL = "SELECT p.id, p.name, " + QUANTITY + ", "
+      + "CAST(p.price AS DECIMAL(10, 2)) AS price, s.name AS supplier, e.warranty, e.purchase_date "
+      + "FROM products p JOIN equipments e ON e.id = p.id JOIN suppliers s ON s.id = p.supplier_id ORDER BY p.id";
+
+  private static final String SUPPLIERS_SQL = "SELECT id, name, contact FROM suppliers ORDER BY id";
+
+  private JdbcTemplate jdbcTemplate;
+
+  private ObjectMapper objectMapper;
+
+  private StockMovementBuffer buffer;
+
+  @Autowired
+  public ExportServiceImpl(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, StockMovementBuffer buffer) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.objectMapper = objectMapper;
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void exportProducts(ExportFormat format, OutputStream out) throws IOException {
+    export(PRODUCTS_SQL, format, out);
+  }
+
+  @Override
+  public void exportMedicines(ExportFormat format, OutputStream out) throws IOException {
+    export(MEDICINES_SQL, format, out);
+  }
+
+  @Override
+  public void exportEquipments(ExportFormat format, OutputStream out) throws IOException {
+    export(EQUIPMENTS_SQL, format, out);
+  }
+
+  @Override
+  public void exportSuppliers(ExportFormat format, OutputStream out) throws IOException {
+    export(SUPPLIERS_SQL, format, out);
+  }
+
+  // Run the query and write its rows one at a time. If writing fails, for
+  // example because the client disconnected, the query is abandoned and its
+  // connection released before the IOException is thrown.
+  private void export(String sql, ExportFormat format, OutputStream out) throws IOException {
+    // Write the buffered deliveries first, the query only counts the pending
+    // movements in the ledger
+    buffer.flush();
+
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+    try {
+      jdbcTemplate.query(connection -> {
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(FETCH_SIZE);
+        return statement;
+      }, (ResultSet resultSet) -> {
+        try {
+          if (format == ExportFormat.CSV) {
+            writeCsv(resultSet, writer);
+          } else {
+            writeNdjson(resultSet, writer);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return null;
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    writer.flush();
+  }
+
+  // Write a header line with the column names, then one line per row
+  private void writeCsv(ResultSet resultSet, Writer writer) throws SQLException, IOException {
+    String[] columns = columnNames(resultSet.getMetaData());
+    writer.write(String.join(",", columns));
+    writer.write('\n');
+
+    while (resultSet.next()) {
+      for (int i = 1; i <= columns.length; i++) {
+        if (i > 1) {
+          writer.write(',');
+        }
+
+        Object value = value(resultSet, i);
+        if (value instanceof BigDecimal decimal) {
+          writer.write(decimal.toPlainString());
+        } else if (value != null) {
+          writer.write(csvField(value.toString()));
+        }
+      }
+      writer.write('\n');
+    }
+  }
+
+  // Write one JSON object per row, each on its own line
+  private void writeNdjson(ResultSet resultSet, Writer writer) throws SQLException, IOException {
+    String[] columns = columnNames(resultSet.getMetaData());
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+    generator.setRootValueSeparator(null);
+
+    while (resultSet.next()) {
+      generator.writeStartObject();
+      for (int i = 1; i <= columns.length; i++) {
+        generator.writeFieldName(columns[i - 1]);
+        generator.writeObject(value(resultSet, i));
+      }
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+    }
+
+    generator.flush();
+  }
+
+  private static String[] columnNames(ResultSetMetaData metaData) throws SQLException {
+    String[] columns = new String[metaData.getColumnCount()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = metaData.getColumnLabel(i + 1).toLowerCase(Locale.ROOT);
+    }
+    return columns;
+  }
+
+  // Read a column, turning dates into ISO strings
+  private static Object value(ResultSet resultSet, int column) throws SQLException {
+    Object value = resultSet.getObject(column);
+
+    if (value instanceof Date date) {
+      return date.toLocalDate().toString();
+    }
+
+    return value;
+  }
+
+  // Quote a CSV field if it contains a separator, a quote or a line break
+  private static String csvField(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      return value;
+    }
+
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
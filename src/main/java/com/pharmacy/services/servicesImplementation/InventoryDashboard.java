@@ -0,0 +1,144 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Collections;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pharmacy.models.DashboardSummary;
+import com.pharmacy.events.ProductChangedEvent;
+
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The counters of the dashboard, computed from the valuation totals kept per
+ * supplier and type and a few indexed counts, so they never read the product
+ * list. The summary is cached until a write changes one of its counters:
+ * product writes and compactions drop it through their events, supplier
+ * writes, low stock crossings and repaired valuation totals call invalidate().
+ * The expiry counters depend on the date, so a summary is only used on the day
+ * it was computed.
+ */
+@Component
+public class InventoryDashboard {
+  private static final String TOTALS_SQL = "SELECT product_type, SUM(product_count) AS product_count, "
+      + "SUM(total_quantity) AS total_quantity, SUM(total_value) AS total_value FROM inventory_valuation "
+      + "GROUP BY product_type HAVING SUM(product_count) > 0";
+
+  // Both counts read one range of the expiry date index
+  private static final String EXPIRY_SQL = "SELECT COUNT(CASE WHEN expiry_date < ? THEN 1 END), "
+      + "COUNT(CASE WHEN expiry_date >= ? THEN 1 END) FROM medicines WHERE expiry_date <= ?";
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  // Bumped on every invalidation, a summary is only cached if no invalidation
+  // happened while it was computed
+  private final AtomicLong generation = new AtomicLong();
+
+  private volatile DashboardSummary summary;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private ExpiryAlerts expiryAlerts;
+
+  @Autowired
+  public InventoryDashboard(JdbcTemplate jdbcTemplate, ExpiryAlerts expiryAlerts) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.expiryAlerts = expiryAlerts;
+  }
+
+  // Get the cached summary, or compute it if a write or the date change
+  // dropped it
+  public DashboardSummary getSummary() {
+    DashboardSummary cached = summary;
+
+    if (cached != null && cached.getComputedAt().toLocalDate().equals(LocalDate.now())) {
+      hits.incrementAndGet();
+      return cached;
+    }
+
+    misses.incrementAndGet();
+    long loadedGeneration = generation.get();
+    DashboardSummary loaded = compute();
+
+    // A summary computed inside a transaction may include uncommitted writes, so
+    // it is returned as it is and not cached
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      synchronized (this) {
+        if (generation.get() == loadedGeneration) {
+          summary = loaded;
+        }
+      }
+    }
+
+    return loaded;
+  }
+
+  // Every product write, including compactions, changes a counter
+  @EventListener
+  public void onProductChanged(ProductChangedEvent event) {
+    invalidate();
+  }
+
+  // Drop the cached summary now and again once the current transaction ends
+  public void invalidate() {
+    clear();
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          clear();
+        }
+      });
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private synchronized void clear() {
+    generation.incrementAndGet();
+    summary = null;
+  }
+
+  private DashboardSummary compute() {
+    LocalDateTime now = LocalDateTime.now();
+    LocalDate today = now.toLocalDate();
+
+    Map<String, Long> productCountByType = new TreeMap<>();
+    long[] totals = { 0, 0 };
+    BigDecimal[] stockValue = { BigDecimal.ZERO.setScale(2) };
+
+    jdbcTemplate.query(TOTALS_SQL, resultSet -> {
+      productCountByType.put(resultSet.getString("product_type"), resultSet.getLong("product_count"));
+      totals[0] += resultSet.getLong("product_count");
+      totals[1] += resultSet.getLong("total_quantity");
+      stockValue[0] = stockValue[0].add(resultSet.getBigDecimal("total_value"));
+    });
+
+    long[] expiry = jdbcTemplate.queryForObject(EXPIRY_SQL,
+        (resultSet, rowNumber) -> new long[] { resultSet.getLong(1), resultSet.getLong(2) }, today, today,
+        expiryAlerts.getHorizonEnd());
+    Long supplierCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM suppliers", Long.class);
+    Long lowStockCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM low_stock_products", Long.class);
+
+    return new DashboardSummary(totals[0], Collections.unmodifiableMap(productCountByType), supplierCount,
+        totals[1], stockValue[0], expiry[0], expiry[1], expiryAlerts.getHorizonDays(), lowStockCount, now);
+  }
+}
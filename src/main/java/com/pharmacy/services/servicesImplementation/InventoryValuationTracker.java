@@ -0,0 +1,205 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.models.InventoryValuation;
+import com.pharmacy.events.ProductChangedEvent;
+
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps inventory_valuation, the number, quantity and value of the products of
+ * each supplier and product type, up to date. Every product write adds its
+ * difference in the transaction of the write, so reading the valuation costs
+ * one row per supplier and type whatever the number of products. The stored
+ * quantities are valued, movements are counted once they are compacted.
+ *
+ * A scheduled reconciliation recounts the products and repairs the groups that
+ * drifted from the recount.
+ */
+@Component
+public class InventoryValuationTracker {
+  private static final String ADD_SQL = "MERGE INTO inventory_valuation v USING (VALUES (CAST(? AS INT), "
+      + "CAST(? AS VARCHAR(31)), CAST(? AS INT), CAST(? AS BIGINT), CAST(? AS DECIMAL(19, 2)))) "
+      + "d (supplier_id, product_type, product_count, total_quantity, total_value) "
+      + "ON v.supplier_id = d.supplier_id AND v.product_type = d.product_type "
+      + "WHEN MATCHED THEN UPDATE SET product_count = v.product_count + d.product_count, "
+      + "total_quantity = v.total_quantity + d.total_quantity, total_value = v.total_value + d.total_value "
+      + "WHEN NOT MATCHED THEN INSERT VALUES (d.supplier_id, d.product_type, d.product_count, d.total_quantity, "
+      + "d.total_value)";
+
+  // The difference between the recounted products and the stored totals of
+  // each group that drifted, read by one statement so both come from the same
+  // committed writes. Each price is rounded to cents first, like the
+  // differences added by the writes, as databases created by Hibernate store it
+  // as a double
+  private static final String DRIFT_SQL = "SELECT supplier_id, product_type, SUM(product_count) AS product_count, "
+      + "SUM(total_quantity) AS total_quantity, SUM(total_value) AS total_value FROM ("
+      + "SELECT supplier_id, product_type, COUNT(*) AS product_count, SUM(quantity) AS total_quantity, "
+      + "SUM(quantity * CAST(price AS DECIMAL(10, 2))) AS total_value FROM products GROUP BY supplier_id, product_type "
+      + "UNION ALL SELECT supplier_id, product_type, -product_count, -total_quantity, -total_value "
+      + "FROM inventory_valuation) d GROUP BY supplier_id, product_type "
+      + "HAVING SUM(product_count) <> 0 OR SUM(total_quantity) <> 0 OR SUM(total_value) <> 0";
+
+  private JdbcTemplate jdbcTemplate;
+
+  private TransactionTemplate transactionTemplate;
+
+  private InventoryDashboard inventoryDashboard;
+
+  // The result of the last reconciliation
+  private volatile LocalDateTime reconciledAt;
+
+  private volatile Integer driftedGroups;
+
+  @Autowired
+  public InventoryValuationTracker(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+      InventoryDashboard inventoryDashboard) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.inventoryDashboard = inventoryDashboard;
+  }
+
+  // Add the difference the written products make to the totals of their
+  // supplier and type, summed per group so a batch costs one row update each
+  @EventListener
+  public void onProductChanged(ProductChangedEvent event) {
+    Map<Group, Amount> deltas = new HashMap<>();
+
+    for (ProductChangedEvent.Change change : event.getChanges()) {
+      if (change.getBefore() != null) {
+        deltas.merge(Group.of(change.getBefore()), Amount.of(change.getBefore()).negate(), Amount::plus);
+      }
+
+      if (change.getAfter() != null) {
+        deltas.merge(Group.of(change.getAfter()), Amount.of(change.getAfter()), Amount::plus);
+      }
+    }
+
+    deltas.forEach((group, delta) -> {
+      if (!delta.isZero()) {
+        add(group, delta);
+      }
+    });
+  }
+
+  // Add a difference to the totals of a group. If another transaction created
+  // the group meanwhile, the insert fails once it commits and the difference is
+  // added to the row it created instead.
+  private void add(Group group, Amount delta) {
+    try {
+      jdbcTemplate.update(ADD_SQL, group.supplierId(), group.productType(), delta.productCount(), delta.quantity(),
+          delta.value());
+    } catch (DuplicateKeyException e) {
+      jdbcTemplate.update(ADD_SQL, group.supplierId(), group.productType(), delta.productCount(), delta.quantity(),
+          delta.value());
+    }
+  }
+
+  // Get the valuation from the stored totals
+  public InventoryValuation getValuation() {
+    Map<String, InventoryValuation.Totals> bySupplier = new TreeMap<>();
+    Map<String, InventoryValuation.Totals> byProductType = new TreeMap<>();
+    InventoryValuation.Totals[] total = { new InventoryValuation.Totals("Total", 0, 0, BigDecimal.ZERO) };
+
+    jdbcTemplate.query("SELECT s.name AS supplier_name, v.product_type, v.product_count, v.total_quantity, "
+        + "v.total_value FROM inventory_valuation v JOIN suppliers s ON s.id = v.supplier_id "
+        + "WHERE v.product_count > 0", resultSet -> {
+          String supplierName = resultSet.getString("supplier_name");
+          String productType = resultSet.getString("product_type");
+          long productCount = resultSet.getLong("product_count");
+          long quantity = resultSet.getLong("total_quantity");
+          BigDecimal value = resultSet.getBigDecimal("total_value");
+
+          bySupplier.merge(supplierName, new InventoryValuation.Totals(supplierName, productCount, quantity, value),
+              InventoryValuation.Totals::plus);
+          byProductType.merge(productType, new InventoryValuation.Totals(productType, productCount, quantity, value),
+              InventoryValuation.Totals::plus);
+          total[0] = total[0].plus(new InventoryValuation.Totals(null, productCount, quantity, value));
+        });
+
+    return new InventoryValuation(total[0], List.copyOf(bySupplier.values()), List.copyOf(byProductType.values()),
+        reconciledAt, driftedGroups);
+  }
+
+  @Scheduled(fixedDelayString = "${pharmacy.valuation.reconcile-delay-ms:3600000}")
+  public void reconcilePeriodically() {
+    reconcile();
+  }
+
+  /**
+   * Recount the products and repair the groups whose stored totals differ,
+   * returning how many did. The drift is added to the stored totals like the
+   * difference of a write, so writes that commit meanwhile, including ones
+   * that create a group, keep what they added.
+   */
+  public int reconcile() {
+    Integer drifted = transactionTemplate.execute(status -> {
+      Map<Group, Amount> drift = readAmounts(DRIFT_SQL);
+
+      drift.forEach(this::add);
+
+      return drift.size();
+    });
+
+    // The dashboard counted the repaired totals
+    if (drifted != null && drifted > 0) {
+      inventoryDashboard.invalidate();
+    }
+
+    reconciledAt = LocalDateTime.now();
+    driftedGroups = drifted;
+    return drifted != null ? drifted : 0;
+  }
+
+  private Map<Group, Amount> readAmounts(String sql) {
+    Map<Group, Amount> amounts = new HashMap<>();
+    jdbcTemplate.query(sql, resultSet -> {
+      amounts.put(new Group(resultSet.getInt("supplier_id"), resultSet.getString("product_type")),
+          new Amount(resultSet.getLong("product_count"), resultSet.getLong("total_quantity"),
+              resultSet.getBigDecimal("total_value").setScale(2, RoundingMode.HALF_UP)));
+    });
+    return amounts;
+  }
+
+  // The products of a supplier and type
+  private record Group(int supplierId, String productType) {
+    static Group of(ProductInventory product) {
+      return new Group(product.getSupplierId(), product.getProductType());
+    }
+  }
+
+  // Totals of a group, or the difference a write or a repair makes to them
+  private record Amount(long productCount, long quantity, BigDecimal value) {
+    static Amount of(ProductInventory product) {
+      BigDecimal price = BigDecimal.valueOf(product.getPrice()).setScale(2, RoundingMode.HALF_UP);
+      return new Amount(1, product.getQuantity(), price.multiply(BigDecimal.valueOf(product.getQuantity())));
+    }
+
+    Amount plus(Amount other) {
+      return new Amount(productCount + other.productCount, quantity + other.quantity, value.add(other.value));
+    }
+
+    Amount negate() {
+      return new Amount(-productCount, -quantity, value.negate());
+    }
+
+    boolean isZero() {
+      return productCount == 0 && quantity == 0 && value.signum() == 0;
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+
+import com.pharmacy.models.ListQuery;
+import com.pharmacy.models.ListingPage;
+import com.pharmacy.services.ListingService;
+
+import org.springframework.stereotype.Service;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Reads the pages of the JSON list endpoints with one JDBC query each. Only the
+ * selected fields are read, filters become WHERE conditions and pages are
+ * fetched after the last id of the previous one, so a poll costs one indexed
+ * range scan and no entities are loaded. Quantities include the stock
+ * movements not compacted yet.
+ */
+@Service
+public class ListingServiceImpl implements ListingService {
+  private static final Listing PRODUCTS = new Listing("product_inventory p", "p.id", true)
+      .field("name", "p.name")
+      .field("productType", "p.product_type")
+      .field("quantity", "p.quantity")
+      .field("price", "CAST(p.price AS DECIMAL(10, 2))")
+      .field("supplierId", "p.supplier_id")
+      .field("supplierName", "p.supplier_name")
+      .filter("name", "p.search_name LIKE ? ESCAPE '\\'", ListingServiceImpl::namePrefix)
+      .filter("type", "p.product_type = ?", value -> value)
+      .filter("supplierId", "p.supplier_id = ?", value -> number(value, "supplierId"));
+
+  private static final Listing MEDICINES = new Listing("products p JOIN medicines m ON m.id = p.id "
+      + "JOIN suppliers s ON s.id = p.supplier_id", "p.id", true)
+      .field("name", "p.name")
+      .field("quantity", "p.quantity")
+      .field("price", "CAST(p.price AS DECIMAL(10, 2))")
+      .field("supplierId", "p.supplier_id")
+      .field("supplierName", "s.name")
+      .field("manufacturer", "m.manufacturer")
+      .field("expiryDate", "m.expiry_date")
+      .field("version", "p.version")
+      .filter("name", "p.search_name LIKE ? ESCAPE '\\'", ListingServiceImpl::namePrefix)
+      .filter("supplierId", "p.supplier_id = ?", value -> number(value, "supplierId"))
+      .filter("manufacturer", "m.manufacturer = ?", value -> value)
+      .filter("expiresBefore", "m.expiry_date < ?", value -> date(value, "expiresBefore"));
+
+  private static final Listing EQUIPMENTS = new Listing("products p JOIN equipments e ON e.id = p.id "
+      + "JOIN suppliers s ON s.id = p.supplier_id", "p.id", true)
+      .field("name", "p.name")
+      .field("quantity", "p.quantity")
+      .field("price", "CAST(p.price AS DECIMAL(10, 2))")
+      .field("supplierId", "p.supplier_id")
+      .field("supplierName", "s.name")
+      .field("warranty", "e.warranty")
+      .field("purchaseDate", "e.purchase_date")
+      .field("version", "p.version")
+      .filter("name", "p.search_name LIKE ? ESCAPE '\\'", ListingServiceImpl::namePrefix)
+      .filter("supplierId", "p.supplier_id = ?", value -> number(value, "supplierId"))
+      .filter("purchasedBefore", "e.purchase_date < ?", value -> date(value, "purchasedBefore"));
+
+  private static final Listing SUPPLIERS = new Listing("suppliers s", "s.id", false)
+      .field("name", "s.name")
+      .field("contact", "s.contact")
+      .field("productCount", "s.product_count")
+      .field("version", "s.version")
+      .filter("name", "LOWER(s.name) LIKE ? ESCAPE '\\'", ListingServiceImpl::namePrefix);
+
+  private JdbcTemplate jdbcTemplate;
+
+  private StockLedger stockLedger;
+
+  @Autowired
+  public ListingServiceImpl(JdbcTemplate jdbcTemplate, StockLedger stockLedger) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.stockLedger = stockLedger;
+  }
+
+  @Override
+  public ListingPage listProducts(ListQuery query) {
+    return list(PRODUCTS, query);
+  }
+
+  @Override
+  public ListingPage listMedicines(ListQuery query) {
+    return list(MEDICINES, query);
+  }
+
+  @Override
+  public ListingPage listEquipments(ListQuery query) {
+    return list(EQUIPMENTS, query);
+  }
+
+  @Override
+  public ListingPage listSuppliers(ListQuery query) {
+    return list(SUPPLIERS, query);
+  }
+
+  // Build and run the query of a page, throwing a RuntimeException for unknown
+  // fields or filters and for filter values of the wrong type
+  private ListingPage list(Listing listing, ListQuery query) {
+    List<String> fields = selectedFields(listing, query.getFields());
+
+    StringBuilder sql = new StringBuilder("SELECT ");
+    for (int i = 0; i < fields.size(); i++) {
+      sql.append(i > 0 ? ", " : "").append(listing.fields.get(fields.get(i)));
+    }
+    sql.append(" FROM ").append(listing.from).append(" WHERE ").append(listing.id).append(" > ?");
+
+    List<Object> parameters = new ArrayList<>();
+    parameters.add(query.getAfter());
+
+    query.getFilters().forEach((name, value) -> {
+      Filter filter = listing.filters.get(name);
+
+      if (filter == null) {
+        throw new RuntimeException("Unknown filter: " + name + " (use one of " + listing.filters.keySet() + ")");
+      }
+
+      sql.append(" AND ").append(filter.condition);
+      parameters.add(filter.parser.apply(value.trim()));
+    });
+
+    // Read one extra row to know whether there is another page
+    sql.append(" ORDER BY ").append(listing.id).append(" LIMIT ?");
+    parameters.add(query.getSize() + 1);
+
+    List<Object[]> rows = new ArrayList<>(jdbcTemplate.query(sql.toString(),
+        (resultSet, rowNumber) -> readRow(resultSet, fields.size()), parameters.toArray()));
+
+    boolean hasNext = rows.size() > query.getSize();
+    if (hasNext) {
+      rows.remove(rows.size() - 1);
+    }
+
+    int quantity = fields.indexOf("quantity");
+    if (listing.hasStock && quantity >= 0 && !rows.isEmpty()) {
+      addPendingStock(rows, quantity);
+    }
+
+    Integer lastId = rows.isEmpty() ? null : (Integer) rows.get(rows.size() - 1)[0];
+    return new ListingPage(fields, rows, hasNext, lastId, query.getSize());
+  }
+
+  // The requested fields in the order they were asked for, the id always first
+  private static List<String> selectedFields(Listing listing, List<String> requested) {
+    if (requested == null) {
+      return new ArrayList<>(listing.fields.keySet());
+    }
+
+    List<String> fields = new ArrayList<>();
+    fields.add("id");
+
+    for (String field : requested) {
+      if (!listing.fields.containsKey(field)) {
+        throw new RuntimeException("Unknown field: " + field + " (use some of " + listing.fields.keySet() + ")");
+      }
+
+      if (!fields.contains(field)) {
+        fields.add(field);
+      }
+    }
+
+    return fields;
+  }
+
+  // Add the stock movements not compacted yet to the quantities of a page
+  private void addPendingStock(List<Object[]> rows, int quantity) {
+    Map<Integer, Integer> deltas = stockLedger.getPendingDeltas(rows.stream().map(row -> (Integer) row[0]).toList());
+
+    for (Object[] row : rows) {
+      Integer delta = deltas.get((Integer) row[0]);
+
+      if (delta != null) {
+        row[quantity] = (Integer) row[quantity] + delta;
+      }
+    }
+  }
+
+  // Read the columns of a row, turning dates into ISO strings
+  private static Object[] readRow(ResultSet resultSet, int columns) throws SQLException {
+    Object[] row = new Object[columns];
+
+    for (int i = 0; i < columns; i++) {
+      Object value = resultSet.getObject(i + 1);
+      row[i] = value instanceof Date date ? date.toLocalDate().toString() : value;
+    }
+
+    return row;
+  }
+
+  // Helper methods to read the value of a filter
+  private static String namePrefix(String value) {
+    return NameSearch.normalize(value).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+  }
+
+  private static int number(String value, String name) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new RuntimeException("The " + name + " filter must be a whole number");
+    }
+  }
+
+  private static LocalDate date(String value, String name) {
+    try {
+      return LocalDate.parse(value);
+    } catch (DateTimeParseException e) {
+      throw new RuntimeException("The " + name + " filter must be a date like 2030-12-31");
+    }
+  }
+
+  // The fields and filters of one list endpoint. Only the SQL written here is
+  // put in queries, the request only chooses among it.
+  private static class Listing {
+    private final String from;
+
+    private final String id;
+
+    // Whether the rows are products with a quantity in stock
+    private final boolean hasStock;
+
+    private final Map<String, String> fields = new LinkedHashMap<>();
+
+    private final Map<String, Filter> filters = new LinkedHashMap<>();
+
+    Listing(String from, String id, boolean hasStock) {
+      this.from = from;
+      this.id = id;
+      this.hasStock = hasStock;
+      fields.put("id", id);
+    }
+
+    Listing field(String name, String column) {
+      fields.put(name, column);
+      return this;
+    }
+
+    Listing filter(String name, String condition, Function<String, Object> parser) {
+      filters.put(name, new Filter(condition, parser));
+      return this;
+    }
+  }
+
+  // A WHERE condition with one parameter, and how to read it from the request
+  private record Filter(String condition, Function<String, Object> parser) {
+  }
+}
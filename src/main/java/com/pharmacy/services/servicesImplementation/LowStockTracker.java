@@ -0,0 +1,148 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.StockLevel;
+import com.pharmacy.models.LowStockProduct;
+import com.pharmacy.events.ProductChangedEvent;
+
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Keeps low_stock_products, the products whose available quantity is below
+ * their reorder threshold, up to date as the stock changes. Only the product a
+ * change touches is looked at: dispenses and receipts compare the stock level
+ * they already read with the new quantity and write the set only when the
+ * product crosses its threshold, product writes are checked from the event they
+ * publish. Reading the set costs one indexed range per page.
+ */
+@Component
+public class LowStockTracker {
+  private static final String ADD_SQL = "MERGE INTO low_stock_products (product_id) KEY (product_id) VALUES (?)";
+
+  private static final String LOW_STOCK_SQL = "SELECT l.product_id, p.name, p.product_type, p.quantity, "
+      + "p.reorder_threshold, l.since FROM low_stock_products l JOIN products p ON p.id = l.product_id "
+      + "WHERE l.product_id > ? ORDER BY l.product_id LIMIT ?";
+
+  private JdbcTemplate jdbcTemplate;
+
+  private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  private StockLedger stockLedger;
+
+  private InventoryDashboard inventoryDashboard;
+
+  @Autowired
+  public LowStockTracker(JdbcTemplate jdbcTemplate, StockLedger stockLedger, InventoryDashboard inventoryDashboard) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    this.stockLedger = stockLedger;
+    this.inventoryDashboard = inventoryDashboard;
+  }
+
+  // Record a dispense or receipt that took a product from the given stock level
+  // to the given quantity. The caller must hold the stock lock of the product,
+  // so the crossings of one product are written in order.
+  public void onStockChanged(int productId, StockLevel before, int quantity) {
+    boolean low = before.isLow(quantity);
+
+    if (before.isLow(before.getQuantity()) == low) {
+      return;
+    }
+
+    try {
+      if (low) {
+        jdbcTemplate.update(ADD_SQL, productId);
+      } else {
+        jdbcTemplate.update("DELETE FROM low_stock_products WHERE product_id = ?", productId);
+      }
+    } catch (DataIntegrityViolationException e) {
+      // The product was deleted in the meantime
+    }
+
+    // The number of low stock products on the dashboard changed
+    inventoryDashboard.invalidate();
+  }
+
+  // Check the products created or edited, in the transaction of the write. A
+  // compaction only moves movements into the stored quantity and cannot change
+  // the available one, so its events are skipped.
+  @EventListener
+  public void onProductChanged(ProductChangedEvent event) {
+    if (event.isStockOnly()) {
+      return;
+    }
+
+    List<Integer> productIds = event.getChanges().stream()
+        .filter(change -> !change.isDeleted())
+        .map(change -> change.getAfter().getId())
+        .toList();
+
+    if (productIds.isEmpty()) {
+      return;
+    }
+
+    // Only products with a threshold can be low, their stored quantities get the
+    // pending movements added
+    Map<Integer, StockLevel> levels = new HashMap<>();
+    namedParameterJdbcTemplate.query("SELECT id, quantity, reorder_threshold FROM products "
+        + "WHERE id IN (:ids) AND reorder_threshold > 0", new MapSqlParameterSource("ids", productIds),
+        resultSet -> {
+          levels.put(resultSet.getInt("id"),
+              new StockLevel(resultSet.getInt("quantity"), resultSet.getInt("reorder_threshold")));
+        });
+
+    Map<Integer, Integer> deltas = stockLedger.getPendingDeltas(levels.keySet());
+    List<Integer> low = levels.entrySet().stream()
+        .filter(entry -> entry.getValue().isLow(entry.getValue().getQuantity()
+            + deltas.getOrDefault(entry.getKey(), 0)))
+        .map(Map.Entry::getKey)
+        .toList();
+
+    // Created products are not in the set yet, edited ones may have left it
+    List<Integer> edited = event.getChanges().stream()
+        .filter(change -> change.getBefore() != null && !change.isDeleted())
+        .map(change -> change.getAfter().getId())
+        .filter(productId -> !low.contains(productId))
+        .toList();
+
+    if (!edited.isEmpty()) {
+      namedParameterJdbcTemplate.update("DELETE FROM low_stock_products WHERE product_id IN (:ids)",
+          new MapSqlParameterSource("ids", edited));
+    }
+
+    if (!low.isEmpty()) {
+      jdbcTemplate.batchUpdate(ADD_SQL, low.stream().map(productId -> new Object[] { productId }).toList());
+    }
+  }
+
+  // Get a page of the low stock products after the given id, with their
+  // available quantities
+  public KeysetPage<LowStockProduct> getLowStockProducts(Integer afterId, int size) {
+    size = KeysetPage.clampSize(size);
+
+    // Fetch one extra row to know whether there is another page
+    List<LowStockProduct> rows = jdbcTemplate.query(LOW_STOCK_SQL,
+        (resultSet, rowNumber) -> new LowStockProduct(resultSet.getInt("product_id"), resultSet.getString("name"),
+            resultSet.getString("product_type"), resultSet.getInt("quantity"),
+            resultSet.getInt("reorder_threshold"), resultSet.getTimestamp("since").toLocalDateTime()),
+        afterId != null ? afterId : 0, size + 1);
+
+    // Add the pending movements to the stored quantities
+    Map<Integer, Integer> deltas = stockLedger.getPendingDeltas(rows.stream().map(LowStockProduct::getId).toList());
+    return KeysetPage.forward(
+        rows.stream()
+            .map(row -> row.withQuantity(row.getQuantity() + deltas.getOrDefault(row.getId(), 0)))
+            .toList(),
+        size, afterId != null, LowStockProduct::getId);
+  }
+}
@@ -1,77 +1,205 @@
 package com.pharmacy.services.servicesImplementation;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Collection;
 
 import com.pharmacy.models.Medicine;
+import com.pharmacy.models.ExpiryAlert;
+import com.pharmacy.models.MedicinePatch;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.events.ProductChangedEvent;
 import com.pharmacy.services.MedicineService;
 import com.pharmacy.repositories.MedicineRepository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Service
 public class MedicineServiceImpl implements MedicineService {
+  // Furthest ahead the expiring medicines can be listed
+  static final int MAX_EXPIRY_DAYS = 365;
 
   private MedicineRepository medicineRepository;
 
+  private ApplicationEventPublisher eventPublisher;
+
+  private StockLedger stockLedger;
+
+  private ExpiryAlerts expiryAlerts;
+
+  private ProductSearchIndex productSearchIndex;
+
   @Autowired
-  public MedicineServiceImpl(MedicineRepository medicineRepository) {
+  public MedicineServiceImpl(MedicineRepository medicineRepository, ApplicationEventPublisher eventPublisher,
+      StockLedger stockLedger, ExpiryAlerts expiryAlerts, ProductSearchIndex productSearchIndex) {
     this.medicineRepository = medicineRepository;
+    this.eventPublisher = eventPublisher;
+    this.stockLedger = stockLedger;
+    this.expiryAlerts = expiryAlerts;
+    this.productSearchIndex = productSearchIndex;
+  }
+
+  // Validation helper methods, also used by the CSV import
+  static void checkMedicineFields(Medicine medicine) {
+    ProductFields.checkSupplier(medicine.getSupplier());
+    ProductFields.checkPrice(medicine.getPrice());
+    ProductFields.checkQuantity(medicine.getQuantity());
+    ProductFields.checkReorderThreshold(medicine.getReorderThreshold());
+    checkExpiryDate(medicine.getExpiryDate());
+  }
+
+  private static void checkExpiryDate(LocalDate expiryDate) {
+    if (expiryDate.isBefore(LocalDate.now())) {
+      throw new RuntimeException("The expiry date cannot be in the past");
+    }
   }
 
-  // Validation helper methods
-  private void checkMedicineFields(Medicine medicine) {
-    if (medicine.getSupplier() == null) {
-      throw new RuntimeException("The supplier does not exist");
+  // Turn a violation of the natural key index into the given duplicate message,
+  // any other integrity violation is passed on as it is
+  private static RuntimeException duplicateOr(DataIntegrityViolationException e, String duplicateMessage) {
+    if (UniqueConstraints.isViolated(e, UniqueConstraints.PRODUCT_NATURAL_KEY)) {
+      return new RuntimeException(duplicateMessage);
     }
 
-    if (medicine.getPrice() < 0 || medicine.getPrice() == null) {
-      throw new RuntimeException("The price cannot be negative");
+    return e;
+  }
+
+  // The error for an update made from an older version of the medicine
+  private static OptimisticLockingFailureException staleVersion() {
+    return new OptimisticLockingFailureException(
+        "The medicine was changed by someone else, reload it and try again");
+  }
+
+  // Show the medicines with the stock they have available, their pending
+  // movements added to the stored quantity
+  private <T extends Collection<Medicine>> T available(T medicines) {
+    stockLedger.addPendingDeltas(medicines);
+    return medicines;
+  }
+
+  private KeysetPage<Medicine> available(KeysetPage<Medicine> page) {
+    available(page.getContent());
+    return page;
+  }
+
+  // Get all the medicines
+  @Override
+  public Collection<Medicine> getAllMedicines() {
+    return available(medicineRepository.findAll());
+  }
+
+  // Get a page of medicines after or before the given id (keyset pagination)
+  @Override
+  public KeysetPage<Medicine> getMedicinesPage(Integer afterId, Integer beforeId, int size) {
+    size = KeysetPage.clampSize(size);
+
+    // Fetch one extra row to know whether there is another page
+    Limit limit = Limit.of(size + 1);
+
+    if (beforeId != null) {
+      return available(KeysetPage.backward(medicineRepository.findByIdLessThanOrderByIdDesc(beforeId, limit),
+          size, Medicine::getId));
     }
 
-    if (medicine.getQuantity() < 0) {
-      throw new RuntimeException("The quantity cannot be negative");
+    int cursor = afterId != null ? afterId : 0;
+    return available(KeysetPage.forward(medicineRepository.findByIdGreaterThanOrderByIdAsc(cursor, limit),
+        size, afterId != null, Medicine::getId));
+  }
+
+  // Get a page of the medicines expiring within the given number of days, soonest
+  // first (keyset pagination on the expiry date and id)
+  @Override
+  public KeysetPage<Medicine> getExpiringMedicines(int days, LocalDate afterDate, Integer afterId, int size) {
+    if (days < 0 || days > MAX_EXPIRY_DAYS) {
+      throw new RuntimeException("The number of days must be between 0 and " + MAX_EXPIRY_DAYS);
     }
 
-    if (medicine.getExpiryDate().isBefore(LocalDate.now())) {
-      throw new RuntimeException("The expiry date cannot be in the past");
+    size = KeysetPage.clampSize(size);
+    LocalDate until = LocalDate.now().plusDays(days);
+
+    // Fetch one extra row to know whether there is another page
+    Limit limit = Limit.of(size + 1);
+
+    if (afterDate == null) {
+      return available(KeysetPage.forward(
+          medicineRepository.findByExpiryDateLessThanEqualOrderByExpiryDateAscIdAsc(until, limit), size, false,
+          Medicine::getId));
     }
+
+    return available(KeysetPage.forward(
+        medicineRepository.findExpiringAfter(until, afterDate, afterId != null ? afterId : 0, limit), size, true,
+        Medicine::getId));
+  }
+
+  // Get the expiry alerts raised after the one with the given id, oldest first
+  @Override
+  public List<ExpiryAlert> getExpiryAlerts(long afterId, int limit) {
+    return expiryAlerts.getAlerts(afterId, KeysetPage.clampSize(limit));
   }
 
-  // Check if a medicine with the same name, supplier, expiry date, and
-  // manufacturer
-  private void checkForDuplicateMedicine(Medicine medicine) {
-    Medicine existingMedicine = medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(
-        medicine.getName().trim(),
-        medicine.getManufacturer().trim(),
-        medicine.getSupplier(),
-        medicine.getExpiryDate());
+  // Count all the medicines
+  @Override
+  public long countMedicines() {
+    return medicineRepository.count();
+  }
 
-    if (existingMedicine != null) {
-      throw new RuntimeException(
-          "The medicine with the same name, supplier, expiry date, and manufacturer already exists");
+  // Search medicines by name, manufacturer and supplier name, best matches first
+  @Override
+  public List<Medicine> searchMedicines(String query, int limit) {
+    List<Integer> ids = productSearchIndex.search(query, "Medicine", KeysetPage.clampSize(limit));
+
+    if (ids.isEmpty()) {
+      return List.of();
     }
+
+    return available(NameSearch.inRankOrder(ids, medicineRepository.findByIdIn(ids), Medicine::getId));
   }
 
-  // Get all the medicines
+  // Get a medicine by id, or null if it does not exist
   @Override
-  public Collection<Medicine> getAllMedicines() {
-    return medicineRepository.findAll();
+  public Medicine getMedicineById(int id) {
+    Medicine medicine = medicineRepository.findById(id).orElse(null);
+
+    if (medicine != null) {
+      available(List.of(medicine));
+    }
+
+    return medicine;
   }
 
   // Create a new medicine
   @Override
+  @Transactional
   public void createMedicine(Medicine medicine) {
     checkMedicineFields(medicine);
-    checkForDuplicateMedicine(medicine);
-    medicineRepository.save(medicine);
+
+    // The unique natural key index rejects duplicates
+    try {
+      medicineRepository.saveAndFlush(medicine);
+    } catch (DataIntegrityViolationException e) {
+      throw duplicateOr(e,
+          "The medicine with the same name, supplier, expiry date, and manufacturer already exists");
+    }
+
+    eventPublisher.publishEvent(ProductChangedEvent.created(medicine));
   }
 
   // Update a medicine
   @Override
-  public void updateMedicine(Medicine medicine) {
-    // Check if the medicine exists
+  @Transactional
+  public Medicine updateMedicine(Medicine medicine) {
+    // Read the stored medicine once. The update needs its values from before the
+    // change: the event compares them for the inventory, the stock alerts, the
+    // valuation and the search indexes, and a versioned UPDATE without the read
+    // could not give them back. The save below merges into this loaded medicine,
+    // so it is not read a second time.
     Medicine existingMedicine = medicineRepository.findById(medicine.getId()).orElse(null);
 
     // If the medicine does not exist
@@ -82,26 +210,113 @@ public class MedicineServiceImpl implements MedicineService {
     // Check if the supplier does not exist
     checkMedicineFields(medicine);
 
-    // Check if a medicine with the same name, manufacturer, supplier, and expiry
-    // date already exists
-    Medicine duplicateMedicine = medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(
-        medicine.getName().trim(),
-        medicine.getManufacturer().trim(),
-        medicine.getSupplier(),
-        medicine.getExpiryDate());
-
-    // If a medicine with the same name, manufacturer, supplier, and expiry date
-    // already exists
-    if (duplicateMedicine != null && duplicateMedicine.getId() != medicine.getId()) {
-      throw new RuntimeException(
+    // Check the medicine was not changed since the version the update was made from
+    if (medicine.getVersion() != existingMedicine.getVersion()) {
+      throw staleVersion();
+    }
+
+    // Take a snapshot of the stored medicine before it is overwritten by the save
+    ProductInventory before = ProductInventory.of(existingMedicine);
+    int storedVersion = existingMedicine.getVersion();
+
+    // Take the stock lock before the row lock of the save when the quantity or
+    // the reorder threshold is changed, the same order as the dispenses. The
+    // quantity is changed if it differs from the one the form showed, or from the
+    // stored one when the form did not send it.
+    boolean quantityChanged = medicine.getQuantity() != (medicine.getShownQuantity() != null
+        ? medicine.getShownQuantity() : before.getQuantity());
+    if (quantityChanged || medicine.getReorderThreshold() != existingMedicine.getReorderThreshold()) {
+      stockLedger.lock(medicine.getId());
+    }
+
+    // The unique natural key index rejects duplicates and the version column
+    // rejects an update committed in between. The save merges the changes into
+    // the medicine loaded above, so the flush is one versioned UPDATE.
+    try {
+      medicineRepository.saveAndFlush(medicine);
+
+      // The quantity is changed through the stock ledger, the save only copied
+      // the typed one onto the loaded medicine
+      existingMedicine.setQuantity(quantityChanged
+          ? stockLedger.applyEdit(existingMedicine, medicine.getShownQuantity(), storedVersion)
+          : before.getQuantity());
+    } catch (DataIntegrityViolationException e) {
+      throw duplicateOr(e,
+          "The medicine with the same name, manufacturer, supplier, and expiry date already exists");
+    } catch (OptimisticLockingFailureException e) {
+      throw staleVersion();
+    }
+
+    eventPublisher.publishEvent(ProductChangedEvent.updated(before, existingMedicine));
+    return existingMedicine;
+  }
+
+  // Partially update a medicine, only the fields set in the patch are checked and
+  // changed, and only the changed columns are written
+  @Override
+  @Transactional
+  public Medicine patchMedicine(int id, int version, MedicinePatch patch) {
+    Medicine medicine = medicineRepository.findById(id).orElse(null);
+
+    // If the medicine does not exist
+    if (medicine == null) {
+      throw new RuntimeException("The medicine does not exist");
+    }
+
+    // Check the medicine was not changed since the version the patch was made from
+    if (version != medicine.getVersion()) {
+      throw staleVersion();
+    }
+
+    // Check every field before changing any, so a rejected patch leaves the
+    // stored medicine as it was
+    ProductFields.check(patch);
+    if (patch.getExpiryDate() != null) {
+      checkExpiryDate(patch.getExpiryDate());
+    }
+
+    ProductInventory before = ProductInventory.of(medicine);
+    int storedVersion = medicine.getVersion();
+
+    // Take the stock lock before the row lock of the save when the quantity is
+    // sent or the reorder threshold is changed, the same order as the dispenses.
+    // A sent quantity becomes the available quantity.
+    boolean quantityChanged = patch.getQuantity() != null;
+    if (quantityChanged || (patch.getReorderThreshold() != null
+        && patch.getReorderThreshold() != medicine.getReorderThreshold())) {
+      stockLedger.lock(id);
+    }
+
+    ProductFields.apply(patch, medicine);
+    if (patch.getManufacturer() != null) {
+      medicine.setManufacturer(patch.getManufacturer());
+    }
+    if (patch.getExpiryDate() != null) {
+      medicine.setExpiryDate(patch.getExpiryDate());
+    }
+
+    // The medicine is managed, so the flush only updates it if a field changed
+    try {
+      medicineRepository.saveAndFlush(medicine);
+
+      // The quantity is changed through the stock ledger
+      if (quantityChanged) {
+        medicine.setQuantity(stockLedger.applyEdit(medicine, null, storedVersion));
+      }
+    } catch (DataIntegrityViolationException e) {
+      throw duplicateOr(e,
           "The medicine with the same name, manufacturer, supplier, and expiry date already exists");
+    } catch (OptimisticLockingFailureException e) {
+      throw staleVersion();
     }
 
-    medicineRepository.save(medicine);
+    eventPublisher.publishEvent(ProductChangedEvent.updated(before, medicine));
+    return medicine;
   }
 
   // Delete a medicine
   @Override
+  @Transactional
   public void deleteMedicine(int id) {
     // Check if the medicine exists
     Medicine existingMedicine = medicineRepository.findById(id).orElse(null);
@@ -112,5 +327,7 @@ public class MedicineServiceImpl implements MedicineService {
     }
 
     medicineRepository.deleteById(id);
+    stockLedger.discard(id);
+    eventPublisher.publishEvent(ProductChangedEvent.deleted(ProductInventory.of(existingMedicine)));
   }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.function.ToIntFunction;
+
+// Helper methods shared by the services that search products
+final class NameSearch {
+
+  private NameSearch() {
+  }
+
+  // Normalise a search query the same way the database builds search_name
+  static String normalize(String query) {
+    return query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+  }
+
+  // Put the rows loaded for the ranked ids of a search back in the ranking
+  // order, leaving out the ids that no longer have a row
+  static <T> List<T> inRankOrder(List<Integer> rankedIds, List<T> rows, ToIntFunction<T> idOf) {
+    Map<Integer, T> byId = rows.stream().collect(Collectors.toMap(idOf::applyAsInt, Function.identity()));
+    return rankedIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+  }
+}
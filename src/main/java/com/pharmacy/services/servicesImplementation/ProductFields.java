@@ -0,0 +1,74 @@
+package com.pharmacy.services.servicesImplementation;
+
+import com.pharmacy.models.Product;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.models.ProductPatch;
+
+// Checks shared by medicines and equipments, and the handling of the fields
+// every product patch can set
+final class ProductFields {
+  private ProductFields() {
+  }
+
+  static void checkSupplier(Supplier supplier) {
+    if (supplier == null) {
+      throw new RuntimeException("The supplier does not exist");
+    }
+  }
+
+  static void checkPrice(Double price) {
+    if (price < 0 || price == null) {
+      throw new RuntimeException("The price cannot be negative");
+    }
+  }
+
+  static void checkQuantity(int quantity) {
+    if (quantity < 0) {
+      throw new RuntimeException("The quantity cannot be negative");
+    }
+  }
+
+  static void checkReorderThreshold(int reorderThreshold) {
+    if (reorderThreshold < 0) {
+      throw new RuntimeException("The reorder threshold cannot be negative");
+    }
+  }
+
+  // Check the product fields set in the patch
+  static void check(ProductPatch patch) {
+    if (patch.getPrice() != null) {
+      checkPrice(patch.getPrice());
+    }
+
+    if (patch.getQuantity() != null) {
+      checkQuantity(patch.getQuantity());
+    }
+
+    if (patch.getReorderThreshold() != null) {
+      checkReorderThreshold(patch.getReorderThreshold());
+    }
+  }
+
+  // Copy the product fields set in the patch onto the product
+  static void apply(ProductPatch patch, Product product) {
+    if (patch.getName() != null) {
+      product.setName(patch.getName());
+    }
+
+    if (patch.getQuantity() != null) {
+      product.setQuantity(patch.getQuantity());
+    }
+
+    if (patch.getPrice() != null) {
+      product.setPrice(patch.getPrice());
+    }
+
+    if (patch.getReorderThreshold() != null) {
+      product.setReorderThreshold(patch.getReorderThreshold());
+    }
+
+    if (patch.getSupplier() != null) {
+      product.setSupplier(patch.getSupplier());
+    }
+  }
+}
@@ -0,0 +1,377 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import jakarta.persistence.EntityManager;
+
+import com.pharmacy.models.Product;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.models.Equipment;
+import com.pharmacy.models.ImportProgress;
+import com.pharmacy.events.ProductChangedEvent;
+import com.pharmacy.services.ProductImportService;
+import com.pharmacy.repositories.ProductRepository;
+import com.pharmacy.repositories.MedicineRepository;
+import com.pharmacy.repositories.SupplierRepository;
+import com.pharmacy.repositories.EquipmentRepository;
+
+import org.springframework.stereotype.Service;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Imports medicines and equipments from CSV files. The file is read one batch
+ * of rows at a time. The rows of a batch are parsed and validated in parallel,
+ * their suppliers and the natural keys of possible duplicates are looked up
+ * with one query each and the valid rows are saved and committed together
+ * before the next batch is read. A batch that loses a race with another
+ * transaction saving the same product is rolled back and imported again, so
+ * the product is reported as a duplicate row instead of ending the import.
+ */
+@Service
+public class ProductImportServiceImpl implements ProductImportService {
+  public static final int MAX_BATCH_SIZE = 5000;
+
+  // How many times a batch is imported again after a product of it was saved
+  // by another transaction in the meantime
+  private static final int MAX_BATCH_ATTEMPTS = 3;
+
+  private MedicineRepository medicineRepository;
+
+  private EquipmentRepository equipmentRepository;
+
+  private SupplierRepository supplierRepository;
+
+  private ProductRepository productRepository;
+
+  private ApplicationEventPublisher eventPublisher;
+
+  private TransactionTemplate transactionTemplate;
+
+  private EntityManager entityManager;
+
+  @Autowired
+  public ProductImportServiceImpl(MedicineRepository medicineRepository, EquipmentRepository equipmentRepository,
+      SupplierRepository supplierRepository, ProductRepository productRepository,
+      ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+      EntityManager entityManager) {
+    this.medicineRepository = medicineRepository;
+    this.equipmentRepository = equipmentRepository;
+    this.supplierRepository = supplierRepository;
+    this.productRepository = productRepository;
+    this.eventPublisher = eventPublisher;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.entityManager = entityManager;
+  }
+
+  // Import medicines from a CSV file
+  @Override
+  public ImportProgress importMedicines(InputStream csv, int batchSize, Consumer<ImportProgress> progress) {
+    return importProducts(csv, batchSize, progress, new CsvFormat<Medicine>() {
+      public List<String> columns() {
+        return List.of("name", "quantity", "price", "supplier", "manufacturer", "expiry_date");
+      }
+
+      public Medicine parse(Map<String, String> row, Supplier supplier) {
+        Medicine medicine = new Medicine(text(row, "name"), integer(row, "quantity"), decimal(row, "price"),
+            supplier, text(row, "manufacturer"), date(row, "expiry_date"));
+        MedicineServiceImpl.checkMedicineFields(medicine);
+        return medicine;
+      }
+
+      public String duplicateMessage() {
+        return "The medicine with the same name, supplier, expiry date, and manufacturer already exists";
+      }
+
+      public void saveAll(List<Medicine> medicines) {
+        medicineRepository.saveAll(medicines);
+      }
+    });
+  }
+
+  // Import equipments from a CSV file
+  @Override
+  public ImportProgress importEquipments(InputStream csv, int batchSize, Consumer<ImportProgress> progress) {
+    return importProducts(csv, batchSize, progress, new CsvFormat<Equipment>() {
+      public List<String> columns() {
+        return List.of("name", "quantity", "price", "supplier", "warranty", "purchase_date");
+      }
+
+      public Equipment parse(Map<String, String> row, Supplier supplier) {
+        Equipment equipment = new Equipment(text(row, "warranty"), date(row, "purchase_date"), text(row, "name"),
+            integer(row, "quantity"), decimal(row, "price"), supplier);
+        EquipmentServiceImpl.checkEquipmentFields(equipment);
+        return equipment;
+      }
+
+      public String duplicateMessage() {
+        return "The equipment with the same name, supplier, purchase date, and warranty already exists";
+      }
+
+      public void saveAll(List<Equipment> equipments) {
+        equipmentRepository.saveAll(equipments);
+      }
+    });
+  }
+
+  // Read the file batch by batch and report the progress after each one
+  private <T extends Product> ImportProgress importProducts(InputStream csv, int batchSize,
+      Consumer<ImportProgress> progress, CsvFormat<T> format) {
+    if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+      throw new RuntimeException("The batch size must be between 1 and " + MAX_BATCH_SIZE);
+    }
+
+    CsvReader reader = new CsvReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+    Map<String, Integer> columns = readHeader(reader, format.columns());
+
+    int batch = 0;
+    long rowsRead = 0;
+    long imported = 0;
+    long failed = 0;
+    List<CsvRow> rows = new ArrayList<>(batchSize);
+    List<String> record = reader.next();
+
+    while (record != null) {
+      rows.add(new CsvRow(reader.getRecordLine(), columns, record));
+      record = reader.next();
+
+      if (rows.size() == batchSize || (record == null && !rows.isEmpty())) {
+        List<ImportProgress.RowError> errors = importBatchWithRetry(rows, format);
+
+        batch++;
+        rowsRead += rows.size();
+        imported += rows.size() - errors.size();
+        failed += errors.size();
+        progress.accept(new ImportProgress(batch, rowsRead, imported, failed, errors, false));
+        rows.clear();
+      }
+    }
+
+    ImportProgress done = new ImportProgress(batch, rowsRead, imported, failed, List.of(), true);
+    progress.accept(done);
+    return done;
+  }
+
+  // Map the header names to column positions and check no column is missing
+  private Map<String, Integer> readHeader(CsvReader reader, List<String> required) {
+    List<String> header = reader.next();
+
+    if (header == null) {
+      throw new RuntimeException("The file is empty");
+    }
+
+    Map<String, Integer> columns = new HashMap<>();
+    for (int i = 0; i < header.size(); i++) {
+      // Ignore the byte order mark some spreadsheet programs write
+      String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+
+      if (columns.put(name, i) != null) {
+        throw new RuntimeException("The file has the column " + name + " more than once");
+      }
+    }
+
+    for (String column : required) {
+      if (!columns.containsKey(column)) {
+        throw new RuntimeException("The file is missing the column: " + column);
+      }
+    }
+
+    return columns;
+  }
+
+  // Import a batch, and import it again when its write violated the natural key
+  // index. The new attempt looks the stored natural keys up again, so the rows
+  // another transaction saved in between are reported as duplicates.
+  private <T extends Product> List<ImportProgress.RowError> importBatchWithRetry(List<CsvRow> rows,
+      CsvFormat<T> format) {
+    for (int attempt = 1;; attempt++) {
+      try {
+        return importBatch(rows, format);
+      } catch (DataIntegrityViolationException e) {
+        if (!UniqueConstraints.isViolated(e, UniqueConstraints.PRODUCT_NATURAL_KEY)) {
+          throw e;
+        }
+
+        if (attempt == MAX_BATCH_ATTEMPTS) {
+          throw new RuntimeException("The batch starting at line " + rows.get(0).line
+              + " kept conflicting with products added by someone else, import the file again");
+        }
+      }
+    }
+  }
+
+  // Validate and save one batch of rows in a single transaction, returning the
+  // rows that were not imported
+  private <T extends Product> List<ImportProgress.RowError> importBatch(List<CsvRow> rows, CsvFormat<T> format) {
+    return transactionTemplate.execute(status -> {
+      // Resolve the suppliers of the whole batch with one query
+      Set<String> supplierNames = rows.stream()
+          .map(row -> row.values.get("supplier"))
+          .filter(Objects::nonNull)
+          .collect(Collectors.toSet());
+      Map<String, Supplier> suppliers = supplierNames.isEmpty() ? Map.of()
+          : supplierRepository.findByNameIn(supplierNames).stream()
+              .collect(Collectors.toMap(Supplier::getName, Function.identity(), (first, second) -> first));
+
+      // Parse and validate the rows in parallel, keeping their order
+      List<ParsedRow<T>> parsed = rows.parallelStream()
+          .map(row -> parseRow(row, suppliers, format))
+          .toList();
+
+      // Find which natural keys of the batch are already used with one query
+      Set<String> naturalKeys = parsed.stream()
+          .filter(row -> row.product != null)
+          .map(row -> row.product.getNaturalKey())
+          .collect(Collectors.toSet());
+      Set<String> keys = new HashSet<>();
+      if (!naturalKeys.isEmpty()) {
+        keys.addAll(productRepository.findExistingNaturalKeys(naturalKeys));
+      }
+
+      List<T> accepted = new ArrayList<>();
+      List<ImportProgress.RowError> errors = new ArrayList<>();
+
+      for (ParsedRow<T> row : parsed) {
+        if (row.error != null) {
+          errors.add(new ImportProgress.RowError(row.line, row.error));
+        } else if (!keys.add(row.product.getNaturalKey())) {
+          // The product is already stored or appears earlier in the batch
+          errors.add(new ImportProgress.RowError(row.line, format.duplicateMessage()));
+        } else {
+          accepted.add(row.product);
+        }
+      }
+
+      // Write the batch out before the change event, whose listeners read the
+      // new rows over JDBC. The flush goes through the repository, so a violated
+      // unique index is reported as a DataIntegrityViolationException.
+      if (!accepted.isEmpty()) {
+        format.saveAll(accepted);
+        productRepository.flush();
+        eventPublisher.publishEvent(ProductChangedEvent.createdAll(accepted));
+      }
+
+      // Drop the batch from the persistence context so memory use does not grow
+      // with the size of the file, the listeners write over JDBC so nothing is
+      // left to flush
+      entityManager.clear();
+
+      return errors;
+    });
+  }
+
+  private <T extends Product> ParsedRow<T> parseRow(CsvRow row, Map<String, Supplier> suppliers,
+      CsvFormat<T> format) {
+    if (row.error != null) {
+      return new ParsedRow<>(row.line, null, row.error);
+    }
+
+    try {
+      return new ParsedRow<>(row.line, format.parse(row.values, suppliers.get(row.values.get("supplier"))), null);
+    } catch (RuntimeException e) {
+      return new ParsedRow<>(row.line, null, e.getMessage());
+    }
+  }
+
+  // Helper methods to read the typed value of a column
+  private static String text(Map<String, String> row, String column) {
+    String value = row.get(column);
+
+    if (value == null || value.isEmpty()) {
+      throw new RuntimeException("The " + column + " is required");
+    }
+
+    return value;
+  }
+
+  private static int integer(Map<String, String> row, String column) {
+    try {
+      return Integer.parseInt(text(row, column));
+    } catch (NumberFormatException e) {
+      throw new RuntimeException("The " + column + " must be a whole number");
+    }
+  }
+
+  private static Double decimal(Map<String, String> row, String column) {
+    try {
+      return Double.valueOf(text(row, column));
+    } catch (NumberFormatException e) {
+      throw new RuntimeException("The " + column + " must be a number");
+    }
+  }
+
+  private static LocalDate date(Map<String, String> row, String column) {
+    try {
+      return LocalDate.parse(text(row, column));
+    } catch (DateTimeParseException e) {
+      throw new RuntimeException("The " + column + " must be a date like 2030-12-31");
+    }
+  }
+
+  // How the rows of one type of product are read, compared and stored
+  private interface CsvFormat<T extends Product> {
+    List<String> columns();
+
+    // Build and validate a product, throwing a RuntimeException if it is invalid
+    T parse(Map<String, String> row, Supplier supplier);
+
+    String duplicateMessage();
+
+    void saveAll(List<T> products);
+  }
+
+  // A record of the file with its trimmed values by column name
+  private static class CsvRow {
+    private final int line;
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private final String error;
+
+    CsvRow(int line, Map<String, Integer> columns, List<String> record) {
+      this.line = line;
+
+      if (record.size() != columns.size()) {
+        this.error = "Expected " + columns.size() + " columns but found " + record.size();
+        return;
+      }
+
+      columns.forEach((name, index) -> values.put(name, record.get(index).trim()));
+      this.error = null;
+    }
+  }
+
+  // A row after parsing, holding either the product or the reason it was rejected
+  private static class ParsedRow<T> {
+    private final int line;
+
+    private final T product;
+
+    private final String error;
+
+    ParsedRow(int line, T product, String error) {
+      this.line = line;
+      this.product = product;
+      this.error = error;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.pharmacy.services.servicesImplementation;
+
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.events.ProductChangedEvent;
+import com.pharmacy.repositories.ProductInventoryRepository;
+
+import org.springframework.stereotype.Component;
+import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Autowired;
+
+// Keeps the product_inventory read model in sync with product writes. Runs in
+// the transaction of the service that published the event.
+@Component
+public class ProductInventoryUpdater {
+
+  private ProductInventoryRepository productInventoryRepository;
+
+  @Autowired
+  public ProductInventoryUpdater(ProductInventoryRepository productInventoryRepository) {
+    this.productInventoryRepository = productInventoryRepository;
+  }
+
+  @EventListener
+  public void onProductChanged(ProductChangedEvent event) {
+    for (ProductChangedEvent.Change change : event.getChanges()) {
+      if (change.isDeleted()) {
+        productInventoryRepository.deleteRow(change.getBefore().getId());
+        continue;
+      }
+
+      ProductInventory after = change.getAfter();
+      productInventoryRepository.upsert(after.getId(), after.getName(), after.getProductType(),
+          after.getQuantity(), after.getPrice(), after.getSupplierId());
+    }
+  }
+}
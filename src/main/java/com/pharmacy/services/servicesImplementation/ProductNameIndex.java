@@ -0,0 +1,291 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.models.ProductSuggestion;
+import com.pharmacy.events.ProductChangedEvent;
+
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory index of the product names for autocomplete: a skip list of
+ * entries sorted by lower-cased name, each with the product's id and available
+ * quantity. What was typed is compared with the names a character at a time,
+ * lower-cased the same way, so a lookup finds the first name at or after it
+ * and walks forward while the names start with it without building a
+ * normalised copy of the query.
+ *
+ * The skip list is loaded from the products table on startup. Product writes
+ * remove and insert their entries in place once their transaction commits,
+ * dispenses and receipts add to the quantity of their entry once theirs
+ * commits.
+ */
+@Component
+public class ProductNameIndex {
+  private static final String LOAD_SQL = "SELECT p.id, p.name, p.quantity + COALESCE((SELECT SUM(m.delta) "
+      + "FROM stock_movements m WHERE m.product_id = p.id AND m.compacted = FALSE), 0) AS quantity FROM products p";
+
+  private JdbcTemplate jdbcTemplate;
+
+  // Read without locking, changed in place and replaced on load under the
+  // index's lock
+  private volatile ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(ProductNameIndex::compare);
+
+  // The entries by product id, guarded by the index's lock
+  private final Map<Integer, Entry> byId = new HashMap<>();
+
+  @Autowired
+  public ProductNameIndex(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  // Load every product name and available quantity, replacing the index
+  public synchronized void load() {
+    List<Entry> loaded = jdbcTemplate.query(LOAD_SQL, (resultSet, rowNumber) -> new Entry(resultSet.getInt("id"),
+        resultSet.getString("name"), resultSet.getInt("quantity")));
+
+    byId.clear();
+    loaded.forEach(entry -> byId.put(entry.id, entry));
+
+    ConcurrentSkipListSet<Entry> sorted = new ConcurrentSkipListSet<>(ProductNameIndex::compare);
+    sorted.addAll(loaded);
+    entries = sorted;
+  }
+
+  /**
+   * Suggest up to the given number of products whose name starts with the
+   * query, ignoring case and surrounding spaces, in name order. A blank query
+   * suggests nothing.
+   */
+  public List<ProductSuggestion> suggest(String query, int limit) {
+    // Skip the surrounding spaces the way trim() does, without copying
+    int start = 0;
+    int end = query != null ? query.length() : 0;
+    while (start < end && query.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && query.charAt(end - 1) <= ' ') {
+      end--;
+    }
+
+    if (start == end || limit <= 0) {
+      return List.of();
+    }
+
+    List<ProductSuggestion> suggestions = new ArrayList<>(Math.min(limit, 16));
+
+    for (Entry entry : entries.tailSet(new Probe(query, start, end))) {
+      if (suggestions.size() >= limit || compareStart(entry.key, query, start, end) != 0) {
+        break;
+      }
+      suggestions.add(new ProductSuggestion(entry.id, entry.name, entry.quantity.get()));
+    }
+
+    return suggestions;
+  }
+
+  // Add a dispense or receipt to the quantity of a product once its transaction
+  // commits, a rolled back movement leaves the quantity as it is
+  public void addQuantity(int productId, int delta) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      applyQuantity(productId, delta);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        applyQuantity(productId, delta);
+      }
+    });
+  }
+
+  private void applyQuantity(int productId, int delta) {
+    Entry entry;
+    synchronized (this) {
+      entry = byId.get(productId);
+    }
+
+    if (entry != null) {
+      entry.quantity.addAndGet(delta);
+    }
+  }
+
+  // Apply the products created, edited or deleted once the write commits, a
+  // rolled back write leaves the index as it is. Compactions only move pending
+  // movements into the stored quantity and do not change the available one.
+  @EventListener
+  public void onProductChanged(ProductChangedEvent event) {
+    if (event.isStockOnly()) {
+      return;
+    }
+
+    List<ProductChangedEvent.Change> changes = event.getChanges();
+
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      apply(changes);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        apply(changes);
+      }
+    });
+  }
+
+  // Replace the entries of the changed products in place, a write costs a
+  // removal and an insertion per product whatever the size of the index. A
+  // lookup running meanwhile may miss a renamed product for that moment.
+  private synchronized void apply(List<ProductChangedEvent.Change> changes) {
+    for (ProductChangedEvent.Change change : changes) {
+      ProductInventory product = change.getAfter() != null ? change.getAfter() : change.getBefore();
+      Entry previous = byId.remove(product.getId());
+
+      if (previous != null) {
+        entries.remove(previous);
+      }
+
+      if (change.getAfter() != null) {
+        Entry entry = previous != null ? new Entry(previous, product.getName()) : new Entry(product.getId(),
+            product.getName(), product.getQuantity());
+
+        // An edit of the quantity folds every pending movement in, so the new
+        // quantity is the available one. Other edits keep the tracked quantity.
+        if (previous != null && change.getBefore() != null
+            && change.getBefore().getQuantity() != product.getQuantity()) {
+          entry.quantity.set(product.getQuantity());
+        }
+
+        byId.put(entry.id, entry);
+        entries.add(entry);
+      }
+    }
+  }
+
+  // Order the entries by key, then by id. A probe sorts just before the first
+  // entry whose key does not sort before its query.
+  private static int compare(Entry first, Entry second) {
+    if (first instanceof Probe probe) {
+      return probe.isAfter(second) ? 1 : -1;
+    }
+
+    if (second instanceof Probe probe) {
+      return probe.isAfter(first) ? -1 : 1;
+    }
+
+    int byKey = first.key.compareTo(second.key);
+    return byKey != 0 ? byKey : Integer.compare(first.id, second.id);
+  }
+
+  // Compare the start of a key with the lower case of query[start, end) without
+  // building it: negative if the key sorts before the query, zero if it starts
+  // with it, positive if it sorts after it. Each character is lowered like
+  // String.toLowerCase(Locale.ROOT) does, a dotted capital I included.
+  private static int compareStart(String key, String query, int start, int end) {
+    int index = 0;
+
+    for (int i = start; i < end;) {
+      int codePoint = query.codePointAt(i);
+      i += Character.charCount(codePoint);
+
+      int compared;
+      if (codePoint == '\u0130') {
+        // Lowers to an i followed by a combining dot above
+        compared = compareChar(key, index++, 'i');
+        if (compared == 0) {
+          compared = compareChar(key, index++, '\u0307');
+        }
+      } else {
+        int lower = Character.toLowerCase(codePoint);
+
+        if (Character.isBmpCodePoint(lower)) {
+          compared = compareChar(key, index++, (char) lower);
+        } else {
+          compared = compareChar(key, index++, Character.highSurrogate(lower));
+          if (compared == 0) {
+            compared = compareChar(key, index++, Character.lowSurrogate(lower));
+          }
+        }
+      }
+
+      if (compared != 0) {
+        return compared;
+      }
+    }
+
+    return 0;
+  }
+
+  // A key that ends first sorts before the query
+  private static int compareChar(String key, int index, char expected) {
+    return index < key.length() ? key.charAt(index) - expected : -1;
+  }
+
+  // A product in the index. The key and position never change, the quantity
+  // follows the stock.
+  private static class Entry {
+    private final int id;
+
+    private final String name;
+
+    private final String key;
+
+    private final AtomicInteger quantity;
+
+    Entry(int id, String name, int quantity) {
+      this.id = id;
+      this.name = name;
+      this.key = NameSearch.normalize(name);
+      this.quantity = new AtomicInteger(quantity);
+    }
+
+    // The entry of an edited product, sharing the quantity of its previous entry
+    // so dispenses and receipts made meanwhile are kept
+    Entry(Entry previous, String name) {
+      this.id = previous.id;
+      this.name = name;
+      this.key = NameSearch.normalize(name);
+      this.quantity = previous.quantity;
+    }
+
+    // A probe, which stands for no product
+    Entry() {
+      this.id = 0;
+      this.name = null;
+      this.key = null;
+      this.quantity = null;
+    }
+  }
+
+  // The position of a query in the index, just before the names starting with it
+  private static final class Probe extends Entry {
+    private final String query;
+
+    private final int start;
+
+    private final int end;
+
+    Probe(String query, int start, int end) {
+      this.query = query;
+      this.start = start;
+      this.end = end;
+    }
+
+    boolean isAfter(Entry entry) {
+      return compareStart(entry.key, query, start, end) < 0;
+    }
+  }
+}
@@ -0,0 +1,291 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+import com.pharmacy.events.ProductChangedEvent;
+
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Inverted index of the product names, medicine manufacturers and supplier
+ * names, stored in search_grams next to the products. Each text is split into
+ * words and every word into its trigrams, so a query finds a word from any
+ * part of it. Each gram is stored with the weight of the field it comes from,
+ * doubled for the first gram of a word, so the database ranks name matches
+ * above manufacturer and supplier matches, and word starts above matches
+ * inside a word. A search reads the products of the rarest query gram, keeps
+ * the ones that also have every other gram, looked up by product, and returns
+ * them in the order the database ranked them, after checking the query words
+ * really occur in their text. Queries whose words are all shorter than a gram
+ * match the start of the product names instead.
+ *
+ * Product writes re-index their products from the event they publish, in the
+ * transaction of the write, supplier renames call renameSupplier(). Deleted
+ * products lose their grams through the foreign key.
+ */
+@Component
+public class ProductSearchIndex {
+  // Weight of a match inside a word of each field of a product, a match at the
+  // start of a word counts double. The six values differ, so the grams of a
+  // field can be told apart by their weight
+  static final int NAME = 9;
+
+  static final int MANUFACTURER = 3;
+
+  static final int SUPPLIER = 1;
+
+  // Length of the grams, query words shorter than this only match name starts
+  static final int GRAM_LENGTH = 3;
+
+  // Number of products counted per query gram to find the rarest one, which
+  // bounds the work of the count whatever the number of products
+  static final int MAX_COUNTED_POSTINGS = 1000;
+
+  private static final String INSERT_SQL = "INSERT INTO search_grams (gram, product_id, weight) VALUES (?, ?, ?)";
+
+  private static final String DOCUMENTS_SQL = "SELECT p.id, p.name, m.manufacturer, s.name AS supplier_name "
+      + "FROM products p JOIN suppliers s ON s.id = p.supplier_id LEFT JOIN medicines m ON m.id = p.id "
+      + "WHERE p.id IN (:ids)";
+
+  // The number of products of one query gram, up to the counted maximum
+  private static final String POSTINGS_COUNT_SQL = "SELECT COUNT(*) FROM (SELECT 1 FROM search_grams "
+      + "WHERE gram = ? LIMIT " + MAX_COUNTED_POSTINGS + ") g";
+
+  // The best weight of another query gram in a candidate, null if it does not
+  // have the gram, a lookup on the primary key
+  private static final String GRAM_WEIGHT_SQL = " + (SELECT MAX(g.weight) FROM search_grams g "
+      + "WHERE g.gram = :gram%1$d AND g.product_id = d.product_id)";
+
+  // The products of the rarest query gram that have every other gram, ranked on
+  // the sum of the best weight of each gram, then by name
+  private static final String CANDIDATES_SQL = "SELECT product_id FROM (SELECT d.product_id, p.search_name, "
+      + "d.weight%s AS score FROM (SELECT product_id, MAX(weight) AS weight FROM search_grams "
+      + "WHERE gram = :gram0 GROUP BY product_id) d JOIN products p ON p.id = d.product_id%s) c "
+      + "WHERE score IS NOT NULL ORDER BY score DESC, search_name, product_id LIMIT :limit OFFSET :offset";
+
+  // The products whose name starts with the query, in name order
+  private static final String NAME_PREFIX_SQL = "SELECT p.id FROM products p "
+      + "WHERE p.search_name LIKE :prefix ESCAPE '\\'%s ORDER BY p.search_name, p.id LIMIT :limit";
+
+  // Number of products re-indexed per batch when catching up on startup
+  private static final int BATCH_SIZE = 500;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  @Autowired
+  public ProductSearchIndex(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+  }
+
+  /**
+   * Search the products of the given type, or of every type if it is null, for
+   * the words of the query and return the ids of the best matches, best first.
+   * A query without words matches nothing.
+   */
+  public List<Integer> search(String query, String productType, int limit) {
+    List<String> words = words(query);
+    Set<String> grams = new LinkedHashSet<>();
+    words.forEach(word -> grams.addAll(grams(word)));
+
+    if (words.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+
+    String typeFilter = productType != null ? " AND p.product_type = :type" : "";
+
+    if (grams.isEmpty()) {
+      return namedParameterJdbcTemplate.queryForList(String.format(NAME_PREFIX_SQL, typeFilter),
+          new MapSqlParameterSource("prefix", likePrefix(NameSearch.normalize(query)))
+              .addValue("type", productType).addValue("limit", limit),
+          Integer.class);
+    }
+
+    // Drive the search from the rarest gram, a gram no product has matches nothing
+    List<String> byRarity = new ArrayList<>(grams);
+    Map<String, Integer> counts = new HashMap<>();
+    for (String gram : byRarity) {
+      counts.put(gram, jdbcTemplate.queryForObject(POSTINGS_COUNT_SQL, Integer.class, gram));
+    }
+    byRarity.sort(Comparator.comparing(counts::get));
+
+    if (counts.get(byRarity.get(0)) == 0) {
+      return List.of();
+    }
+
+    StringBuilder score = new StringBuilder();
+    MapSqlParameterSource parameters = new MapSqlParameterSource("type", productType).addValue("limit", limit);
+    for (int i = 0; i < byRarity.size(); i++) {
+      parameters.addValue("gram" + i, byRarity.get(i));
+      if (i > 0) {
+        score.append(String.format(GRAM_WEIGHT_SQL, i));
+      }
+    }
+    String sql = String.format(CANDIDATES_SQL, score, typeFilter);
+
+    // Keep the candidates whose text really has the query words, the grams of a
+    // word can also come from different words, reading more if some are dropped
+    List<Integer> matches = new ArrayList<>();
+    for (int offset = 0; matches.size() < limit; offset += limit) {
+      List<Integer> candidates = namedParameterJdbcTemplate.queryForList(sql, parameters.addValue("offset", offset),
+          Integer.class);
+
+      if (candidates.isEmpty()) {
+        break;
+      }
+
+      Set<Integer> verified = new HashSet<>();
+      readDocuments(candidates, (id, fields) -> {
+        if (matches(words, fields)) {
+          verified.add(id);
+        }
+      });
+      candidates.stream().filter(verified::contains).limit(limit - matches.size()).forEach(matches::add);
+
+      if (candidates.size() < limit) {
+        break;
+      }
+    }
+
+    return matches;
+  }
+
+  // Re-index the products created or edited, in the transaction of the write.
+  // Compactions only change quantities and are skipped.
+  @EventListener
+  public void onProductChanged(ProductChangedEvent event) {
+    if (event.isStockOnly()) {
+      return;
+    }
+
+    List<Integer> productIds = event.getChanges().stream()
+        .filter(change -> !change.isDeleted())
+        .map(change -> change.getAfter().getId())
+        .toList();
+
+    index(productIds);
+  }
+
+  // Replace the supplier grams of the supplier's products with the ones of its
+  // new name
+  public void renameSupplier(int supplierId, String name) {
+    jdbcTemplate.update("DELETE FROM search_grams WHERE weight IN (?, ?) AND product_id IN "
+        + "(SELECT id FROM products WHERE supplier_id = ?)", SUPPLIER, SUPPLIER * 2, supplierId);
+
+    textGrams(name, SUPPLIER).forEach((gram, weight) -> jdbcTemplate.update(
+        "INSERT INTO search_grams (gram, product_id, weight) SELECT ?, id, ? FROM products WHERE supplier_id = ?",
+        gram, weight, supplierId));
+  }
+
+  // Index the products that have no grams yet, like the ones inserted over JDBC,
+  // returning how many there were
+  public int indexMissing() {
+    List<Integer> missing = jdbcTemplate.queryForList("SELECT id FROM products p "
+        + "WHERE NOT EXISTS (SELECT 1 FROM search_grams g WHERE g.product_id = p.id)", Integer.class);
+
+    for (int start = 0; start < missing.size(); start += BATCH_SIZE) {
+      index(missing.subList(start, Math.min(start + BATCH_SIZE, missing.size())));
+    }
+
+    return missing.size();
+  }
+
+  // Replace the grams of the given products with the ones of their current text
+  public void index(Collection<Integer> productIds) {
+    if (productIds.isEmpty()) {
+      return;
+    }
+
+    namedParameterJdbcTemplate.update("DELETE FROM search_grams WHERE product_id IN (:ids)",
+        new MapSqlParameterSource("ids", productIds));
+
+    List<Object[]> rows = new ArrayList<>();
+    readDocuments(productIds, (id, fields) -> {
+      // A gram in several fields is kept once per field, with its weight
+      addRows(rows, id, fields[0], NAME);
+      addRows(rows, id, fields[1], MANUFACTURER);
+      addRows(rows, id, fields[2], SUPPLIER);
+    });
+
+    jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+  }
+
+  private static void addRows(List<Object[]> rows, int productId, String text, int weight) {
+    textGrams(text, weight).forEach((gram, gramWeight) -> rows.add(new Object[] { gram, productId, gramWeight }));
+  }
+
+  // Read the name, manufacturer (null for equipments) and supplier name of the
+  // given products
+  private void readDocuments(Collection<Integer> productIds, DocumentConsumer consumer) {
+    namedParameterJdbcTemplate.query(DOCUMENTS_SQL, new MapSqlParameterSource("ids", productIds), resultSet -> {
+      consumer.accept(resultSet.getInt("id"), new String[] { resultSet.getString("name"),
+          resultSet.getString("manufacturer"), resultSet.getString("supplier_name") });
+    });
+  }
+
+  // Check every query word occurs in the name, manufacturer or supplier name
+  static boolean matches(List<String> queryWords, String[] fields) {
+    List<String> fieldWords = Arrays.stream(fields).flatMap(field -> words(field).stream()).toList();
+    return queryWords.stream().allMatch(queryWord -> fieldWords.stream().anyMatch(word -> word.contains(queryWord)));
+  }
+
+  // Split a text into lower-cased words of letters and digits
+  static List<String> words(String text) {
+    return Arrays.stream(NameSearch.normalize(text).split("[^\\p{L}\\p{N}]+"))
+        .filter(word -> !word.isEmpty())
+        .toList();
+  }
+
+  // The grams of a word, all its trigrams, none for a word shorter than a gram
+  static Set<String> grams(String word) {
+    Set<String> grams = new LinkedHashSet<>();
+
+    for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+      grams.add(word.substring(i, i + GRAM_LENGTH));
+    }
+    return grams;
+  }
+
+  // The grams indexed for a text with their weights, the first gram of a word
+  // counts double and a gram keeps its best weight
+  static Map<String, Integer> textGrams(String text, int weight) {
+    Map<String, Integer> grams = new LinkedHashMap<>();
+
+    for (String word : words(text)) {
+      boolean first = true;
+
+      for (String gram : grams(word)) {
+        grams.merge(gram, first ? weight * 2 : weight, Math::max);
+        first = false;
+      }
+    }
+    return grams;
+  }
+
+  // Turn a query into a LIKE pattern matching the texts that start with it
+  private static String likePrefix(String query) {
+    return query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+  }
+
+  @FunctionalInterface
+  private interface DocumentConsumer {
+    void accept(int productId, String[] fields);
+  }
+}
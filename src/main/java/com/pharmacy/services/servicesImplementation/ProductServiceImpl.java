@@ -1,22 +1,58 @@
 package com.pharmacy.services.servicesImplementation;
 
+import java.util.List;
 import java.util.Collection;
 
 import com.pharmacy.models.Product;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.StockLevel;
+import com.pharmacy.models.LowStockProduct;
+import com.pharmacy.models.DashboardSummary;
+import com.pharmacy.models.InventoryValuation;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.models.ProductSuggestion;
+import com.pharmacy.models.StockBufferStats;
+import com.pharmacy.models.StockMovementReason;
 import com.pharmacy.services.ProductService;
 import com.pharmacy.repositories.ProductRepository;
+import com.pharmacy.repositories.ProductInventoryRepository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Service
 public class ProductServiceImpl implements ProductService {
-
   private ProductRepository productRepository;
 
+  private ProductInventoryRepository productInventoryRepository;
+
+  private StockLedger stockLedger;
+
+  private LowStockTracker lowStockTracker;
+
+  private InventoryValuationTracker inventoryValuationTracker;
+
+  private InventoryDashboard inventoryDashboard;
+
+  private ProductSearchIndex productSearchIndex;
+
+  private ProductNameIndex productNameIndex;
+
   @Autowired
-  public ProductServiceImpl(ProductRepository productRepository) {
+  public ProductServiceImpl(ProductRepository productRepository,
+      ProductInventoryRepository productInventoryRepository, StockLedger stockLedger,
+      LowStockTracker lowStockTracker, InventoryValuationTracker inventoryValuationTracker,
+      InventoryDashboard inventoryDashboard, ProductSearchIndex productSearchIndex,
+      ProductNameIndex productNameIndex) {
     this.productRepository = productRepository;
+    this.productInventoryRepository = productInventoryRepository;
+    this.stockLedger = stockLedger;
+    this.lowStockTracker = lowStockTracker;
+    this.inventoryValuationTracker = inventoryValuationTracker;
+    this.inventoryDashboard = inventoryDashboard;
+    this.productSearchIndex = productSearchIndex;
+    this.productNameIndex = productNameIndex;
   }
 
   @Override
@@ -24,6 +60,147 @@ public class ProductServiceImpl implements ProductService {
     return productRepository.findAll();
   }
 
+  // Get a page of the product inventory after or before the given id (keyset
+  // pagination)
+  @Override
+  public KeysetPage<ProductInventory> getProductsPage(Integer afterId, Integer beforeId, int size) {
+    size = KeysetPage.clampSize(size);
+
+    // Fetch one extra row to know whether there is another page
+    Limit limit = Limit.of(size + 1);
+
+    if (beforeId != null) {
+      return KeysetPage.backward(
+          stockLedger.withPendingDeltas(productInventoryRepository.findByIdLessThanOrderByIdDesc(beforeId, limit)),
+          size, ProductInventory::getId);
+    }
+
+    int cursor = afterId != null ? afterId : 0;
+    return KeysetPage.forward(
+        stockLedger.withPendingDeltas(productInventoryRepository.findByIdGreaterThanOrderByIdAsc(cursor, limit)),
+        size, afterId != null, ProductInventory::getId);
+  }
+
+  // Count all the products
+  @Override
+  public long countProducts() {
+    return productInventoryRepository.count();
+  }
+
+  // Search products by name, manufacturer and supplier name, best matches first
+  @Override
+  public List<ProductInventory> searchProducts(String query, int limit) {
+    List<Integer> ids = productSearchIndex.search(query, null, KeysetPage.clampSize(limit));
+
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+
+    return stockLedger.withPendingDeltas(
+        NameSearch.inRankOrder(ids, productInventoryRepository.findByIdIn(ids), ProductInventory::getId));
+  }
+
+  // Suggest the products whose name starts with what was typed, from memory
+  @Override
+  public List<ProductSuggestion> suggestProducts(String query, int limit) {
+    return productNameIndex.suggest(query, KeysetPage.clampSize(limit));
+  }
+
+  // Get the quantity of a product in stock, including the movements not
+  // compacted yet
+  @Override
+  public int getQuantity(int productId) {
+    return getStockLevel(productId).getQuantity();
+  }
+
+  // Take the given quantity of a product out of stock
+  @Override
+  public int dispense(int productId, int quantity) {
+    checkQuantity(quantity);
+
+    // The ledger checks the quantity and inserts the movement under the lock of
+    // the product row, the stock lock only queues the dispenses of this instance
+    return stockLedger.withLock(productId, () -> {
+      StockLevel level = stockLedger.take(productId, quantity, StockMovementReason.DISPENSE);
+
+      if (level == null) {
+        throw new RuntimeException("The product does not exist");
+      }
+
+      if (level.getQuantity() < quantity) {
+        throw new RuntimeException("Not enough stock, only " + level.getQuantity() + " left");
+      }
+
+      productNameIndex.addQuantity(productId, -quantity);
+      lowStockTracker.onStockChanged(productId, level, level.getQuantity() - quantity);
+      return level.getQuantity() - quantity;
+    });
+  }
+
+  // Add the given quantity of a product to the stock
+  @Override
+  public int receive(int productId, int quantity) {
+    checkQuantity(quantity);
+
+    // Adding stock cannot oversell, so it needs no lock unless the product has a
+    // reorder threshold, whose crossings must be seen in order
+    StockLevel level = getStockLevel(productId);
+
+    if (level.getReorderThreshold() == 0) {
+      stockLedger.append(productId, quantity, StockMovementReason.RECEIVE);
+      productNameIndex.addQuantity(productId, quantity);
+      return level.getQuantity() + quantity;
+    }
+
+    return stockLedger.withLock(productId, () -> {
+      StockLevel current = getStockLevel(productId);
+      stockLedger.append(productId, quantity, StockMovementReason.RECEIVE);
+      productNameIndex.addQuantity(productId, quantity);
+      lowStockTracker.onStockChanged(productId, current, current.getQuantity() + quantity);
+      return current.getQuantity() + quantity;
+    });
+  }
+
+  // Get a page of the products below their reorder threshold after the given id
+  @Override
+  public KeysetPage<LowStockProduct> getLowStockProducts(Integer afterId, int size) {
+    return lowStockTracker.getLowStockProducts(afterId, size);
+  }
+
+  // Get the valuation of the stock from the totals kept per supplier and type
+  @Override
+  public InventoryValuation getInventoryValuation() {
+    return inventoryValuationTracker.getValuation();
+  }
+
+  // Get the dashboard counters, cached until a write changes them
+  @Override
+  public DashboardSummary getDashboardSummary() {
+    return inventoryDashboard.getSummary();
+  }
+
+  private StockLevel getStockLevel(int productId) {
+    StockLevel level = stockLedger.getStockLevel(productId);
+
+    if (level == null) {
+      throw new RuntimeException("The product does not exist");
+    }
+
+    return level;
+  }
+
+  // Get the counters of the buffer the stock movements are written through
+  @Override
+  public StockBufferStats getStockBufferStats() {
+    return stockLedger.getBufferStats();
+  }
+
+  private static void checkQuantity(int quantity) {
+    if (quantity <= 0) {
+      throw new RuntimeException("The quantity must be greater than zero");
+    }
+  }
+
   // Get a list of products by the supplier's id
   @Override
   public Collection<Product> getProductsBySupplierId(int supplierId) {
@@ -0,0 +1,69 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.List;
+
+import com.pharmacy.events.ProductChangedEvent;
+
+import org.springframework.stereotype.Component;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+// Folds the pending movements of the stock ledger into the quantities stored on
+// the products, a batch of products per transaction. The change events are
+// published here, so the read models see one change per product and batch
+// instead of one per movement.
+@Component
+public class StockCompactor {
+  public static final int BATCH_SIZE = 200;
+
+  private StockLedger stockLedger;
+
+  private ApplicationEventPublisher eventPublisher;
+
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  public StockCompactor(StockLedger stockLedger, ApplicationEventPublisher eventPublisher,
+      PlatformTransactionManager transactionManager) {
+    this.stockLedger = stockLedger;
+    this.eventPublisher = eventPublisher;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Scheduled(fixedDelayString = "${pharmacy.stock.compaction-delay-ms:1000}")
+  public void compactPeriodically() {
+    compact();
+  }
+
+  // Fold all the pending movements, returning the number of products changed
+  public int compact() {
+    int compacted = 0;
+    int batchSize;
+
+    do {
+      Integer changed = transactionTemplate.execute(status -> compactBatch());
+      batchSize = changed != null ? changed : 0;
+      compacted += batchSize;
+    } while (batchSize == BATCH_SIZE);
+
+    return compacted;
+  }
+
+  // Fold the pending movements of one batch of products
+  private int compactBatch() {
+    List<Integer> productIds = stockLedger.getProductsWithPendingMovements(BATCH_SIZE);
+
+    for (int productId : productIds) {
+      ProductChangedEvent event = stockLedger.compact(productId);
+
+      if (event != null) {
+        eventPublisher.publishEvent(event);
+      }
+    }
+
+    return productIds.size();
+  }
+}
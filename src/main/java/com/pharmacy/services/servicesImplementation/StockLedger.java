@@ -0,0 +1,394 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
+
+import com.pharmacy.models.Product;
+import com.pharmacy.models.StockLevel;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.models.StockBufferStats;
+import com.pharmacy.models.StockMovementReason;
+import com.pharmacy.events.ProductChangedEvent;
+
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The append-only ledger of stock movements. A change to the stock of a product
+ * is an insert into stock_movements, so dispensing does not update the product
+ * row. The quantity stored on the product is the compacted quantity, the
+ * pending movements not folded into it yet are added on reads. Movements that
+ * add stock first wait in the {@link StockMovementBuffer}, which writes them in
+ * batches, and {@link StockCompactor} folds the pending movements in batches.
+ *
+ * Movements that take stock out are checked and inserted by the database under
+ * the product's row in stock_locks, so no instance of the application can
+ * oversell. Dispenses of one product still run one after the other, on that
+ * row rather than on the products row, so they do not wait for edits,
+ * compactions or reads of the product. The in-process stock locks only queue
+ * the dispenses of one instance before they reach the lock row.
+ */
+@Component
+public class StockLedger {
+  // Number of locks the products are spread over, a product always uses the same one
+  private static final int LOCK_STRIPES = 64;
+
+  private static final String STOCK_LEVEL_SQL = "SELECT p.quantity + COALESCE((SELECT SUM(m.delta) "
+      + "FROM stock_movements m WHERE m.compacted = FALSE AND m.product_id = p.id), 0) AS quantity, "
+      + "p.reorder_threshold FROM products p WHERE p.id = ?";
+
+  private static final String INSERT_SQL = "INSERT INTO stock_movements (product_id, delta, reason) VALUES (?, ?, ?)";
+
+  private static final String LOCK_SQL = "SELECT product_id FROM stock_locks WHERE product_id = ? FOR UPDATE";
+
+  // Mark the pending movements of a product as compacted and read their deltas
+  // back in the same statement
+  private static final String TAKE_PENDING_SQL = "SELECT delta FROM FINAL TABLE ("
+      + "UPDATE stock_movements SET compacted = TRUE WHERE compacted = FALSE AND product_id = ?)";
+
+  // Add the folded movements to the product and read the updated row back. The
+  // version is kept, the available quantity does not change, and edits apply
+  // the difference to the quantity they were shown instead of overwriting it
+  private static final String FOLD_SQL = "SELECT p.id, p.name, p.product_type, p.quantity, p.price, "
+      + "p.supplier_id, s.name AS supplier_name FROM FINAL TABLE ("
+      + "UPDATE products SET quantity = quantity + ? WHERE id = ?) p "
+      + "JOIN suppliers s ON s.id = p.supplier_id";
+
+  private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+  private JdbcTemplate jdbcTemplate;
+
+  private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  private EntityManager entityManager;
+
+  private StockMovementBuffer buffer;
+
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  public StockLedger(JdbcTemplate jdbcTemplate, EntityManager entityManager, StockMovementBuffer buffer,
+      PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    this.entityManager = entityManager;
+    this.buffer = buffer;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  // Hold the stock lock of a product until the current transaction ends, so a
+  // check of the available quantity stays true until the movement made from it
+  // is committed. Only changes that can lower the stock need it.
+  public void lock(int productId) {
+    ReentrantLock lock = lockOf(productId);
+    lock.lock();
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        lock.unlock();
+      }
+    });
+  }
+
+  // Run an action holding the stock lock of a product. The lock only keeps the
+  // dispenses of this instance from piling up on the lock row, which take()
+  // locks until the end of the transaction.
+  public <T> T withLock(int productId, Supplier<T> action) {
+    ReentrantLock lock = lockOf(productId);
+    lock.lock();
+    try {
+      return action.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Append a movement that adds stock to the ledger. It is written with the next
+  // flush of the buffer, not with the current transaction.
+  public void append(int productId, int delta, StockMovementReason reason) {
+    buffer.add(productId, delta, reason);
+  }
+
+  /**
+   * Take the given quantity of a product out of stock, in the current
+   * transaction or a new one. The product's lock row is locked, its buffered
+   * movements are written with the movement, and the movement is only inserted
+   * if the quantity in the ledger covers it, so the database decides even when
+   * several instances dispense the same product. Returns the stock level before
+   * the movement, or null if the product does not exist.
+   */
+  public StockLevel take(int productId, int quantity, StockMovementReason reason) {
+    return transactionTemplate.execute(status -> {
+      if (!lockStock(productId)) {
+        return null;
+      }
+
+      // Count only what is in the ledger, movements still in the buffer could be
+      // lost if the process died
+      buffer.drain(productId).forEach((bufferedReason, delta) -> jdbcTemplate.update(INSERT_SQL, productId,
+          delta, bufferedReason.name()));
+
+      // One statement reads the stored quantity and the pending movements, so a
+      // compaction committed meanwhile is either seen whole or not at all
+      StockLevel level = jdbcTemplate.queryForObject(STOCK_LEVEL_SQL,
+          (resultSet, rowNumber) -> new StockLevel(resultSet.getInt("quantity"),
+              resultSet.getInt("reorder_threshold")),
+          productId);
+
+      if (level.getQuantity() >= quantity) {
+        jdbcTemplate.update(INSERT_SQL, productId, -quantity, reason.name());
+      }
+
+      return level;
+    });
+  }
+
+  // Get the compacted quantity of a product plus its pending movements, or null
+  // if the product does not exist
+  public Integer getAvailableQuantity(int productId) {
+    StockLevel level = getStockLevel(productId);
+    return level != null ? level.getQuantity() : null;
+  }
+
+  // Get the available quantity of a product with its reorder threshold, read in
+  // the same query, or null if the product does not exist
+  public StockLevel getStockLevel(int productId) {
+    return buffer.read(() -> {
+      List<StockLevel> level = jdbcTemplate.query(STOCK_LEVEL_SQL,
+          (resultSet, rowNumber) -> new StockLevel(resultSet.getInt("quantity"),
+              resultSet.getInt("reorder_threshold")),
+          productId);
+      return level.isEmpty() ? null : new StockLevel(
+          level.get(0).getQuantity() + buffer.getPendingDeltas(List.of(productId)).getOrDefault(productId, 0),
+          level.get(0).getReorderThreshold());
+    });
+  }
+
+  // Get the sum of the pending movements of the given products, products without
+  // pending movements are left out
+  public Map<Integer, Integer> getPendingDeltas(Collection<Integer> productIds) {
+    if (productIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    return buffer.read(() -> {
+      Map<Integer, Integer> deltas = new HashMap<>(getStoredPendingDeltas(productIds));
+      buffer.getPendingDeltas(productIds).forEach((productId, delta) -> deltas.merge(productId, delta, Integer::sum));
+      return deltas;
+    });
+  }
+
+  // Get the sum of the pending movements written to the ledger
+  private Map<Integer, Integer> getStoredPendingDeltas(Collection<Integer> productIds) {
+    Map<Integer, Integer> deltas = new HashMap<>();
+    namedParameterJdbcTemplate.query("SELECT product_id, SUM(delta) AS delta FROM stock_movements "
+        + "WHERE compacted = FALSE AND product_id IN (:ids) GROUP BY product_id",
+        new MapSqlParameterSource("ids", productIds),
+        resultSet -> {
+          deltas.put(resultSet.getInt("product_id"), resultSet.getInt("delta"));
+        });
+    return deltas;
+  }
+
+  // Get a copy of each inventory row with its pending movements added
+  public List<ProductInventory> withPendingDeltas(List<ProductInventory> rows) {
+    Map<Integer, Integer> deltas = getPendingDeltas(rows.stream().map(ProductInventory::getId).toList());
+
+    if (deltas.isEmpty()) {
+      return rows;
+    }
+
+    return rows.stream()
+        .map(row -> {
+          Integer delta = deltas.get(row.getId());
+          return delta == null ? row : new ProductInventory(row.getId(), row.getName(), row.getProductType(),
+              row.getQuantity() + delta, row.getPrice(), row.getSupplierId(), row.getSupplierName());
+        })
+        .toList();
+  }
+
+  // Add the pending movements to the quantity of each product. The products that
+  // have some are detached first, so the available quantity is never flushed
+  // or taken for the stored one by a later edit in the same persistence context.
+  public void addPendingDeltas(Collection<? extends Product> products) {
+    Map<Integer, Integer> deltas = getPendingDeltas(products.stream().map(Product::getId).toList());
+
+    for (Product product : products) {
+      Integer delta = deltas.get(product.getId());
+
+      if (delta != null) {
+        if (entityManager.contains(product)) {
+          entityManager.detach(product);
+        }
+        product.setQuantity(product.getQuantity() + delta);
+      }
+    }
+  }
+
+  // Get the ids of up to the given number of products with pending movements.
+  // Movements of products that are not committed yet, which the buffer may
+  // write before them, are left for later.
+  public List<Integer> getProductsWithPendingMovements(int limit) {
+    return jdbcTemplate.queryForList("SELECT DISTINCT m.product_id FROM stock_movements m "
+        + "JOIN products p ON p.id = m.product_id WHERE m.compacted = FALSE LIMIT ?", Integer.class, limit);
+  }
+
+  // Fold the pending movements of a product into its stored quantity, returning
+  // the change to publish, or null if it had nothing pending or is not visible
+  public ProductChangedEvent compact(int productId) {
+    // Lock the product row first, so two folds of the same product run one
+    // after the other and the second one only sees what the first left
+    List<Integer> row = jdbcTemplate.queryForList("SELECT id FROM products WHERE id = ? FOR UPDATE",
+        Integer.class, productId);
+
+    if (row.isEmpty()) {
+      return null;
+    }
+
+    int delta = takePending(productId);
+
+    if (delta == 0) {
+      return null;
+    }
+
+    List<ProductInventory> updated = jdbcTemplate.query(FOLD_SQL,
+        (resultSet, rowNumber) -> new ProductInventory(resultSet.getInt("id"), resultSet.getString("name"),
+            resultSet.getString("product_type"), resultSet.getInt("quantity"), resultSet.getDouble("price"),
+            resultSet.getInt("supplier_id"), resultSet.getString("supplier_name")),
+        delta, productId);
+    return updated.isEmpty() ? null : ProductChangedEvent.quantityChanged(updated.get(0), delta);
+  }
+
+  /**
+   * Record an edit of the quantity of a managed product, made from the given
+   * version. The editor typed the product's quantity while the available
+   * quantity shown to it was the given one, so only the difference is applied
+   * and movements made since it was shown are kept. Without a shown quantity
+   * the typed one becomes the available quantity. The difference is kept as an
+   * adjustment and the product's pending movements are folded in with it,
+   * including the ones still in the buffer. The caller must hold the stock lock
+   * of the product. Returns the new stored quantity.
+   */
+  public int applyEdit(Product product, Integer shownQuantity, int storedVersion) {
+    // Wait for the dispenses of the product, which could otherwise take stock the
+    // edit removes
+    lockStock(product.getId());
+
+    // Lock the product row, so no compaction changes the stored quantity until
+    // the edit is committed
+    lockProduct(product, LockModeType.PESSIMISTIC_WRITE);
+    int storedQuantity = jdbcTemplate.queryForObject("SELECT quantity FROM products WHERE id = ?", Integer.class,
+        product.getId());
+
+    int adjustment = product.getQuantity() - (shownQuantity != null ? shownQuantity
+        : storedQuantity + getPendingDeltas(List.of(product.getId())).getOrDefault(product.getId(), 0));
+
+    if (adjustment == 0) {
+      return storedQuantity;
+    }
+
+    // The quantity column is not written by the entity, so count the edit as a
+    // new version unless its other fields already did
+    if (product.getVersion() == storedVersion) {
+      lockProduct(product, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+    }
+
+    // Write the buffered movements of the product with the edit
+    Map<StockMovementReason, Integer> buffered = buffer.drain(product.getId());
+    int quantity = storedQuantity + takePending(product.getId()) + adjustment
+        + buffered.values().stream().mapToInt(Integer::intValue).sum();
+
+    if (quantity < 0) {
+      throw new RuntimeException("The quantity cannot be negative");
+    }
+
+    buffered.forEach((reason, delta) -> jdbcTemplate.update(
+        "INSERT INTO stock_movements (product_id, delta, reason, compacted) VALUES (?, ?, ?, TRUE)",
+        product.getId(), delta, reason.name()));
+    jdbcTemplate.update("INSERT INTO stock_movements (product_id, delta, reason, compacted) VALUES (?, ?, ?, TRUE)",
+        product.getId(), adjustment, StockMovementReason.ADJUSTMENT.name());
+    jdbcTemplate.update("UPDATE products SET quantity = ? WHERE id = ?", quantity, product.getId());
+    return quantity;
+  }
+
+  // Drop the pending movements of a deleted product, the buffered ones once the
+  // delete is committed
+  public void discard(int productId) {
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        buffer.discard(productId);
+      }
+    });
+    jdbcTemplate.update("UPDATE stock_movements SET compacted = TRUE WHERE compacted = FALSE AND product_id = ?",
+        productId);
+  }
+
+  public StockBufferStats getBufferStats() {
+    return buffer.getStats();
+  }
+
+  private ReentrantLock lockOf(int productId) {
+    return locks[Math.floorMod(productId, LOCK_STRIPES)];
+  }
+
+  private void lockProduct(Product product, LockModeType mode) {
+    try {
+      entityManager.lock(product, mode);
+    } catch (OptimisticLockException e) {
+      throw new OptimisticLockingFailureException(e.getMessage(), e);
+    }
+  }
+
+  // Lock the stock of a product until the end of the transaction, adding its lock
+  // row on first use. Returns false if the product does not exist.
+  private boolean lockStock(int productId) {
+    if (!jdbcTemplate.queryForList(LOCK_SQL, Integer.class, productId).isEmpty()) {
+      return true;
+    }
+
+    try {
+      // The new row stays locked by this transaction until it ends
+      jdbcTemplate.update("INSERT INTO stock_locks (product_id) VALUES (?)", productId);
+      return true;
+    } catch (DuplicateKeyException e) {
+      // Another transaction added the row in the meantime
+      return !jdbcTemplate.queryForList(LOCK_SQL, Integer.class, productId).isEmpty();
+    } catch (DataIntegrityViolationException e) {
+      // The foreign key rejects a product that does not exist
+      return false;
+    }
+  }
+
+  // Mark the pending movements of a product as compacted, returning their sum.
+  // The product row must be locked.
+  private int takePending(int productId) {
+    return jdbcTemplate.queryForList(TAKE_PENDING_SQL, Integer.class, productId).stream()
+        .mapToInt(Integer::intValue)
+        .sum();
+  }
+}
@@ -0,0 +1,452 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PreDestroy;
+
+import com.pharmacy.models.StockBufferStats;
+import com.pharmacy.models.StockMovementReason;
+
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Write-behind buffer in front of the stock ledger for the changes that add
+ * stock. Stock changes are added up in memory per product and reason and
+ * written to stock_movements as one JDBC batch, every short window, as soon as
+ * too many products are waiting, and on shutdown. A burst of deliveries of a
+ * product becomes one row. Reads of the stock add what is still buffered.
+ *
+ * A change made inside a transaction stays with the transaction, where only
+ * its reads see it, and enters the buffer once it commits, so a rollback drops
+ * it. While flushes fail the buffer takes nothing more: changes are written
+ * with their transaction, or on their own, and a failure reaches the caller.
+ * Dispenses are never buffered, see {@link StockLedger#take}, so a crash can
+ * only lose deliveries of the last window, which leaves the stock counted too
+ * low and never too high.
+ */
+@Component
+public class StockMovementBuffer {
+  // Number of products with buffered changes at which the adding thread writes
+  // the buffer out itself, which bounds its size
+  public static final int MAX_PENDING_PRODUCTS = 1000;
+
+  private static final String INSERT_SQL = "INSERT INTO stock_movements (product_id, delta, reason) VALUES (?, ?, ?)";
+
+  // Number of times a read is retried while flushes commit before it waits for
+  // the flush lock instead
+  private static final int MAX_READ_ATTEMPTS = 100;
+
+  // Buffered changes, replaced by an empty map on every flush
+  private Map<Key, Pending> pending = new HashMap<>();
+
+  // The changes being written by the running flush, still counted by reads
+  // until its transaction is committed
+  private Map<Key, Pending> inFlight = Collections.emptyMap();
+
+  // Odd while a flush commits and drops its changes from the buffer. A read of
+  // the table and the buffer is retried if it changed, so a read never counts
+  // a batch in both or in neither. Nothing waits for the database under a lock.
+  private final AtomicLong generation = new AtomicLong();
+
+  // Only one flush at a time
+  private final ReentrantLock flushLock = new ReentrantLock();
+
+  // Set while the last flush failed, cleared by the next one that succeeds
+  private volatile boolean flushFailing;
+
+  private final AtomicLong changesWritten = new AtomicLong();
+
+  private final AtomicLong rowsWritten = new AtomicLong();
+
+  private final AtomicLong flushes = new AtomicLong();
+
+  private final AtomicLong flushNanos = new AtomicLong();
+
+  private final AtomicLong maxFlushNanos = new AtomicLong();
+
+  private JdbcTemplate jdbcTemplate;
+
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  public StockMovementBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+
+    // A flush commits on its own, also when the buffer fills up inside another
+    // transaction
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  // Add a stock change, kept with the current transaction until it commits
+  public void add(int productId, int delta, StockMovementReason reason) {
+    Key key = new Key(productId, reason);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      transactionChanges().computeIfAbsent(key, unused -> new Pending()).add(delta, 1);
+      return;
+    }
+
+    Pending change = new Pending();
+    change.add(delta, 1);
+
+    if (flushFailing) {
+      transactionTemplate.executeWithoutResult(status -> write(Map.of(key, change)));
+      countWritten(Map.of(key, change));
+      return;
+    }
+
+    enqueue(Map.of(key, change));
+  }
+
+  /**
+   * Run a read that adds the buffered changes to what the stock table holds.
+   * The reader may run more than once, so it must only read. If flushes keep
+   * committing while it runs, it runs once more holding the flush lock.
+   */
+  public <T> T read(Supplier<T> reader) {
+    for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+      long before = generation.get();
+
+      if (before % 2 == 0) {
+        T result = reader.get();
+
+        if (generation.get() == before) {
+          return result;
+        }
+      }
+
+      Thread.onSpinWait();
+    }
+
+    flushLock.lock();
+    try {
+      return reader.get();
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  // Get the sum of the buffered changes of the given products, with the ones of
+  // the current transaction, products without buffered changes are left out
+  public synchronized Map<Integer, Integer> getPendingDeltas(Collection<Integer> productIds) {
+    Map<Key, Pending> local = currentTransactionChanges();
+
+    if (pending.isEmpty() && inFlight.isEmpty() && local.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<Integer, Integer> deltas = new HashMap<>();
+
+    for (int productId : productIds) {
+      for (StockMovementReason reason : StockMovementReason.values()) {
+        Key key = new Key(productId, reason);
+
+        for (Map<Key, Pending> changes : List.of(pending, inFlight, local)) {
+          Pending buffered = changes.get(key);
+
+          if (buffered != null) {
+            deltas.merge(productId, buffered.delta, Integer::sum);
+          }
+        }
+      }
+    }
+
+    return deltas;
+  }
+
+  /**
+   * Take the buffered changes of a product out of the buffer, with the ones of
+   * the current transaction, to write them in the transaction instead. The
+   * buffered ones are put back if the transaction rolls back, before the locks
+   * released at its end. A running flush is waited for, so its changes are in
+   * the ledger when the transaction reads it.
+   */
+  public Map<StockMovementReason, Integer> drain(int productId) {
+    Map<StockMovementReason, Integer> deltas = new HashMap<>();
+    Map<Key, Pending> local = currentTransactionChanges();
+
+    for (StockMovementReason reason : StockMovementReason.values()) {
+      Pending change = local.remove(new Key(productId, reason));
+
+      if (change != null) {
+        deltas.put(reason, change.delta);
+      }
+    }
+
+    // Most products have nothing buffered, they do not wait for the flush
+    if (!isBuffered(productId)) {
+      return deltas;
+    }
+
+    Map<StockMovementReason, Pending> drained = new HashMap<>();
+
+    flushLock.lock();
+    try {
+      synchronized (this) {
+        for (StockMovementReason reason : StockMovementReason.values()) {
+          Pending buffered = pending.remove(new Key(productId, reason));
+
+          if (buffered != null) {
+            drained.put(reason, buffered);
+          }
+        }
+      }
+    } finally {
+      flushLock.unlock();
+    }
+
+    if (drained.isEmpty()) {
+      return deltas;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        if (status == STATUS_COMMITTED) {
+          changesWritten.addAndGet(drained.values().stream().mapToLong(buffered -> buffered.changes).sum());
+          rowsWritten.addAndGet(drained.size());
+          return;
+        }
+
+        Map<Key, Pending> restored = new HashMap<>();
+        drained.forEach((reason, buffered) -> restored.put(new Key(productId, reason), buffered));
+        restore(restored);
+      }
+    });
+
+    drained.forEach((reason, buffered) -> deltas.merge(reason, buffered.delta, Integer::sum));
+    return deltas;
+  }
+
+  // Check if a product has changes in the buffer or in the running flush
+  private synchronized boolean isBuffered(int productId) {
+    for (StockMovementReason reason : StockMovementReason.values()) {
+      Key key = new Key(productId, reason);
+
+      if (pending.containsKey(key) || inFlight.containsKey(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Drop the buffered changes of a deleted product
+  public synchronized void discard(int productId) {
+    for (StockMovementReason reason : StockMovementReason.values()) {
+      pending.remove(new Key(productId, reason));
+    }
+  }
+
+  // Write the buffered changes to the ledger as one batch
+  @Scheduled(fixedDelayString = "${pharmacy.stock.buffer-flush-ms:200}")
+  public void flush() {
+    flushLock.lock();
+    try {
+      Map<Key, Pending> batch;
+
+      synchronized (this) {
+        if (pending.isEmpty()) {
+          return;
+        }
+
+        batch = pending;
+        inFlight = batch;
+        pending = new HashMap<>();
+      }
+
+      List<Object[]> rows = rows(batch);
+      long changes = batch.values().stream().mapToLong(change -> change.changes).sum();
+
+      long start = System.nanoTime();
+      boolean written = false;
+      try {
+        transactionTemplate.executeWithoutResult(status -> {
+          jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+          generation.incrementAndGet();
+        });
+        written = true;
+      } finally {
+        synchronized (this) {
+          inFlight = Collections.emptyMap();
+        }
+
+        // Keep the changes of a failed flush to write them with the next one,
+        // new changes are written without the buffer until then
+        if (!written) {
+          restore(batch);
+        }
+        flushFailing = !written;
+
+        if (generation.get() % 2 == 1) {
+          generation.incrementAndGet();
+        }
+      }
+      long elapsed = System.nanoTime() - start;
+
+      changesWritten.addAndGet(changes);
+      rowsWritten.addAndGet(rows.size());
+      flushes.incrementAndGet();
+      flushNanos.addAndGet(elapsed);
+      maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  // Write out what is left before the application stops
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  public StockBufferStats getStats() {
+    long count = flushes.get();
+    int pendingProducts;
+
+    synchronized (this) {
+      pendingProducts = (int) pending.keySet().stream().map(key -> key.productId).distinct().count();
+    }
+
+    return new StockBufferStats(changesWritten.get(), rowsWritten.get(), count,
+        count == 0 ? 0 : flushNanos.get() / 1e6 / count, maxFlushNanos.get() / 1e6, pendingProducts);
+  }
+
+  // Add committed changes to the buffer, writing it out when too many products
+  // are waiting
+  private void enqueue(Map<Key, Pending> changes) {
+    restore(changes);
+
+    if (isFull()) {
+      try {
+        flush();
+      } catch (RuntimeException e) {
+        // The changes stay buffered for the next flush, and the ones that come
+        // in meanwhile are written without the buffer
+      }
+    }
+  }
+
+  private synchronized boolean isFull() {
+    return pending.size() >= MAX_PENDING_PRODUCTS;
+  }
+
+  // Write changes to the ledger in the current transaction
+  private void write(Map<Key, Pending> changes) {
+    jdbcTemplate.batchUpdate(INSERT_SQL, rows(changes));
+  }
+
+  // Count changes written without the buffer once their transaction commits
+  private void countWritten(Map<Key, Pending> changes) {
+    changesWritten.addAndGet(changes.values().stream().mapToLong(change -> change.changes).sum());
+    rowsWritten.addAndGet(changes.size());
+  }
+
+  private static List<Object[]> rows(Map<Key, Pending> changes) {
+    List<Object[]> rows = new ArrayList<>(changes.size());
+
+    for (Map.Entry<Key, Pending> entry : changes.entrySet()) {
+      // Changes that cancel out leave nothing to record
+      if (entry.getValue().delta != 0) {
+        rows.add(new Object[] { entry.getKey().productId, entry.getValue().delta, entry.getKey().reason.name() });
+      }
+    }
+    return rows;
+  }
+
+  // Get the changes added in the current transaction, empty outside of one
+  @SuppressWarnings("unchecked")
+  private Map<Key, Pending> currentTransactionChanges() {
+    Map<Key, Pending> changes = (Map<Key, Pending>) TransactionSynchronizationManager.getResource(this);
+    return changes != null ? changes : new HashMap<>();
+  }
+
+  /**
+   * Get the changes added in the current transaction, starting them on the
+   * first change. They go into the buffer once the transaction commits. If
+   * the buffer cannot take them they are written with the transaction instead,
+   * so a failure rolls it back rather than losing them.
+   */
+  @SuppressWarnings("unchecked")
+  private Map<Key, Pending> transactionChanges() {
+    Map<Key, Pending> existing = (Map<Key, Pending>) TransactionSynchronizationManager.getResource(this);
+
+    if (existing != null) {
+      return existing;
+    }
+
+    Map<Key, Pending> changes = new HashMap<>();
+    TransactionSynchronizationManager.bindResource(this, changes);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      private boolean written;
+
+      @Override
+      public void beforeCommit(boolean readOnly) {
+        if (!changes.isEmpty() && (flushFailing || isFull())) {
+          write(changes);
+          written = true;
+        }
+      }
+
+      @Override
+      public void afterCommit() {
+        if (written) {
+          countWritten(changes);
+        } else if (!changes.isEmpty()) {
+          enqueue(changes);
+        }
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(StockMovementBuffer.this);
+      }
+    });
+    return changes;
+  }
+
+  // Put changes that were not written back into the buffer
+  private synchronized void restore(Map<Key, Pending> changes) {
+    changes.forEach((key, buffered) -> pending.computeIfAbsent(key, unused -> new Pending())
+        .add(buffered.delta, buffered.changes));
+  }
+
+  // The buffered changes of a product are kept apart per reason, so the ledger
+  // still tells dispenses from deliveries
+  private record Key(int productId, StockMovementReason reason) {
+  }
+
+  // The sum of the buffered changes of a key and how many there were
+  private static class Pending {
+    private int delta;
+
+    private long changes;
+
+    void add(int delta, long changes) {
+      this.delta += delta;
+      this.changes += changes;
+    }
+  }
+}
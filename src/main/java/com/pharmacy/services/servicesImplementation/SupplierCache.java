@@ -0,0 +1,104 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.List;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pharmacy.models.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-process copy of the supplier directory used to fill the supplier lists on
+ * the medicines, equipments and suppliers pages. Supplier writes invalidate it
+ * straight away and again when their transaction completes, so a page load
+ * running alongside an uncommitted write cannot put stale suppliers back.
+ */
+@Component
+public class SupplierCache {
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  // Bumped on every invalidation, a load only fills the cache if no
+  // invalidation happened while it was running
+  private final AtomicLong generation = new AtomicLong();
+
+  private volatile List<Supplier> suppliers;
+
+  // Get the cached suppliers, or null (counted as a miss) if they must be loaded
+  public Collection<Supplier> get() {
+    List<Supplier> cached = suppliers;
+
+    if (cached == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    hits.incrementAndGet();
+    return cached;
+  }
+
+  // Get the generation to pass to put() before loading the suppliers
+  public long generation() {
+    return generation.get();
+  }
+
+  // Store freshly loaded suppliers and return what the caller should use.
+  // Suppliers loaded inside a transaction may include uncommitted writes, so they
+  // are returned as they are and not cached
+  public Collection<Supplier> put(long loadedGeneration, Collection<Supplier> loaded) {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      return loaded;
+    }
+
+    List<Supplier> copies = loaded.stream().map(SupplierCache::copy).toList();
+
+    synchronized (this) {
+      if (generation.get() == loadedGeneration) {
+        suppliers = copies;
+      }
+    }
+
+    return copies;
+  }
+
+  // Drop the cached suppliers now and again once the current transaction ends
+  public void invalidate() {
+    clear();
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          clear();
+        }
+      });
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private synchronized void clear() {
+    generation.incrementAndGet();
+    suppliers = null;
+  }
+
+  // Detached copy so cached suppliers are not tied to any persistence context.
+  // It keeps every field, the suppliers page posts the version back with edits
+  private static Supplier copy(Supplier supplier) {
+    Supplier copy = new Supplier(supplier.getName(), supplier.getContact());
+    copy.setId(supplier.getId());
+    copy.setVersion(supplier.getVersion());
+    return copy;
+  }
+}
@@ -0,0 +1,48 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Map;
+import java.util.HashMap;
+
+import com.pharmacy.events.ProductChangedEvent;
+import com.pharmacy.repositories.SupplierRepository;
+
+import org.springframework.stereotype.Component;
+import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Autowired;
+
+// Keeps the product_count column of the suppliers in sync with product writes.
+// Runs in the transaction of the service that published the event, so a count
+// only changes if the write commits.
+@Component
+public class SupplierProductCounter {
+
+  private SupplierRepository supplierRepository;
+
+  @Autowired
+  public SupplierProductCounter(SupplierRepository supplierRepository) {
+    this.supplierRepository = supplierRepository;
+  }
+
+  @EventListener
+  public void onProductChanged(ProductChangedEvent event) {
+    // Add up the changes per supplier first so a batch of products costs one
+    // update per supplier
+    Map<Integer, Integer> deltas = new HashMap<>();
+
+    for (ProductChangedEvent.Change change : event.getChanges()) {
+      if (change.getBefore() != null) {
+        deltas.merge(change.getBefore().getSupplierId(), -1, Integer::sum);
+      }
+
+      if (change.getAfter() != null) {
+        deltas.merge(change.getAfter().getSupplierId(), 1, Integer::sum);
+      }
+    }
+
+    deltas.forEach((supplierId, delta) -> {
+      if (delta != 0) {
+        supplierRepository.addToProductCount(supplierId, delta);
+      }
+    });
+  }
+}
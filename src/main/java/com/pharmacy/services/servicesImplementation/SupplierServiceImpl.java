@@ -1,31 +1,48 @@
 package com.pharmacy.services.servicesImplementation;
 
+import java.util.Map;
+import java.util.HashMap;
 import java.util.Collection;
 
 import com.pharmacy.models.Supplier;
+import com.pharmacy.models.SupplierPatch;
 import com.pharmacy.services.SupplierService;
-import com.pharmacy.repositories.ProductRepository;
 import com.pharmacy.repositories.SupplierRepository;
+import com.pharmacy.repositories.ProductInventoryRepository;
 
 import org.springframework.stereotype.Service;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Service
 public class SupplierServiceImpl implements SupplierService {
+  private static final String NAME_USED = "Name already used by another supplier";
+
+  private static final String CONTACT_USED = "Phone number already used by another supplier";
+
+  private static final String STALE_VERSION = "The supplier was changed by someone else, reload it and try again";
 
   private SupplierRepository supplierRepository;
 
-  private ProductRepository productRepository;
+  private ProductInventoryRepository productInventoryRepository;
 
-  @Autowired
-  public SupplierServiceImpl(SupplierRepository supplierRepository, ProductRepository productRepository) {
-    this.supplierRepository = supplierRepository;
-    this.productRepository = productRepository;
-  }
+  private SupplierCache supplierCache;
+
+  private InventoryDashboard inventoryDashboard;
+
+  private ProductSearchIndex productSearchIndex;
 
   @Autowired
-  public void setProductRepository(ProductRepository productRepository) {
-    this.productRepository = productRepository;
+  public SupplierServiceImpl(SupplierRepository supplierRepository,
+      ProductInventoryRepository productInventoryRepository, SupplierCache supplierCache,
+      InventoryDashboard inventoryDashboard, ProductSearchIndex productSearchIndex) {
+    this.supplierRepository = supplierRepository;
+    this.productInventoryRepository = productInventoryRepository;
+    this.supplierCache = supplierCache;
+    this.inventoryDashboard = inventoryDashboard;
+    this.productSearchIndex = productSearchIndex;
   }
 
   // Helper method to check if the supplier's phone number is valid
@@ -44,42 +61,130 @@ public class SupplierServiceImpl implements SupplierService {
     return true;
   }
 
+  // Remove the spaces around the name and phone number so the unique indexes
+  // compare them the same way as the checks below
+  private static void trimFields(Supplier supplier) {
+    if (supplier.getName() != null) {
+      supplier.setName(supplier.getName().trim());
+    }
+
+    if (supplier.getContact() != null) {
+      supplier.setContact(supplier.getContact().trim());
+    }
+  }
+
+  // Check if another supplier uses the same name or phone number, finding both
+  // with a single query on the unique indexes
+  private void checkForDuplicateSupplier(Supplier supplier) {
+    checkForDuplicateSupplier(supplier.getId(), supplier.getName(), supplier.getContact());
+  }
+
+  private void checkForDuplicateSupplier(int id, String name, String contact) {
+    boolean nameUsed = false;
+    boolean contactUsed = false;
+
+    for (Supplier other : supplierRepository.findByNameOrContact(name, contact)) {
+      if (other.getId() == id) {
+        continue;
+      }
+
+      nameUsed |= name.equals(other.getName());
+      contactUsed |= contact != null && contact.equals(other.getContact());
+    }
+
+    // If the name is used by another supplier
+    if (nameUsed) {
+      throw new RuntimeException(NAME_USED);
+    }
+
+    // If the phone number is used by another supplier
+    if (contactUsed) {
+      throw new RuntimeException(CONTACT_USED);
+    }
+  }
+
+  // Save the supplier, turning a violation of the unique indexes by a supplier
+  // saved at the same time into the same messages as the checks, and an update
+  // committed in between into a version error
+  private Supplier saveSupplier(Supplier supplier) {
+    try {
+      return supplierRepository.saveAndFlush(supplier);
+    } catch (OptimisticLockingFailureException e) {
+      throw new OptimisticLockingFailureException(STALE_VERSION);
+    } catch (DataIntegrityViolationException e) {
+      if (UniqueConstraints.isViolated(e, UniqueConstraints.SUPPLIER_NAME)) {
+        throw new RuntimeException(NAME_USED);
+      }
+
+      if (UniqueConstraints.isViolated(e, UniqueConstraints.SUPPLIER_CONTACT)) {
+        throw new RuntimeException(CONTACT_USED);
+      }
+
+      throw e;
+    }
+  }
+
   // Get all the suppliers
   @Override
   public Collection<Supplier> getAllSuppliers() {
-    return supplierRepository.findAll();
+    Collection<Supplier> cached = supplierCache.get();
+
+    if (cached != null) {
+      return cached;
+    }
+
+    // Read the generation before loading so an invalidation during the load
+    // keeps the result out of the cache
+    long generation = supplierCache.generation();
+    return supplierCache.put(generation, supplierRepository.findAll());
+  }
+
+  // Get the number of products of every supplier, read from the counts kept on
+  // the supplier rows
+  @Override
+  public Map<Integer, Integer> getProductCounts() {
+    Map<Integer, Integer> counts = new HashMap<>();
+
+    for (Object[] row : supplierRepository.findProductCounts()) {
+      counts.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+    }
+
+    return counts;
+  }
+
+  // Get a supplier by id, or null if it does not exist
+  @Override
+  public Supplier getSupplierById(int id) {
+    return supplierRepository.findById(id).orElse(null);
   }
 
   // Create a new supplier
   @Override
+  @Transactional
   public void createSupplier(Supplier supplier) {
+    trimFields(supplier);
+
     // Check if the name or phone number of the supplier already used by another
     // supplier
-    Supplier supplierWithSameName = supplierRepository.findByName(supplier.getName().trim());
-    Supplier supplierWithSamePhoneNumber = supplierRepository.findByContact(supplier.getContact());
-
-    // If the name is used by another supplier
-    if (supplierWithSameName != null) {
-      throw new RuntimeException("Name already used by another supplier");
-    }
-
-    // If the phone number is used by another supplier
-    if (supplierWithSamePhoneNumber != null) {
-      throw new RuntimeException("Phone number already used by another supplier");
-    }
+    checkForDuplicateSupplier(supplier);
 
     // Check if the contact is valid
     if (!isValidContact(supplier.getContact())) {
       throw new RuntimeException("Invalid phone number (it must start with 04 followed by 8 digits)");
     }
 
-    supplierRepository.save(supplier);
+    saveSupplier(supplier);
+    supplierCache.invalidate();
+    inventoryDashboard.invalidate();
   }
 
   // Update a supplier
   @Override
-  public void updateSupplier(Supplier supplier) {
-    // Check if the supplier exists
+  @Transactional
+  public Supplier updateSupplier(Supplier supplier) {
+    // Read the stored supplier once, its previous name is needed to rename it in
+    // the inventory and the search index. The save merges into this loaded
+    // supplier, so it is not read a second time.
     Supplier existingSupplier = supplierRepository.findById(supplier.getId()).orElse(null);
 
     // If the supplier does not exist
@@ -87,31 +192,90 @@ public class SupplierServiceImpl implements SupplierService {
       throw new RuntimeException("Supplier does not exist");
     }
 
+    // Check the supplier was not changed since the version the update was made
+    // from
+    if (supplier.getVersion() != existingSupplier.getVersion()) {
+      throw new OptimisticLockingFailureException(STALE_VERSION);
+    }
+
+    trimFields(supplier);
+
     // Check if the name or phone number of the supplier already used by another
     // supplier
-    Supplier supplierWithSameName = supplierRepository.findByName(supplier.getName().trim());
-    Supplier supplierWithSamePhoneNumber = supplierRepository.findByContact(supplier.getContact());
+    checkForDuplicateSupplier(supplier);
 
-    // If the name is used by another supplier
-    if (supplierWithSameName != null && supplierWithSameName.getId() != supplier.getId()) {
-      throw new RuntimeException("Name already used by another supplier");
+    // Check if the phone number is valid
+    if (!isValidContact(supplier.getContact())) {
+      throw new RuntimeException("Invalid phone number (it must start with 04 followed by 8 digits)");
     }
 
-    // If the phone number is used by another supplier
-    if (supplierWithSamePhoneNumber != null && supplierWithSamePhoneNumber.getId() != supplier.getId()) {
-      throw new RuntimeException("Phone number already used by another supplier");
+    // Remember the stored name before it is overwritten by the save
+    String previousName = existingSupplier.getName();
+
+    Supplier saved = saveSupplier(supplier);
+    supplierCache.invalidate();
+
+    // Copy the new name onto the supplier's rows in the product inventory and
+    // the search index
+    if (!supplier.getName().equals(previousName)) {
+      productInventoryRepository.renameSupplier(supplier.getId(), supplier.getName());
+      productSearchIndex.renameSupplier(supplier.getId(), supplier.getName());
     }
 
-    // Check if the phone number is valid
-    if (!isValidContact(supplier.getContact())) {
+    return saved;
+  }
+
+  // Partially update a supplier, only the fields set in the patch are checked
+  // and changed, and only the changed columns are written
+  @Override
+  @Transactional
+  public Supplier patchSupplier(int id, int version, SupplierPatch patch) {
+    Supplier supplier = supplierRepository.findById(id).orElse(null);
+
+    // If the supplier does not exist
+    if (supplier == null) {
+      throw new RuntimeException("Supplier does not exist");
+    }
+
+    // Check the supplier was not changed since the version the patch was made
+    // from
+    if (version != supplier.getVersion()) {
+      throw new OptimisticLockingFailureException(STALE_VERSION);
+    }
+
+    String name = patch.getName() != null ? patch.getName().trim() : supplier.getName();
+    String contact = patch.getContact() != null ? patch.getContact().trim() : supplier.getContact();
+
+    // Check the phone number only if it is changed
+    if (patch.getContact() != null && !isValidContact(contact)) {
       throw new RuntimeException("Invalid phone number (it must start with 04 followed by 8 digits)");
     }
 
-    supplierRepository.save(supplier);
+    // Check the new values before they are set, the query would otherwise flush
+    // them first
+    checkForDuplicateSupplier(id, name, contact);
+
+    String previousName = supplier.getName();
+    supplier.setName(name);
+    supplier.setContact(contact);
+
+    // The supplier is managed, so the flush only updates it if a field changed
+    saveSupplier(supplier);
+    supplierCache.invalidate();
+
+    // Copy the new name onto the supplier's rows in the product inventory and
+    // the search index
+    if (!name.equals(previousName)) {
+      productInventoryRepository.renameSupplier(id, name);
+      productSearchIndex.renameSupplier(id, name);
+    }
+
+    return supplier;
   }
 
   // Delete a supplier
   @Override
+  @Transactional
   public void deleteSupplier(int id) {
     // Check if the supplier exists
     Supplier existingSupplier = supplierRepository.findById(id).orElse(null);
@@ -121,11 +285,24 @@ public class SupplierServiceImpl implements SupplierService {
       throw new RuntimeException("Supplier does not exist");
     }
 
-    // Check if the supplier has associated products
-    if (!productRepository.findBySupplierId(id).isEmpty()) {
+    // Check if the supplier has associated products, using the product count
+    // kept on the supplier row instead of loading its products
+    Integer productCount = supplierRepository.findProductCount(id);
+
+    if (productCount != null && productCount > 0) {
+      throw new RuntimeException("Supplier has associated products");
+    }
+
+    // The foreign key of the products still rejects the delete if a product was
+    // added at the same time
+    try {
+      supplierRepository.deleteById(id);
+      supplierRepository.flush();
+    } catch (DataIntegrityViolationException e) {
       throw new RuntimeException("Supplier has associated products");
     }
 
-    supplierRepository.deleteById(id);
+    supplierCache.invalidate();
+    inventoryDashboard.invalidate();
   }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.pharmacy.services.servicesImplementation;
+
+import java.util.Locale;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+// Names of the unique indexes the services rely on to reject duplicates, and a
+// helper to tell which one a failed write violated
+final class UniqueConstraints {
+  static final String PRODUCT_NATURAL_KEY = "uk_products_natural_key";
+
+  static final String SUPPLIER_NAME = "uk_suppliers_name";
+
+  static final String SUPPLIER_CONTACT = "uk_suppliers_contact";
+
+  private UniqueConstraints() {
+  }
+
+  // Check if the write failed because it violated the given unique index
+  static boolean isViolated(DataIntegrityViolationException e, String index) {
+    String message = e.getMostSpecificCause().getMessage();
+    return message != null && message.toLowerCase(Locale.ROOT).contains(index);
+  }
+}
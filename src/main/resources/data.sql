@@ -33,4 +33,154 @@ CREATE TABLE IF NOT EXISTS equipments (
     FOREIGN KEY (id) REFERENCES products(id)
     ON UPDATE CASCADE
     ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- Lower-cased copy of the product name, generated by the database and indexed
+-- so that case-insensitive name searches can use an index range scan
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_name VARCHAR(255) GENERATED ALWAYS AS (LOWER(name));
+
+CREATE INDEX IF NOT EXISTS idx_products_search_name ON products(search_name);
+
+-- Flattened, single-table read model of the inventory used by the homepage and
+-- its search. Kept in sync by the services on every product write.
+CREATE TABLE IF NOT EXISTS product_inventory (
+    id INT PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    search_name VARCHAR(255) GENERATED ALWAYS AS (LOWER(name)),
+    product_type VARCHAR(31) NOT NULL,
+    quantity INT NOT NULL,
+    price DECIMAL(10, 2) NOT NULL,
+    supplier_id INT NOT NULL,
+    supplier_name VARCHAR(255) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_product_inventory_search_name ON product_inventory(search_name);
+
+CREATE INDEX IF NOT EXISTS idx_product_inventory_supplier_id ON product_inventory(supplier_id);
+
+-- Pooled sequences used by Hibernate to assign product and supplier ids, each
+-- call reserves a block of 50 ids so inserts can be sent in JDBC batches. The
+-- id columns keep their identity default for the seed data inserted over JDBC,
+-- DataInitializer moves the sequences past the existing ids on startup.
+CREATE SEQUENCE IF NOT EXISTS products_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE IF NOT EXISTS suppliers_seq START WITH 1 INCREMENT BY 50;
+
+-- Natural key of each product (type, name, supplier and the type's own fields),
+-- unique so the database rejects duplicate medicines and equipments. Older rows
+-- get their key from DataInitializer.
+ALTER TABLE products ADD COLUMN IF NOT EXISTS natural_key VARCHAR(1100);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_products_natural_key ON products(natural_key);
+
+-- Supplier names and phone numbers are unique. The indexes also let the
+-- duplicate check of the supplier service find both with one indexed query.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_suppliers_name ON suppliers(name);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_suppliers_contact ON suppliers(contact);
+
+-- Number of products of each supplier, kept up to date on every product write
+-- so the suppliers page and the delete check do not count products. The index
+-- on products.supplier_id serves the foreign key check when a supplier is
+-- deleted and the recount done by DataInitializer.
+ALTER TABLE suppliers ADD COLUMN IF NOT EXISTS product_count INT DEFAULT 0 NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_products_supplier_id ON products(supplier_id);
+
+-- Version of each product and supplier for optimistic locking. Every update
+-- increments it and only applies if the row still has the version it was
+-- read with.
+ALTER TABLE products ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL;
+
+ALTER TABLE suppliers ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL;
+
+-- Append-only ledger of every change to the stock of a product. Dispensing and
+-- receiving only insert a row here, StockCompactor folds the pending rows into
+-- products.quantity in batches and marks them compacted. The rows are kept as
+-- the audit trail, also after their product is deleted.
+CREATE TABLE IF NOT EXISTS stock_movements (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id INT NOT NULL,
+    delta INT NOT NULL,
+    reason VARCHAR(31) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    compacted BOOLEAN DEFAULT FALSE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_movements_pending ON stock_movements(compacted, product_id);
+
+-- One row per product whose stock was taken out or edited, locked by StockLedger
+-- while it checks the stock and writes the movement. Dispenses of the same
+-- product wait for each other here instead of on the products row, which edits
+-- of the other fields, compactions and reads use.
+CREATE TABLE IF NOT EXISTS stock_locks (
+    product_id INT PRIMARY KEY,
+    FOREIGN KEY (product_id) REFERENCES products(id)
+    ON DELETE CASCADE
+);
+
+-- Medicines by expiry date, the id makes the index cover the (expiry_date, id)
+-- keyset of the expiring soon listing
+CREATE INDEX IF NOT EXISTS idx_medicines_expiry_date ON medicines(expiry_date, id);
+
+-- One alert per medicine and expiry date that came within the alert horizon.
+-- ExpiryAlerts adds the dates entering the horizon each day and the medicines
+-- written with a date already inside it, the unique index keeps a medicine from
+-- being alerted twice for the same date.
+CREATE TABLE IF NOT EXISTS expiry_alerts (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    medicine_id INT NOT NULL,
+    expiry_date DATE NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    FOREIGN KEY (medicine_id) REFERENCES medicines(id)
+    ON DELETE CASCADE
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_expiry_alerts_medicine ON expiry_alerts(medicine_id, expiry_date);
+
+-- The last expiry date the alert job has processed, a single row
+CREATE TABLE IF NOT EXISTS expiry_alert_state (
+    id INT PRIMARY KEY,
+    alerted_through DATE NOT NULL
+);
+
+-- Quantity below which a product has to be reordered, 0 for none
+ALTER TABLE products ADD COLUMN IF NOT EXISTS reorder_threshold INT DEFAULT 0 NOT NULL;
+
+-- The products whose available quantity is below their reorder threshold. Kept
+-- up to date by LowStockTracker on every change that moves a product across
+-- its threshold, so reading it never scans the products.
+CREATE TABLE IF NOT EXISTS low_stock_products (
+    product_id INT PRIMARY KEY,
+    since TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    FOREIGN KEY (product_id) REFERENCES products(id)
+    ON DELETE CASCADE
+);
+
+-- Number, quantity and value (quantity times price) of the products of each
+-- supplier and product type. InventoryValuation adds the difference of every
+-- product write in the same transaction and compares it with a full recount
+-- from time to time.
+CREATE TABLE IF NOT EXISTS inventory_valuation (
+    supplier_id INT NOT NULL,
+    product_type VARCHAR(31) NOT NULL,
+    product_count INT NOT NULL,
+    total_quantity BIGINT NOT NULL,
+    total_value DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (supplier_id, product_type)
+);
+
+-- Inverted index of the words of the product names, medicine manufacturers and
+-- supplier names. Each word is stored as its trigrams, with the weight of the
+-- field it comes from, doubled for the first trigram of a word. ProductSearchIndex
+-- keeps it up to date on every product write and supplier rename.
+CREATE TABLE IF NOT EXISTS search_grams (
+    gram VARCHAR(3) NOT NULL,
+    product_id INT NOT NULL,
+    weight INT NOT NULL,
+    PRIMARY KEY (gram, product_id, weight),
+    FOREIGN KEY (product_id) REFERENCES products(id)
+    ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_search_grams_product_id ON search_grams(product_id);
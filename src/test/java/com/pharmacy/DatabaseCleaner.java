@@ -4,25 +4,60 @@ import org.springframework.stereotype.Component;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.pharmacy.services.servicesImplementation.SupplierCache;
+import com.pharmacy.services.servicesImplementation.ProductNameIndex;
+import com.pharmacy.services.servicesImplementation.InventoryDashboard;
+import com.pharmacy.services.servicesImplementation.StockMovementBuffer;
+
 @Component
 public class DatabaseCleaner {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private final SupplierCache supplierCache;
+
+    private final StockMovementBuffer stockMovementBuffer;
+
+    private final InventoryDashboard inventoryDashboard;
+
+    private final ProductNameIndex productNameIndex;
+
     @Autowired
-    public DatabaseCleaner(JdbcTemplate jdbcTemplate) {
+    public DatabaseCleaner(JdbcTemplate jdbcTemplate, SupplierCache supplierCache,
+            StockMovementBuffer stockMovementBuffer, InventoryDashboard inventoryDashboard,
+            ProductNameIndex productNameIndex) {
         this.jdbcTemplate = jdbcTemplate;
+        this.supplierCache = supplierCache;
+        this.stockMovementBuffer = stockMovementBuffer;
+        this.inventoryDashboard = inventoryDashboard;
+        this.productNameIndex = productNameIndex;
     }
 
     public void clean() {
         try {
-            // Delete all records from the products table and suppliers table
+            // Write out the stock movements committed by tests and still buffered,
+            // so they are deleted with the rest of the ledger instead of landing
+            // on a later product that gets the same id
+            stockMovementBuffer.flush();
+
+            // Delete all records from the stock ledger, expiry alerts, valuation, product inventory,
+            // products and suppliers tables
+            jdbcTemplate.update("DELETE FROM stock_movements");
+            jdbcTemplate.update("DELETE FROM expiry_alerts");
+            jdbcTemplate.update("DELETE FROM expiry_alert_state");
+            jdbcTemplate.update("DELETE FROM inventory_valuation");
+            jdbcTemplate.update("DELETE FROM product_inventory");
             jdbcTemplate.update("DELETE FROM products");
             jdbcTemplate.update("DELETE FROM suppliers");
 
             // Reset the auto-increment value
             jdbcTemplate.update("ALTER TABLE products ALTER COLUMN id RESTART WITH 1");
             jdbcTemplate.update("ALTER TABLE suppliers ALTER COLUMN id RESTART WITH 1");
+
+            // The suppliers and products were removed behind the services' back
+            supplierCache.invalidate();
+            inventoryDashboard.invalidate();
+            productNameIndex.load();
         } catch (Exception e) {
             System.err.println("Error cleaning database: " + e.getMessage());
             // Handle exception (logging, rethrowing, etc.)
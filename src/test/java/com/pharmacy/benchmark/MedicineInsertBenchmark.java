@@ -0,0 +1,75 @@
+package com.pharmacy.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import jakarta.persistence.EntityManager;
+
+import org.springframework.test.annotation.Rollback;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.repositories.MedicineRepository;
+import com.pharmacy.repositories.SupplierRepository;
+
+/**
+ * Measures how many medicines per second Hibernate can insert. Skipped by the
+ * normal build, run it with:
+ * 
+ * mvn test -Dtest=MedicineInsertBenchmark -Dbenchmark=true
+ * 
+ * All inserted rows are rolled back at the end.
+ */
+@Rollback
+@Transactional
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MedicineInsertBenchmark {
+    private static final int ROWS = 100_000;
+
+    // Rows saved between flushes, a multiple of the JDBC batch size
+    private static final int CHUNK = 1_000;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void insertMedicines() {
+        Supplier supplier = supplierRepository.save(new Supplier("Benchmark Supplier", "0400000000"));
+        LocalDate expiryDate = LocalDate.now().plusYears(1);
+
+        long start = System.nanoTime();
+
+        for (int offset = 0; offset < ROWS; offset += CHUNK) {
+            List<Medicine> medicines = new ArrayList<>(CHUNK);
+
+            for (int i = offset; i < offset + CHUNK; i++) {
+                medicines.add(new Medicine("Benchmark Medicine " + i, 10, 5.0, supplier, "Benchmark Manufacturer",
+                        expiryDate));
+            }
+
+            medicineRepository.saveAll(medicines);
+
+            // Send the chunk to the database and keep the persistence context small
+            entityManager.flush();
+            entityManager.clear();
+            supplier = entityManager.getReference(Supplier.class, supplier.getId());
+        }
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("Inserted %d medicines in %.2f s (%.0f rows/s)%n", ROWS, seconds, ROWS / seconds);
+    }
+}
@@ -0,0 +1,203 @@
+package com.pharmacy.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.pharmacy.DatabaseCleaner;
+import com.pharmacy.WebappApplication;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.MedicineService;
+import com.pharmacy.services.SupplierService;
+
+/**
+ * Compares the throughput and latency of the application with requests handled
+ * on platform threads and on virtual threads. The application is started once
+ * per mode and 2000 clients each send one request after the other, reading
+ * medicines and stock levels. Skipped by the normal build, run it with:
+ *
+ * mvn -Pvirtual-threads test -Dtest=RequestLoadBenchmark -Dbenchmark=true
+ *
+ * Without the profile, on Java 17, only the platform threads are measured. The
+ * database is reset to the initial data at the end.
+ *
+ * Two runs of both modes on Java 21 with one CPU, the clients in the same
+ * process as the application, so the numbers are CPU-bound and only compare
+ * the modes with each other:
+ *
+ * platform threads  164 and 276 req/s, p50 4391 and 2149 ms, p99 18516 and 11741 ms
+ * virtual threads   358 and 379 req/s, p50 4563 and 4650 ms, p99  5810 and  5386 ms
+ *
+ * Virtual threads served more requests and cut the p99, as every client waits
+ * for a database connection instead of a Tomcat thread. The p50 is no better
+ * because the same single CPU runs the clients.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RequestLoadBenchmark {
+    private static final int CLIENTS = 2_000;
+
+    // Clients per HTTP client, each HTTP client runs its connections on one
+    // selector thread, which would otherwise limit the load
+    private static final int CLIENTS_PER_CONNECTION_POOL = 50;
+
+    private static final int MEDICINES = 500;
+
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+
+    private static final Duration MEASURED = Duration.ofSeconds(30);
+
+    @Test
+    void compareThreadModes() throws Exception {
+        List<String> results = new ArrayList<>();
+        results.add(run(false));
+
+        if (Runtime.version().feature() >= 21) {
+            results.add(run(true));
+        } else {
+            results.add("virtual threads need Java 21, run with -Pvirtual-threads");
+        }
+
+        System.out.printf("%d clients, %d s measured after %d s warmup%n", CLIENTS, MEASURED.toSeconds(),
+                WARMUP.toSeconds());
+        results.forEach(System.out::println);
+    }
+
+    // Start the application in the given mode and measure it under load
+    private String run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WebappApplication.class)
+                .run("--server.port=0", "--spring.jpa.show-sql=false",
+                        "--spring.threads.virtual.enabled=" + virtualThreads)) {
+            List<Integer> ids = createMedicines(context);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            try {
+                Load load = new Load(baseUrl, ids);
+                load.run();
+                return String.format("%-16s %8.0f req/s  p50 %6.1f ms  p99 %7.1f ms  errors %d",
+                        virtualThreads ? "virtual threads" : "platform threads", load.throughput(),
+                        load.percentile(0.50), load.percentile(0.99), load.errors.get());
+            } finally {
+                context.getBean(DatabaseCleaner.class).clean();
+            }
+        }
+    }
+
+    // Helper method to create the medicines the clients read
+    private List<Integer> createMedicines(ConfigurableApplicationContext context) {
+        Supplier supplier = new Supplier("Load Supplier", "0400000001");
+        context.getBean(SupplierService.class).createSupplier(supplier);
+
+        MedicineService medicineService = context.getBean(MedicineService.class);
+        List<Integer> ids = new ArrayList<>(MEDICINES);
+
+        for (int i = 0; i < MEDICINES; i++) {
+            Medicine medicine = new Medicine("Load Medicine " + i, 1_000, 5.0, supplier, "Load Manufacturer",
+                    LocalDate.now().plusYears(1));
+            medicineService.createMedicine(medicine);
+            ids.add(medicine.getId());
+        }
+
+        return ids;
+    }
+
+    // Closed-loop clients, each sends its next request when the previous one is
+    // answered. Only the latencies after the warmup are kept.
+    private static class Load {
+        private final List<HttpClient> clients = new ArrayList<>();
+
+        private final String baseUrl;
+
+        private final List<Integer> ids;
+
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private long measureFrom;
+
+        private long end;
+
+        private long[] sorted;
+
+        Load(String baseUrl, List<Integer> ids) {
+            this.baseUrl = baseUrl;
+            this.ids = ids;
+
+            for (int i = 0; i < CLIENTS; i += CLIENTS_PER_CONNECTION_POOL) {
+                clients.add(HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .build());
+            }
+        }
+
+        void run() throws InterruptedException {
+            measureFrom = System.nanoTime() + WARMUP.toNanos();
+            end = measureFrom + MEASURED.toNanos();
+
+            CountDownLatch done = new CountDownLatch(CLIENTS);
+            for (int i = 0; i < CLIENTS; i++) {
+                send(clients.get(i / CLIENTS_PER_CONNECTION_POOL), done);
+            }
+            done.await();
+
+            sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+
+        private void send(HttpClient client, CountDownLatch done) {
+            int id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+            String path = ThreadLocalRandom.current().nextBoolean() ? "/api/medicines/" + id
+                    : "/products/" + id + "/stock";
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+            long start = System.nanoTime();
+
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long finished = System.nanoTime();
+
+                if (start >= measureFrom && finished <= end) {
+                    if (error != null || response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    } else {
+                        latencies.add(finished - start);
+                    }
+                }
+
+                if (finished < end) {
+                    send(client, done);
+                } else {
+                    done.countDown();
+                }
+            });
+        }
+
+        double throughput() {
+            return sorted.length / (double) MEASURED.toSeconds();
+        }
+
+        double percentile(double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
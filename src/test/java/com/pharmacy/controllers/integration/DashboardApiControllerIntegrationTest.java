@@ -0,0 +1,245 @@
+package com.pharmacy.controllers.integration;
+
+import java.time.LocalDate;
+import java.math.BigDecimal;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+
+import com.pharmacy.DatabaseCleaner;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.models.MedicinePatch;
+import com.pharmacy.models.DashboardSummary;
+import com.pharmacy.services.ProductService;
+import com.pharmacy.services.MedicineService;
+import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.servicesImplementation.InventoryValuationTracker;
+import com.pharmacy.services.servicesImplementation.InventoryDashboard;
+
+@Rollback
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS) // Allows non-static @AfterAll
+class DashboardApiControllerIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MedicineService medicineService;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private InventoryValuationTracker inventoryValuationTracker;
+
+    @Autowired
+    private InventoryDashboard inventoryDashboard;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DatabaseCleaner databaseCleaner;
+
+    private Supplier supplier;
+
+    private Medicine medicine;
+
+    // Create a medicine worth 10 x 2.50 before each test
+    @BeforeEach
+    void setUp() {
+        supplier = new Supplier("Valuation Supplier", "0412345604");
+        supplierService.createSupplier(supplier);
+        medicine = new Medicine("Valuation Medicine", 10, 2.5, supplier, "Valuation Manufacturer",
+                LocalDate.now().plusYears(1));
+        medicineService.createMedicine(medicine);
+    }
+
+    // Reset the database to initial values after all tests are done
+    @AfterAll
+    void tearDownAll() {
+        databaseCleaner.clean();
+    }
+
+    // Helper method to read the stored value of the test supplier's medicines
+    private BigDecimal supplierValue() {
+        return jdbcTemplate.queryForObject("SELECT total_value FROM inventory_valuation "
+                + "WHERE supplier_id = ? AND product_type = 'Medicine'", BigDecimal.class, supplier.getId());
+    }
+
+    // Test the valuation of the supplier follows the creates, updates and deletes
+    // of its medicines
+    @Test
+    void testValuation_FollowsProductWrites() throws Exception {
+        mockMvc.perform(get("/api/dashboard/valuation"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bySupplier[?(@.name == 'Valuation Supplier')].value").value(25.0))
+                .andExpect(jsonPath("$.bySupplier[?(@.name == 'Valuation Supplier')].productCount").value(1));
+
+        MedicinePatch patch = new MedicinePatch();
+        patch.setPrice(3.0);
+        patch.setQuantity(20);
+        medicineService.patchMedicine(medicine.getId(), medicine.getVersion(), patch);
+        assertEquals(new BigDecimal("60.00"), supplierValue());
+
+        medicineService.deleteMedicine(medicine.getId());
+        assertEquals(new BigDecimal("0.00"), supplierValue());
+        assertEquals(0, inventoryValuationTracker.reconcile());
+    }
+
+    // Test a price with more than two decimals is rounded the same way by the
+    // writes and the recount, so the recount finds no drift
+    @Test
+    void testReconcile_NoDriftWithRoundedPrice() {
+        medicineService.createMedicine(new Medicine("Valuation Rounded Medicine", 3, 2.555, supplier,
+                "Valuation Manufacturer", LocalDate.now().plusYears(1)));
+
+        assertEquals(0, inventoryValuationTracker.reconcile());
+    }
+
+    // Test the recount repairs totals changed behind the tracker's back
+    @Test
+    void testReconcile_RepairsDrift() throws Exception {
+        jdbcTemplate.update("UPDATE inventory_valuation SET total_value = 1 WHERE supplier_id = ?", supplier.getId());
+
+        assertEquals(1, inventoryValuationTracker.reconcile());
+        assertEquals(new BigDecimal("25.00"), supplierValue());
+
+        mockMvc.perform(get("/api/dashboard/valuation"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.driftedGroups").value(1));
+    }
+
+    // Test the recount keeps a medicine added to a group by a write that is not
+    // committed yet when the group's lost totals are repaired
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testReconcile_KeepsConcurrentWriteToRepairedGroup() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Medicine added = new Medicine("Valuation Concurrent Medicine", 4, 5.0, supplier, "Valuation Manufacturer",
+                LocalDate.now().plusYears(1));
+
+        try {
+            jdbcTemplate.update("DELETE FROM inventory_valuation WHERE supplier_id = ?", supplier.getId());
+
+            Future<?> writer = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                medicineService.createMedicine(added);
+                written.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(written.await(5, TimeUnit.SECONDS));
+
+            // Let the write commit while the repair waits for the row it created,
+            // well within the lock timeout
+            CompletableFuture<Integer> reconciled = CompletableFuture.supplyAsync(inventoryValuationTracker::reconcile);
+            Thread.sleep(200);
+            release.countDown();
+            writer.get(5, TimeUnit.SECONDS);
+
+            assertEquals(1, reconciled.get(5, TimeUnit.SECONDS));
+            assertEquals(new BigDecimal("45.00"), supplierValue());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+
+            // Nothing is rolled back, remove what this test committed
+            if (added.getId() != 0) {
+                medicineService.deleteMedicine(added.getId());
+            }
+            medicineService.deleteMedicine(medicine.getId());
+            supplierService.deleteSupplier(supplier.getId());
+        }
+    }
+
+    // Test the dashboard counts a medicine that expires soon and is below its
+    // reorder threshold
+    @Test
+    void testSummary_CountsProductWrites() throws Exception {
+        DashboardSummary before = productService.getDashboardSummary();
+
+        Medicine expiring = new Medicine("Dashboard Expiring Medicine", 2, 4.0, supplier, "Valuation Manufacturer",
+                LocalDate.now().plusDays(5));
+        expiring.setReorderThreshold(5);
+        medicineService.createMedicine(expiring);
+
+        DashboardSummary after = productService.getDashboardSummary();
+        assertEquals(before.getProductCount() + 1, after.getProductCount());
+        assertEquals(before.getProductCountByType().get("Medicine") + 1, after.getProductCountByType().get("Medicine"));
+        assertEquals(before.getTotalUnits() + 2, after.getTotalUnits());
+        assertEquals(before.getStockValue().add(new BigDecimal("8.00")), after.getStockValue());
+        assertEquals(before.getExpiringSoonCount() + 1, after.getExpiringSoonCount());
+        assertEquals(before.getLowStockCount() + 1, after.getLowStockCount());
+
+        mockMvc.perform(get("/api/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productCount").value(after.getProductCount()))
+                .andExpect(jsonPath("$.supplierCount").value(after.getSupplierCount()));
+    }
+
+    // Test the dashboard is cached outside transactions until a write changes it
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testSummary_CachedUntilWrite() {
+        Supplier added = new Supplier("Dashboard Supplier", "0412345605");
+
+        try {
+            DashboardSummary first = productService.getDashboardSummary();
+            long hits = inventoryDashboard.getHits();
+            assertSame(first, productService.getDashboardSummary());
+            assertEquals(hits + 1, inventoryDashboard.getHits());
+
+            supplierService.createSupplier(added);
+
+            DashboardSummary afterWrite = productService.getDashboardSummary();
+            assertNotSame(first, afterWrite);
+            assertEquals(first.getSupplierCount() + 1, afterWrite.getSupplierCount());
+        } finally {
+            // Nothing is rolled back, remove what this test committed
+            if (added.getId() != 0) {
+                supplierService.deleteSupplier(added.getId());
+            }
+            medicineService.deleteMedicine(medicine.getId());
+            supplierService.deleteSupplier(supplier.getId());
+        }
+    }
+}
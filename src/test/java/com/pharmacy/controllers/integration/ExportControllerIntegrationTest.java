@@ -0,0 +1,136 @@
+package com.pharmacy.controllers.integration;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import jakarta.persistence.EntityManager;
+
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+
+import com.pharmacy.DatabaseCleaner;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.models.ExportFormat;
+import com.pharmacy.services.ExportService;
+import com.pharmacy.services.MedicineService;
+import com.pharmacy.services.SupplierService;
+
+@Rollback
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS) // Allows non-static @AfterAll
+class ExportControllerIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private MedicineService medicineService;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DatabaseCleaner databaseCleaner;
+
+    // Reset the database to initial values after all tests are done
+    @AfterAll
+    void tearDownAll() {
+        databaseCleaner.clean();
+    }
+
+    // Test exporting the medicines as CSV, quoting names that contain a comma
+    @Test
+    void testExportMedicines_Csv() throws Exception {
+        Supplier supplier = new Supplier("Export Supplier", "0412345601");
+        supplierService.createSupplier(supplier);
+        LocalDate expiryDate = LocalDate.now().plusYears(1);
+        Medicine medicine = new Medicine("Export, Medicine", 12, 3.5, supplier, "Export Manufacturer", expiryDate);
+        medicineService.createMedicine(medicine);
+
+        // The export reads the tables directly, so send the new rows to the database
+        entityManager.flush();
+
+        mockMvc.perform(get("/medicines/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(startsWith("id,name,quantity,price,supplier,manufacturer,expiry_date\n")))
+                .andExpect(content().string(containsString(medicine.getId()
+                        + ",\"Export, Medicine\",12,3.50,Export Supplier,Export Manufacturer," + expiryDate + "\n")));
+    }
+
+    // Test exporting the products with the quantity they have available, a
+    // dispense not compacted yet is taken off the stored quantity
+    @Test
+    void testExportProducts_Ndjson_IncludesPendingDispense() throws Exception {
+        Supplier supplier = new Supplier("Export Supplier", "0412345603");
+        supplierService.createSupplier(supplier);
+        Medicine medicine = new Medicine("Export Medicine", 12, 3.5, supplier, "Export Manufacturer",
+                LocalDate.now().plusYears(1));
+        medicineService.createMedicine(medicine);
+        entityManager.flush();
+
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "5"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/products/export").param("format", "ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("{\"id\":" + medicine.getId()
+                        + ",\"name\":\"Export Medicine\",\"product_type\":\"Medicine\",\"quantity\":7,")));
+    }
+
+    // Test exporting the suppliers as one JSON object per line
+    @Test
+    void testExportSuppliers_Ndjson() throws Exception {
+        Supplier supplier = new Supplier("Export Supplier", "0412345602");
+        supplierService.createSupplier(supplier);
+        entityManager.flush();
+
+        mockMvc.perform(get("/suppliers/export").param("format", "ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("{\"id\":" + supplier.getId()
+                        + ",\"name\":\"Export Supplier\",\"contact\":\"0412345602\"}\n")));
+    }
+
+    // Test an export whose client disconnects stops with an IOException and
+    // leaves the database usable
+    @Test
+    void testExportProducts_ClientDisconnected() {
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> exportService.exportProducts(ExportFormat.CSV, disconnected));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+    }
+}
@@ -0,0 +1,402 @@
+package com.pharmacy.controllers.integration;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+
+import com.pharmacy.DatabaseCleaner;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.models.SupplierPatch;
+import com.pharmacy.models.Equipment;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.services.ProductService;
+import com.pharmacy.services.MedicineService;
+import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.EquipmentService;
+import com.pharmacy.repositories.ProductRepository;
+import com.pharmacy.repositories.ProductInventoryRepository;
+import com.pharmacy.services.servicesImplementation.ProductSearchIndex;
+
+@Rollback
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS) // Allows non-static @AfterAll
+class HomepageControllerIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MedicineService medicineService;
+
+    @Autowired
+    private EquipmentService equipmentService;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductInventoryRepository productInventoryRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private DatabaseCleaner databaseCleaner;
+
+    private Statistics statistics;
+
+    // Number of suppliers created so far, used to build unique names and contacts
+    private int supplierCount;
+
+    // Products and suppliers added by the current test, deleted again by the
+    // tests that commit them
+    private final List<Integer> addedMedicineIds = new ArrayList<>();
+
+    private final List<Integer> addedEquipmentIds = new ArrayList<>();
+
+    private final List<Integer> addedSupplierIds = new ArrayList<>();
+
+    // Enable Hibernate statistics to count the statements run per page render
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        addedMedicineIds.clear();
+        addedEquipmentIds.clear();
+        addedSupplierIds.clear();
+    }
+
+    // Reset the database to initial values after all tests are done
+    @AfterAll
+    void tearDownAll() {
+        databaseCleaner.clean();
+    }
+
+    // Helper method to add a medicine and an equipment, each with its own supplier
+    private void addProductsWithDistinctSuppliers(int count) {
+        for (int i = 0; i < count; i++) {
+            Supplier medicineSupplier = new Supplier("Query Supplier " + supplierCount,
+                    String.format("04%08d", 90000000 + supplierCount++));
+            supplierService.createSupplier(medicineSupplier);
+            Medicine medicine = new Medicine("Query Medicine " + i, 10, 5.0, medicineSupplier,
+                    "Query Manufacturer", LocalDate.now().plusDays(30));
+            medicineService.createMedicine(medicine);
+
+            Supplier equipmentSupplier = new Supplier("Query Supplier " + supplierCount,
+                    String.format("04%08d", 90000000 + supplierCount++));
+            supplierService.createSupplier(equipmentSupplier);
+            Equipment equipment = new Equipment("1 year", LocalDate.now(), "Query Equipment " + i, 10, 5.0,
+                    equipmentSupplier);
+            equipmentService.createEquipment(equipment);
+
+            addedMedicineIds.add(medicine.getId());
+            addedEquipmentIds.add(equipment.getId());
+            addedSupplierIds.addAll(List.of(medicineSupplier.getId(), equipmentSupplier.getId()));
+        }
+    }
+
+    // Helper method to delete the products and suppliers committed by a test
+    // that runs without a transaction
+    private void deleteAddedProducts() {
+        addedMedicineIds.forEach(medicineService::deleteMedicine);
+        addedEquipmentIds.forEach(equipmentService::deleteEquipment);
+        addedSupplierIds.forEach(supplierService::deleteSupplier);
+    }
+
+    /**
+     * Helper method to count the statements run to render a page from an empty
+     * persistence context, checking the page shows the expected number of rows
+     * of the given model attribute so the count is not taken on an empty page
+     */
+    private long countStatements(String url, int afterId, String rows, int expectedRows) throws Exception {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+        statistics.clear();
+
+        MvcResult result = mockMvc.perform(get(url).param("after", String.valueOf(afterId)).param("size", "100"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals(expectedRows, ((Collection<?>) result.getModelAndView().getModel().get(rows)).size(),
+                "The page must show the added rows");
+        return statements;
+    }
+
+    // Helper method to get the highest product id so pages only show new products
+    private int lastProductId() {
+        return productRepository.findAll().stream().mapToInt(product -> product.getId()).max().orElse(0);
+    }
+
+    // Test the homepage runs the same number of queries no matter how many
+    // products and suppliers are shown
+    @Test
+    void testHomepage_QueryCountIndependentOfRowCount() throws Exception {
+        int afterId = lastProductId();
+
+        addProductsWithDistinctSuppliers(1);
+        long fewRows = countStatements("/homepage", afterId, "products", 2);
+
+        addProductsWithDistinctSuppliers(10);
+        long manyRows = countStatements("/homepage", afterId, "products", 22);
+
+        assertEquals(fewRows, manyRows, "Rendering more products must not run more queries");
+    }
+
+    /**
+     * Test the medicines page runs the same number of queries no matter how many
+     * medicines and suppliers are shown. The page loads its data on other threads,
+     * which only see committed rows, so the products are committed
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testMedicinesPage_QueryCountIndependentOfRowCount() throws Exception {
+        int afterId = lastProductId();
+
+        try {
+            addProductsWithDistinctSuppliers(1);
+            long fewRows = countStatements("/medicines", afterId, "medicines", 1);
+
+            addProductsWithDistinctSuppliers(10);
+            long manyRows = countStatements("/medicines", afterId, "medicines", 11);
+            mockMvc.perform(get("/medicines").param("after", String.valueOf(afterId)).param("size", "100"))
+                    .andExpect(content().string(containsString("Query Medicine 9")));
+
+            assertEquals(fewRows, manyRows, "Rendering more medicines must not run more queries");
+        } finally {
+            // Nothing is rolled back, remove what this test committed
+            deleteAddedProducts();
+        }
+    }
+
+    // Test the equipments page runs the same number of queries no matter how many
+    // equipments and suppliers are shown, with the products committed like above
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testEquipmentsPage_QueryCountIndependentOfRowCount() throws Exception {
+        int afterId = lastProductId();
+
+        try {
+            addProductsWithDistinctSuppliers(1);
+            long fewRows = countStatements("/equipments", afterId, "equipments", 1);
+
+            addProductsWithDistinctSuppliers(10);
+            long manyRows = countStatements("/equipments", afterId, "equipments", 11);
+            mockMvc.perform(get("/equipments").param("after", String.valueOf(afterId)).param("size", "100"))
+                    .andExpect(content().string(containsString("Query Equipment 9")));
+
+            assertEquals(fewRows, manyRows, "Rendering more equipments must not run more queries");
+        } finally {
+            // Nothing is rolled back, remove what this test committed
+            deleteAddedProducts();
+        }
+    }
+
+    // Helper method to read the inventory row of a product from the database
+    private ProductInventory inventoryRow(int id) {
+        entityManager.flush();
+        entityManager.clear();
+        return productInventoryRepository.findById(id).orElse(null);
+    }
+
+    // Test the product inventory follows creating, updating and deleting a
+    // medicine and renaming its supplier
+    @Test
+    void testProductInventory_KeptInSyncWithWrites() {
+        Supplier supplier = new Supplier("Inventory Supplier", "0499999999");
+        supplierService.createSupplier(supplier);
+
+        // Create a medicine
+        Medicine medicine = new Medicine("Inventory Medicine", 10, 5.0, supplier, "Inventory Manufacturer",
+                LocalDate.now().plusDays(30));
+        medicineService.createMedicine(medicine);
+
+        ProductInventory created = inventoryRow(medicine.getId());
+        assertEquals("Inventory Medicine", created.getName());
+        assertEquals("Medicine", created.getProductType());
+        assertEquals("Inventory Supplier", created.getSupplierName());
+
+        // Update the quantity of the medicine
+        medicine.setQuantity(25);
+        medicineService.updateMedicine(medicine);
+        assertEquals(25, inventoryRow(medicine.getId()).getQuantity());
+
+        // Rename the supplier
+        supplier.setName("Renamed Supplier");
+        supplierService.updateSupplier(supplier);
+        assertEquals("Renamed Supplier", inventoryRow(medicine.getId()).getSupplierName());
+
+        // Delete the medicine
+        medicineService.deleteMedicine(medicine.getId());
+        assertEquals(null, inventoryRow(medicine.getId()));
+    }
+
+    // Test the homepage search reads matching rows from the product inventory
+    @Test
+    void testSearchProducts_FromProductInventory() throws Exception {
+        addProductsWithDistinctSuppliers(1);
+        entityManager.flush();
+
+        mockMvc.perform(get("/homepage/search").param("q", "query equip"))
+                .andExpect(status().isOk())
+                .andExpect(result -> assertTrue(
+                        result.getResponse().getContentAsString().contains("Query Equipment 0")));
+    }
+
+    // Test the homepage search finds products by manufacturer and supplier name
+    // and ranks name matches above supplier matches
+    @Test
+    void testSearchProducts_ByManufacturerAndSupplier() throws Exception {
+        Supplier zenith = new Supplier("Zenith Distributors", "0499999998");
+        supplierService.createSupplier(zenith);
+        Supplier wholesale = new Supplier("Calmex Wholesale", "0499999997");
+        supplierService.createSupplier(wholesale);
+
+        medicineService.createMedicine(new Medicine("Calmex Tablet", 10, 5.0, zenith, "Oxyra Labs",
+                LocalDate.now().plusDays(30)));
+        medicineService.createMedicine(new Medicine("Plain Tablet", 10, 5.0, wholesale, "Other Labs",
+                LocalDate.now().plusDays(30)));
+
+        mockMvc.perform(get("/homepage/search").param("q", "xyra"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Calmex Tablet")))
+                .andExpect(content().string(not(containsString("Plain Tablet"))));
+
+        mockMvc.perform(get("/homepage/search").param("q", "zenith calm"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Calmex Tablet")));
+
+        String ranked = mockMvc.perform(get("/homepage/search").param("q", "Calmex"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(ranked.indexOf("Calmex Tablet") < ranked.indexOf("Plain Tablet"),
+                "A name match must rank above a supplier name match");
+    }
+
+    /**
+     * Test the best match of a search is returned even when the database reads
+     * many weaker matches before it: a word start in the name ranks above the
+     * same letters inside a word of earlier products
+     */
+    @Test
+    void testSearchProducts_BestMatchAfterManyWeakerOnes() {
+        Supplier supplier = new Supplier("Ranking Supplier", "0499999995");
+        supplierService.createSupplier(supplier);
+
+        for (int i = 0; i < 5; i++) {
+            medicineService.createMedicine(new Medicine("Xzorbex " + i, 10, 5.0, supplier, "Ranking Labs",
+                    LocalDate.now().plusDays(30)));
+        }
+        medicineService.createMedicine(new Medicine("Zorbex Forte", 10, 5.0, supplier, "Ranking Labs",
+                LocalDate.now().plusDays(30)));
+
+        List<ProductInventory> best = productService.searchProducts("zorbex", 1);
+        assertEquals(List.of("Zorbex Forte"), best.stream().map(ProductInventory::getName).toList());
+        assertEquals(6, productService.searchProducts("zorbex", 20).size());
+
+        // A query shorter than a gram matches the start of the names only
+        assertEquals(List.of("Zorbex Forte"), productService.searchProducts("ZO", 20).stream()
+                .map(ProductInventory::getName).toList());
+    }
+
+    /**
+     * Test a search finds a product whose grams are rare in one query word and
+     * common in the other: more products have the common grams than a search
+     * counts, all with a better weight than the product
+     */
+    @Test
+    void testSearchProducts_FindsMatchOfCommonGrams() {
+        Supplier supplier = new Supplier("Common Gram Supplier", "0499999994");
+        supplierService.createSupplier(supplier);
+        Medicine medicine = new Medicine("Quillax", 10, 5.0, supplier, "Tablet Labs", LocalDate.now().plusDays(30));
+        medicineService.createMedicine(medicine);
+        entityManager.flush();
+
+        // Products inserted over JDBC are indexed like the seed data on startup
+        int maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM products", Integer.class);
+        jdbcTemplate.update("INSERT INTO products (id, name, quantity, price, product_type, supplier_id) "
+                + "SELECT ? + X, 'Tablet ' || X, 1, 1.0, 'Equipment', ? FROM SYSTEM_RANGE(1, 1100)", maxId,
+                supplier.getId());
+        productSearchIndex.indexMissing();
+
+        assertEquals(List.of("Quillax"), productService.searchProducts("quillax tablet", 20).stream()
+                .map(ProductInventory::getName).toList());
+    }
+
+    // Test the search index follows a product rename and a supplier rename
+    @Test
+    void testSearchIndex_KeptInSyncWithWrites() {
+        Supplier supplier = new Supplier("Brambleton Supplier", "0499999996");
+        supplierService.createSupplier(supplier);
+        Medicine medicine = new Medicine("Indexed Medicine", 10, 5.0, supplier, "Indexed Manufacturer",
+                LocalDate.now().plusDays(30));
+        medicineService.createMedicine(medicine);
+
+        medicine.setName("Reindexed Medicine");
+        medicineService.updateMedicine(medicine);
+        assertTrue(productService.searchProducts("reindexed", 20).stream()
+                .anyMatch(product -> product.getId() == medicine.getId()));
+
+        SupplierPatch patch = new SupplierPatch();
+        patch.setName("Quorvex Supplier");
+        supplierService.patchSupplier(supplier.getId(), supplier.getVersion(), patch);
+        assertTrue(productService.searchProducts("quorvex", 20).stream()
+                .anyMatch(product -> product.getId() == medicine.getId()));
+        assertTrue(productService.searchProducts("brambleton", 20).isEmpty());
+    }
+}
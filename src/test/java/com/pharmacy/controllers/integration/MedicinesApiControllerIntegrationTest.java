@@ -0,0 +1,324 @@
+package com.pharmacy.controllers.integration;
+
+import java.util.List;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+import jakarta.persistence.EntityManager;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+
+import com.pharmacy.DatabaseCleaner;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.MedicineService;
+import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.servicesImplementation.ExpiryAlerts;
+import com.pharmacy.services.servicesImplementation.StockCompactor;
+import com.pharmacy.services.servicesImplementation.StockMovementBuffer;
+
+@Rollback
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS) // Allows non-static @AfterAll
+class MedicinesApiControllerIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MedicineService medicineService;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private StockCompactor stockCompactor;
+
+    @Autowired
+    private StockMovementBuffer stockMovementBuffer;
+
+    @Autowired
+    private ExpiryAlerts expiryAlerts;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DatabaseCleaner databaseCleaner;
+
+    private Supplier supplier;
+
+    private Medicine medicine;
+
+    private String body;
+
+    // Create a medicine and the JSON body of an update to it before each test
+    @BeforeEach
+    void setUp() {
+        supplier = new Supplier("Api Supplier", "0412345603");
+        supplierService.createSupplier(supplier);
+        LocalDate expiryDate = LocalDate.now().plusYears(1);
+        medicine = new Medicine("Api Medicine", 10, 2.0, supplier, "Api Manufacturer", expiryDate);
+        medicineService.createMedicine(medicine);
+
+        body = "{\"name\": \"Api Medicine\", \"quantity\": 25, \"price\": 2.5, \"supplier\": {\"id\": "
+                + supplier.getId() + "}, \"manufacturer\": \"Api Manufacturer\", \"expiryDate\": \"" + expiryDate
+                + "\"}";
+    }
+
+    // Reset the database to initial values after all tests are done
+    @AfterAll
+    void tearDownAll() {
+        databaseCleaner.clean();
+    }
+
+    // Test reading a medicine and updating it with its ETag
+    @Test
+    void testUpdateMedicine_Success() throws Exception {
+        mockMvc.perform(get("/api/medicines/" + medicine.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""));
+
+        mockMvc.perform(put("/api/medicines/" + medicine.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.quantity").value(25));
+
+        entityManager.flush();
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT version FROM products WHERE id = ?", Integer.class,
+                medicine.getId()));
+    }
+
+    // Test a second update made from the same ETag is rejected instead of
+    // overwriting the first one
+    @Test
+    void testUpdateMedicine_Failure_WhenVersionIsStale() throws Exception {
+        mockMvc.perform(put("/api/medicines/" + medicine.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put("/api/medicines/" + medicine.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content(body.replace("25", "30")))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error")
+                        .value("The medicine was changed by someone else, reload it and try again"));
+    }
+
+    // Test a dispense is kept by an update of the quantity made after it, the
+    // update is applied as a difference to the quantity it was shown
+    @Test
+    void testDispense_KeptByLaterUpdate() throws Exception {
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "1"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put("/api/medicines/" + medicine.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content(body.replace("{", "{\"shownQuantity\": 10, ")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.quantity").value(24));
+    }
+
+    // Test reading a medicine shows the quantity it has available, with a
+    // dispense not compacted yet, without writing it to the stored quantity
+    @Test
+    void testGetMedicine_IncludesPendingDispense() throws Exception {
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "4"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/medicines/" + medicine.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.quantity").value(6));
+
+        entityManager.flush();
+        assertEquals(10, jdbcTemplate.queryForObject("SELECT quantity FROM products WHERE id = ?", Integer.class,
+                medicine.getId()));
+    }
+
+    // Test compacting the stock keeps the ETag, so an update made from the ETag
+    // read before it is accepted and keeps the dispense that was compacted
+    @Test
+    void testUpdateMedicine_Success_WhenStockWasCompacted() throws Exception {
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "1"))
+                .andExpect(status().isOk());
+        stockMovementBuffer.flush();
+        stockCompactor.compact();
+
+        mockMvc.perform(get("/api/medicines/" + medicine.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""));
+
+        mockMvc.perform(put("/api/medicines/" + medicine.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content(body.replace("{", "{\"shownQuantity\": 10, ")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.quantity").value(24));
+    }
+
+    // Test patching the quantity of an expired medicine, only the quantity is
+    // checked so the past expiry date does not reject it
+    @Test
+    void testPatchMedicine_OnlyChecksSentFields() throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        jdbcTemplate.update("UPDATE medicines SET expiry_date = ? WHERE id = ?", LocalDate.now().minusDays(1),
+                medicine.getId());
+
+        mockMvc.perform(patch("/api/medicines/" + medicine.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"quantity\": 3}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.quantity").value(3))
+                .andExpect(jsonPath("$.name").value("Api Medicine"));
+
+        entityManager.flush();
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT quantity FROM products WHERE id = ?", Integer.class,
+                medicine.getId()));
+    }
+
+    // Test patching a medicine with an invalid field
+    @Test
+    void testPatchMedicine_Failure_WhenQuantityIsNegative() throws Exception {
+        mockMvc.perform(patch("/api/medicines/" + medicine.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"quantity\": -1}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("The quantity cannot be negative"));
+    }
+
+    // Helper method to perform a request to a list endpoint, which writes its
+    // response asynchronously
+    private ResultActions performList(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(asyncDispatch(mockMvc.perform(request).andReturn()));
+    }
+
+    // Test listing the medicines of a supplier page by page with only some of
+    // their fields, the quantity includes a dispense not compacted yet
+    @Test
+    void testListMedicines_PagesWithSelectedFields() throws Exception {
+        Medicine other = new Medicine("Api Other Medicine", 3, 4.0, supplier, "Api Manufacturer",
+                LocalDate.now().plusYears(2));
+        medicineService.createMedicine(other);
+        entityManager.flush();
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "4"))
+                .andExpect(status().isOk());
+
+        performList(get("/api/medicines").param("supplierId", String.valueOf(supplier.getId()))
+                .param("fields", "name,quantity").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].id").value(medicine.getId()))
+                .andExpect(jsonPath("$.content[0].name").value("Api Medicine"))
+                .andExpect(jsonPath("$.content[0].quantity").value(6))
+                .andExpect(jsonPath("$.content[0].price").doesNotExist())
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.lastId").value(medicine.getId()));
+
+        performList(get("/api/medicines").param("supplierId", String.valueOf(supplier.getId()))
+                .param("after", String.valueOf(medicine.getId())).param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name").value("Api Other Medicine"))
+                .andExpect(jsonPath("$.content[0].expiryDate").value(other.getExpiryDate().toString()))
+                .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
+    // Test listing the medicines with a filter the endpoint does not have
+    @Test
+    void testListMedicines_Failure_WhenFilterIsUnknown() throws Exception {
+        performList(get("/api/medicines").param("colour", "red"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", startsWith("Unknown filter: colour")));
+    }
+
+    // Helper method to create a medicine of the test supplier expiring in the
+    // given number of days
+    private Medicine createMedicineExpiringIn(String name, int days) {
+        Medicine expiring = new Medicine(name, 5, 1.0, supplier, "Api Manufacturer", LocalDate.now().plusDays(days));
+        medicineService.createMedicine(expiring);
+        return expiring;
+    }
+
+    // Test listing the medicines expiring soon page by page, soonest first
+    @Test
+    void testGetExpiringMedicines_SoonestFirst() throws Exception {
+        Medicine later = createMedicineExpiringIn("Api Later Medicine", 10);
+        Medicine sooner = createMedicineExpiringIn("Api Sooner Medicine", 5);
+        createMedicineExpiringIn("Api Distant Medicine", 100);
+
+        mockMvc.perform(get("/api/medicines/expiring").param("days", "30").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(sooner.getId()))
+                .andExpect(jsonPath("$.hasNext").value(true));
+
+        mockMvc.perform(get("/api/medicines/expiring").param("days", "30").param("size", "1")
+                .param("afterDate", sooner.getExpiryDate().toString())
+                .param("afterId", String.valueOf(sooner.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(later.getId()))
+                .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
+    // Test listing the medicines expiring soon with too many days
+    @Test
+    void testGetExpiringMedicines_Failure_WhenDaysAreOutOfRange() throws Exception {
+        mockMvc.perform(get("/api/medicines/expiring").param("days", "1000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("The number of days must be between 0 and 365"));
+    }
+
+    // Test a medicine created with an expiry date inside the horizon is alerted
+    // right away, and the check only alerts the dates after the processed one
+    @Test
+    void testExpiryAlerts_Incremental() throws Exception {
+        Long lastAlert = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM expiry_alerts", Long.class);
+        Medicine sooner = createMedicineExpiringIn("Api Sooner Medicine", 5);
+
+        mockMvc.perform(get("/api/medicines/expiry-alerts").param("after", String.valueOf(lastAlert)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].medicineId").value(sooner.getId()))
+                .andExpect(jsonPath("$[0].medicineName").value("Api Sooner Medicine"));
+
+        // Pretend the check processed the dates up to 7 days ahead, then add a
+        // medicine inside them and one after them without alerts
+        jdbcTemplate.update("MERGE INTO expiry_alert_state (id, alerted_through) KEY (id) VALUES (1, ?)",
+                LocalDate.now().plusDays(7));
+        Medicine processed = createMedicineExpiringIn("Api Processed Medicine", 6);
+        Medicine later = createMedicineExpiringIn("Api Later Medicine", 20);
+        jdbcTemplate.update("DELETE FROM expiry_alerts WHERE medicine_id IN (?, ?)", processed.getId(),
+                later.getId());
+
+        assertEquals(1, expiryAlerts.check());
+        assertEquals(0, expiryAlerts.check());
+        assertEquals(List.of(later.getId()), jdbcTemplate.queryForList(
+                "SELECT medicine_id FROM expiry_alerts WHERE medicine_id IN (?, ?)", Integer.class,
+                processed.getId(), later.getId()));
+    }
+}
@@ -2,6 +2,11 @@ package com.pharmacy.controllers.integration;
 
 import java.time.LocalDate;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.TestInstance;
@@ -10,11 +15,15 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -51,6 +60,12 @@ class MedicinesControllerIntegrationTest {
     @Autowired
     private DatabaseCleaner databaseCleaner;
 
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     // Reset the database to initial values after all tests are done
     @AfterAll
     void tearDownAll() {
@@ -207,6 +222,21 @@ class MedicinesControllerIntegrationTest {
         assertEquals("The supplier does not exist", exception.getMessage());
     }
 
+    // Test adding a medicine whose name and manufacturer together make a natural
+    // key longer than the 255 characters of a default text column
+    @Test
+    void testAddMedicine_Success_WhenNaturalKeyIsLong() throws Exception {
+        Supplier supplier = new Supplier("Test Supplier", "0412345678");
+        supplierService.createSupplier(supplier);
+
+        Medicine medicine = new Medicine("Long Medicine ".repeat(17).trim(), 100, 10.0, supplier,
+                "Long Manufacturer ".repeat(13).trim(), LocalDate.now().plusDays(10));
+        medicineService.createMedicine(medicine);
+
+        assertEquals(medicine.getNaturalKey(), medicineRepository.findById(medicine.getId())
+                .map(Medicine::getNaturalKey).orElse(null));
+    }
+
     // Test updating a medicine with all valid parameters
     @Test
     void testUpdateMedicine_Success() throws Exception {
@@ -257,6 +287,43 @@ class MedicinesControllerIntegrationTest {
                         "Medicine expiry date is incorrect"));
     }
 
+    // Test updating a medicine reads the stored medicine only once, the save
+    // merges into the medicine the update loaded
+    @Test
+    void testUpdateMedicine_ReadsMedicineOnce() throws Exception {
+        Supplier supplier = new Supplier("Test Supplier", "0412345678");
+        supplierService.createSupplier(supplier);
+        Medicine medicine = new Medicine("Test Medicine", 100, 10.0, supplier, "Test Manufacturer",
+                LocalDate.now().plusDays(10));
+        medicineService.createMedicine(medicine);
+
+        // Start the update from an empty persistence context, like a new request
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        statistics.setStatisticsEnabled(true);
+        try {
+            mockMvc.perform(MockMvcRequestBuilders.put("/medicines/update")
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .param("id", String.valueOf(medicine.getId()))
+                    .param("version", String.valueOf(medicine.getVersion()))
+                    .param("name", "Updated Medicine")
+                    .param("quantity", String.valueOf(medicine.getQuantity()))
+                    .param("price", "20.0")
+                    .param("supplier", String.valueOf(supplier.getId()))
+                    .param("manufacturer", medicine.getManufacturer())
+                    .param("expiryDate", medicine.getExpiryDate().toString()))
+                    .andExpect(flash().attribute("message", "Medicine updated successfully"));
+
+            assertEquals(1, statistics.getEntityStatistics(Medicine.class.getName()).getLoadCount(),
+                    "The medicine was read more than once");
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
     /**
      * Test updating an medicine and expect an error when the service throws an
      * exception for duplicate medicine
@@ -296,6 +363,63 @@ class MedicinesControllerIntegrationTest {
                 .andExpect(flash().attribute("errorMessage", "Error updating medicine: The medicine does not exist"));
     }
 
+    // Test updating a medicine from an edit form opened before another update
+    @Test
+    void testUpdateMedicine_Failure_WhenVersionIsStale() throws Exception {
+        Supplier supplier = new Supplier("Test Supplier", "0412345678");
+        supplierService.createSupplier(supplier);
+        Medicine medicine = new Medicine("Test Medicine", 100, 10.0, supplier, "Test Manufacturer",
+                LocalDate.now().plusDays(10));
+        medicineService.createMedicine(medicine);
+
+        // Perform the PUT request with the version the form was opened with
+        mockMvc.perform(MockMvcRequestBuilders.put("/medicines/update")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .param("id", String.valueOf(medicine.getId()))
+                .param("version", String.valueOf(medicine.getVersion() + 1))
+                .param("name", medicine.getName())
+                .param("quantity", "5")
+                .param("price", "1.0")
+                .param("supplier", String.valueOf(supplier.getId()))
+                .param("manufacturer", medicine.getManufacturer())
+                .param("expiryDate", medicine.getExpiryDate().toString()))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(flash().attribute("errorMessage",
+                        "Error updating medicine: The medicine was changed by someone else, reload it and try again"));
+    }
+
+    /**
+     * Test updating a medicine to the same fields as another medicine and expect
+     * the unique natural key index to reject it
+     */
+    @Test
+    void testUpdateMedicine_Failure_WhenDuplicateMedicine() throws Exception {
+        // Create a mock supplier or a real supplier object as needed
+        Supplier supplier = new Supplier("Test Supplier", "0412345678");
+        supplierService.createSupplier(supplier);
+
+        // Create two medicines that differ only by name
+        Medicine medicine = new Medicine("Test Medicine", 100, 10.0, supplier, "Test Manufacturer", LocalDate.now());
+        medicineService.createMedicine(medicine);
+        Medicine other = new Medicine("Other Medicine", 100, 10.0, supplier, "Test Manufacturer", LocalDate.now());
+        medicineService.createMedicine(other);
+
+        // Perform the PUT request, renaming the second medicine to the first one
+        mockMvc.perform(MockMvcRequestBuilders.put("/medicines/update")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .param("id", String.valueOf(other.getId()))
+                .param("name", " " + medicine.getName() + " ")
+                .param("quantity", "5")
+                .param("price", "1.0")
+                .param("supplier", String.valueOf(supplier.getId()))
+                .param("manufacturer", medicine.getManufacturer())
+                .param("expiryDate", medicine.getExpiryDate().toString()))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/medicines"))
+                .andExpect(flash().attribute("errorMessage",
+                        "Error updating medicine: The medicine with the same name, manufacturer, supplier, and expiry date already exists"));
+    }
+
     /**
      * Test updating an medicine and expect an error when the service throws an
      * exception for a negative price
@@ -434,4 +558,53 @@ class MedicinesControllerIntegrationTest {
                 .andExpect(redirectedUrl("/medicines"))
                 .andExpect(flash().attribute("errorMessage", "Error deleting medicine with ID: " + nonExistentId));
     }
+
+    // Test searching medicines by a case-insensitive part of the name
+    @Test
+    void testSearchMedicines_Success() throws Exception {
+        Supplier supplier = new Supplier("Test Supplier", "0412345678");
+        supplierService.createSupplier(supplier);
+
+        Medicine medicine = new Medicine("Searchable Medicine", 100, 10.0, supplier, "Test Manufacturer",
+                LocalDate.now());
+        medicineService.createMedicine(medicine);
+
+        // A prefix match in a different case
+        mockMvc.perform(MockMvcRequestBuilders.get("/medicines/search").param("q", "SEARCHABLE"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("medicines :: rows"))
+                .andExpect(content().string(containsString("Searchable Medicine")));
+
+        // A match in the middle of the name
+        mockMvc.perform(MockMvcRequestBuilders.get("/medicines/search").param("q", "able med"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Searchable Medicine")));
+    }
+
+    // Test importing medicines from a CSV file, with one row that cannot be imported
+    @Test
+    void testImportMedicines_Success() throws Exception {
+        Supplier supplier = new Supplier("Import Supplier", "0412345699");
+        supplierService.createSupplier(supplier);
+
+        String expiryDate = LocalDate.now().plusYears(1).toString();
+        String csv = String.join("\n",
+                "name,quantity,price,supplier,manufacturer,expiry_date",
+                "Imported Medicine A,10,2.50,Import Supplier,Import Manufacturer," + expiryDate,
+                "Imported Medicine B,20,3.50,Import Supplier,Import Manufacturer," + expiryDate,
+                "Imported Medicine C,30,4.50,Missing Supplier,Import Manufacturer," + expiryDate);
+        MockMultipartFile file = new MockMultipartFile("file", "medicines.csv", "text/csv", csv.getBytes());
+
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/medicines/import").file(file).param("batchSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"line\":4,\"message\":\"The supplier does not exist\"")))
+                .andExpect(content().string(containsString(
+                        "{\"batch\":2,\"rowsRead\":3,\"imported\":2,\"failed\":1,\"errors\":[],\"done\":true}")));
+
+        // Check the valid rows were saved with their supplier
+        Medicine imported = medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(
+                "Imported Medicine B", "Import Manufacturer", supplier, LocalDate.parse(expiryDate));
+        assertNotNull(imported, "Medicine was not imported");
+        assertEquals(20, imported.getQuantity());
+    }
 }
@@ -0,0 +1,417 @@
+package com.pharmacy.controllers.integration;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.time.LocalDate;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import jakarta.persistence.EntityManager;
+
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+
+import com.pharmacy.DatabaseCleaner;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.MedicineService;
+import com.pharmacy.services.ProductService;
+import com.pharmacy.services.SupplierService;
+import com.pharmacy.models.StockLevel;
+import com.pharmacy.models.StockBufferStats;
+import com.pharmacy.models.StockMovementReason;
+import com.pharmacy.services.servicesImplementation.StockLedger;
+import com.pharmacy.services.servicesImplementation.StockCompactor;
+import com.pharmacy.services.servicesImplementation.StockMovementBuffer;
+
+// The buffer is only flushed and the ledger only compacted by the tests, so
+// what they do is known
+@Rollback
+@Transactional
+@SpringBootTest(properties = { "pharmacy.stock.buffer-flush-ms=3600000",
+        "pharmacy.stock.compaction-delay-ms=3600000" })
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS) // Allows non-static @AfterAll
+class StockControllerIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MedicineService medicineService;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockCompactor stockCompactor;
+
+    @Autowired
+    private StockMovementBuffer stockMovementBuffer;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DatabaseCleaner databaseCleaner;
+
+    private Medicine medicine;
+
+    // Create a medicine with 10 units in stock before each test
+    @BeforeEach
+    void setUp() {
+        Supplier supplier = new Supplier("Stock Supplier", "0412345602");
+        supplierService.createSupplier(supplier);
+        medicine = new Medicine("Stock Medicine", 10, 2.0, supplier, "Stock Manufacturer",
+                LocalDate.now().plusYears(1));
+        medicineService.createMedicine(medicine);
+
+        // Tests without a transaction commit every write as they go
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+        }
+    }
+
+    // Reset the database to initial values after all tests are done
+    @AfterAll
+    void tearDownAll() {
+        databaseCleaner.clean();
+    }
+
+    // Helper method to read the quantity of a table's row for the medicine
+    private int quantityIn(String table) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM " + table + " WHERE id = ?", Integer.class,
+                medicine.getId());
+    }
+
+    // Helper method to count the stock ledger rows of the medicine that are not
+    // compacted yet
+    private int pendingMovements() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM stock_movements WHERE product_id = ? AND compacted = FALSE", Integer.class,
+                medicine.getId());
+    }
+
+    // Helper method to delete the medicine and its supplier committed by a test
+    // that runs without a transaction
+    private void deleteMedicine() {
+        medicineService.deleteMedicine(medicine.getId());
+        supplierService.deleteSupplier(medicine.getSupplier().getId());
+    }
+
+    /**
+     * Test dispensing and receiving are recorded in the stock ledger, and only
+     * change the products and product inventory tables when compacted. The
+     * delivery only reaches the buffer once committed, so the test commits
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testDispenseAndReceive_Success() throws Exception {
+        try {
+            mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "4"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.quantity").value(6));
+
+            // The dispense is in the ledger straight away, checked by the database
+            assertEquals(1, pendingMovements());
+
+            mockMvc.perform(post("/products/" + medicine.getId() + "/receive").param("quantity", "20"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.quantity").value(26));
+
+            mockMvc.perform(get("/products/" + medicine.getId() + "/stock"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.quantity").value(26));
+            assertEquals(10, quantityIn("products"));
+
+            stockMovementBuffer.flush();
+            assertEquals(2, pendingMovements());
+
+            stockCompactor.compact();
+
+            assertEquals(26, quantityIn("products"));
+            assertEquals(26, quantityIn("product_inventory"));
+            assertEquals(26, productService.getQuantity(medicine.getId()));
+        } finally {
+            // Nothing is rolled back, remove what this test committed
+            deleteMedicine();
+        }
+    }
+
+    // Test editing the quantity keeps a dispense that was not compacted yet
+    @Test
+    void testUpdateQuantity_KeepsPendingDispense() throws Exception {
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "4"))
+                .andExpect(status().isOk());
+
+        // The edit form showed the quantity of 10 and adds 5 to it
+        entityManager.clear();
+        medicine.setShownQuantity(10);
+        medicine.setQuantity(15);
+        medicineService.updateMedicine(medicine);
+        entityManager.flush();
+
+        assertEquals(11, quantityIn("products"));
+        assertEquals(11, productService.getQuantity(medicine.getId()));
+        assertEquals(0, pendingMovements());
+    }
+
+    // Test editing only the price from a form that showed the quantity before a
+    // dispense keeps the dispense and leaves it pending
+    @Test
+    void testUpdatePrice_KeepsPendingDispense() throws Exception {
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "4"))
+                .andExpect(status().isOk());
+
+        entityManager.clear();
+        medicine.setShownQuantity(10);
+        medicine.setQuantity(10);
+        medicine.setPrice(3.0);
+        medicineService.updateMedicine(medicine);
+        entityManager.flush();
+
+        assertEquals(10, quantityIn("products"));
+        assertEquals(6, productService.getQuantity(medicine.getId()));
+        assertEquals(1, pendingMovements());
+    }
+
+    // Test deliveries committed between two flushes of the buffer are written to
+    // the stock ledger as one row
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testReceive_CoalescedByBuffer() throws Exception {
+        try {
+            stockMovementBuffer.flush();
+            StockBufferStats before = stockMovementBuffer.getStats();
+
+            for (int i = 0; i < 3; i++) {
+                mockMvc.perform(post("/products/" + medicine.getId() + "/receive").param("quantity", "1"))
+                        .andExpect(status().isOk());
+            }
+            assertEquals(13, productService.getQuantity(medicine.getId()));
+
+            stockMovementBuffer.flush();
+
+            assertEquals(3, jdbcTemplate.queryForObject("SELECT delta FROM stock_movements WHERE product_id = ? "
+                    + "AND compacted = FALSE AND reason = 'RECEIVE'", Integer.class, medicine.getId()));
+            assertEquals(13, productService.getQuantity(medicine.getId()));
+            StockBufferStats after = stockMovementBuffer.getStats();
+            assertEquals(3, after.getChangesWritten() - before.getChangesWritten());
+            assertEquals(1, after.getRowsWritten() - before.getRowsWritten());
+        } finally {
+            // Nothing is rolled back, remove what this test committed
+            deleteMedicine();
+        }
+    }
+
+    // Test a delivery of a transaction that rolls back never reaches the ledger,
+    // while the transaction itself counts it
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testReceive_DroppedOnRollback() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                productService.receive(medicine.getId(), 5);
+                assertEquals(15, productService.getQuantity(medicine.getId()));
+                status.setRollbackOnly();
+            });
+            stockMovementBuffer.flush();
+
+            assertEquals(10, productService.getQuantity(medicine.getId()));
+            assertEquals(0, pendingMovements());
+        } finally {
+            // Nothing is rolled back, remove what this test committed
+            deleteMedicine();
+        }
+    }
+
+    // Test a dispense counts a delivery not written to the ledger yet, which is
+    // written with the dispense
+    @Test
+    void testDispense_WritesBufferedDelivery() throws Exception {
+        stockMovementBuffer.flush();
+        mockMvc.perform(post("/products/" + medicine.getId() + "/receive").param("quantity", "5"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "15"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(0));
+
+        assertEquals(2, pendingMovements());
+        assertEquals(0, productService.getQuantity(medicine.getId()));
+    }
+
+    /**
+     * Test concurrent dispenses that skip the in-process stock lock, like the
+     * ones of different instances, cannot take more than is in stock. The
+     * dispenses commit, so the medicine is deleted afterwards
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testTake_NoOversellWithoutStockLock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Callable<StockLevel>> takes = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                takes.add(() -> {
+                    start.await();
+                    return stockLedger.take(medicine.getId(), 1, StockMovementReason.DISPENSE);
+                });
+            }
+
+            List<Future<StockLevel>> results = takes.stream().map(executor::submit).toList();
+            start.countDown();
+
+            int taken = 0;
+            for (Future<StockLevel> result : results) {
+                taken += result.get().getQuantity() >= 1 ? 1 : 0;
+            }
+
+            assertEquals(10, taken);
+            assertEquals(0, productService.getQuantity(medicine.getId()));
+        } finally {
+            executor.shutdown();
+
+            // Nothing is rolled back, remove what this test committed
+            deleteMedicine();
+        }
+    }
+
+    /**
+     * Test a dispense does not wait for a transaction holding the lock of the
+     * products row, like an edit or a compaction. The dispense commits, so the
+     * medicine is deleted afterwards.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testTake_NotBlockedByProductRowLock() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            Future<?> holder = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForList("SELECT id FROM products WHERE id = ? FOR UPDATE", Integer.class,
+                        medicine.getId());
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            StockLevel level = CompletableFuture.supplyAsync(
+                    () -> stockLedger.take(medicine.getId(), 3, StockMovementReason.DISPENSE))
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals(10, level.getQuantity());
+
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+            assertEquals(7, productService.getQuantity(medicine.getId()));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+
+            // Nothing is rolled back, remove what this test committed
+            deleteMedicine();
+        }
+    }
+
+    // Test dispensing more than is in stock is rejected and changes nothing
+    @Test
+    void testDispense_Failure_WhenNotEnoughStock() throws Exception {
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "11"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Not enough stock, only 10 left"));
+
+        assertEquals(10, quantityIn("products"));
+    }
+
+    // Test dispensing a product that does not exist
+    @Test
+    void testDispense_Failure_WhenProductDoesNotExist() throws Exception {
+        mockMvc.perform(post("/products/9999999/dispense").param("quantity", "1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("The product does not exist"));
+    }
+
+    // Helper method to check whether the medicine is in the low stock set
+    private boolean isLowStock() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM low_stock_products WHERE product_id = ?",
+                Integer.class, medicine.getId()) == 1;
+    }
+
+    // Test the medicine enters the low stock set when a dispense takes it below
+    // its reorder threshold and leaves it when stock is received
+    @Test
+    void testLowStock_FollowsDispenseAndReceive() throws Exception {
+        medicine.setReorderThreshold(5);
+        medicine = medicineService.updateMedicine(medicine);
+        entityManager.flush();
+        assertFalse(isLowStock());
+
+        mockMvc.perform(post("/products/" + medicine.getId() + "/dispense").param("quantity", "6"))
+                .andExpect(status().isOk());
+        assertTrue(isLowStock());
+
+        mockMvc.perform(get("/api/products/low-stock"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(medicine.getId()))
+                .andExpect(jsonPath("$.content[0].quantity").value(4))
+                .andExpect(jsonPath("$.content[0].reorderThreshold").value(5));
+
+        mockMvc.perform(post("/products/" + medicine.getId() + "/receive").param("quantity", "3"))
+                .andExpect(status().isOk());
+        assertFalse(isLowStock());
+    }
+
+    // Test raising the reorder threshold above the quantity in stock puts the
+    // medicine in the low stock set
+    @Test
+    void testLowStock_WhenThresholdIsRaised() {
+        medicine.setReorderThreshold(20);
+        medicineService.updateMedicine(medicine);
+
+        assertTrue(isLowStock());
+    }
+}
@@ -0,0 +1,75 @@
+package com.pharmacy.controllers.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.TestInstance;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+
+import com.pharmacy.DatabaseCleaner;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.SupplierService;
+
+@Rollback
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS) // Allows non-static @AfterAll
+class SuppliersApiControllerIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private DatabaseCleaner databaseCleaner;
+
+    // Reset the database to initial values after all tests are done
+    @AfterAll
+    void tearDownAll() {
+        databaseCleaner.clean();
+    }
+
+    // Test updating a supplier with its ETag, then again with the old ETag
+    @Test
+    void testUpdateSupplier_WithIfMatch() throws Exception {
+        Supplier supplier = new Supplier("Api Supplier", "0412345604");
+        supplierService.createSupplier(supplier);
+
+        mockMvc.perform(get("/api/suppliers/" + supplier.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.name").value("Api Supplier"));
+
+        mockMvc.perform(put("/api/suppliers/" + supplier.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"Api Supplier Renamed\", \"contact\": \"0412345604\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.name").value("Api Supplier Renamed"));
+
+        mockMvc.perform(put("/api/suppliers/" + supplier.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"Api Supplier Again\", \"contact\": \"0412345604\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    // Test reading a supplier that does not exist
+    @Test
+    void testGetSupplier_NotFound() throws Exception {
+        mockMvc.perform(get("/api/suppliers/9999999"))
+                .andExpect(status().isNotFound());
+    }
+}
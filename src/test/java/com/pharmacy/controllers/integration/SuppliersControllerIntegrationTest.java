@@ -1,29 +1,39 @@
 package com.pharmacy.controllers.integration;
 
+import java.time.LocalDate;
+import java.util.Collection;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.hamcrest.Matchers.hasEntry;
 
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 
 import com.pharmacy.DatabaseCleaner;
 import com.pharmacy.models.Supplier;
+import com.pharmacy.services.SupplierService;
 import com.pharmacy.repositories.SupplierRepository;
 
 @Rollback
@@ -38,6 +48,9 @@ class SuppliersControllerIntegrationTest {
         @Autowired
         private SupplierRepository supplierRepository;
 
+        @Autowired
+        private SupplierService supplierService;
+
         @Autowired
         private DatabaseCleaner databaseCleaner;
 
@@ -191,6 +204,51 @@ class SuppliersControllerIntegrationTest {
                 assert (supplierRepository.findByContact("0412345678") == null);
         }
 
+        // Helper method to get the version the suppliers page shows for a supplier,
+        // which the edit form posts back
+        @SuppressWarnings("unchecked")
+        private int pageVersion(int id) throws Exception {
+                MvcResult result = mockMvc.perform(get("/suppliers")).andReturn();
+                Collection<Supplier> suppliers = (Collection<Supplier>) result.getModelAndView().getModel()
+                                .get("suppliers");
+
+                return suppliers.stream().filter(supplier -> supplier.getId() == id).findFirst().orElseThrow()
+                                .getVersion();
+        }
+
+        /**
+         * Test editing the same supplier twice from the suppliers page, committing
+         * each edit so the page is served from the supplier cache the second time
+         */
+        @Test
+        @Transactional(propagation = Propagation.NOT_SUPPORTED)
+        void testUpdateSupplier_TwiceFromPage() throws Exception {
+                Supplier supplier = new Supplier("Twice Edited Supplier", "0412345611");
+                supplierService.createSupplier(supplier);
+
+                try {
+                        for (String contact : new String[] { "0412345612", "0412345613" }) {
+                                int version = pageVersion(supplier.getId());
+                                assertEquals(supplierRepository.findById(supplier.getId()).orElseThrow().getVersion(),
+                                                version);
+
+                                mockMvc.perform(put("/suppliers/update")
+                                                .param("id", String.valueOf(supplier.getId()))
+                                                .param("version", String.valueOf(version))
+                                                .param("name", "Twice Edited Supplier")
+                                                .param("contact", contact))
+                                                .andExpect(status().is3xxRedirection())
+                                                .andExpect(flash().attribute("message", "Supplier updated successfully"));
+                        }
+
+                        assertEquals("0412345613", supplierRepository.findById(supplier.getId()).orElseThrow()
+                                        .getContact());
+                } finally {
+                        // Nothing is rolled back, remove what this test committed
+                        supplierService.deleteSupplier(supplier.getId());
+                }
+        }
+
         /**
          * Test updating a supplier's name to a name that is already used by another
          * supplier but with different phone number
@@ -370,6 +428,42 @@ class SuppliersControllerIntegrationTest {
                                 "Supplier 1 should not be deleted");
         }
 
+        // Test the product count of a supplier is shown on the suppliers page and
+        // stops the supplier from being deleted
+        @Test
+        void testDeleteSupplier_Failure_WhenProductCounted() throws Exception {
+                // Add a new supplier
+                mockMvc.perform(post("/suppliers/add")
+                                .param("name", "Supplier 1")
+                                .param("contact", "0412345678"))
+                                .andExpect(flash().attribute("message", "Supplier added successfully"));
+                Supplier supplier = supplierRepository.findByName("Supplier 1");
+
+                // Add a medicine of the supplier
+                mockMvc.perform(MockMvcRequestBuilders.post("/medicines/add")
+                                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                                .param("name", "Medicine 1")
+                                .param("quantity", "10")
+                                .param("price", "10.0")
+                                .param("supplier", String.valueOf(supplier.getId()))
+                                .param("manufacturer", "Manufacturer 1")
+                                .param("expiryDate", LocalDate.now().plusYears(1).toString()))
+                                .andExpect(flash().attribute("message", "Medicine added successfully"));
+
+                // The suppliers page shows the supplier has one product
+                mockMvc.perform(get("/suppliers"))
+                                .andExpect(status().isOk())
+                                .andExpect(model().attribute("productCounts", hasEntry(supplier.getId(), 1)));
+
+                // Attempt to delete the supplier
+                mockMvc.perform(MockMvcRequestBuilders.delete("/suppliers/delete/" + supplier.getId()))
+                                .andExpect(redirectedUrl("/suppliers"))
+                                .andExpect(flash().attribute("errorMessage", "Error deleting supplier with ID: "
+                                                + supplier.getId() + ", due to Supplier has associated products"));
+                assertTrue(supplierRepository.findById(supplier.getId()).isPresent(),
+                                "Supplier 1 should not be deleted");
+        }
+
         // Test deleting a supplier that does not exist
         @Test
         void testDeleteSupplier_Failure_WhenSupplierDoesNotExist() throws Exception {
@@ -0,0 +1,65 @@
+package com.pharmacy.controllers.unit;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.*;
+
+import com.pharmacy.models.Equipment;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.EquipmentService;
+import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.ListingService;
+import com.pharmacy.controllers.EquipmentsApiController;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@WebMvcTest(EquipmentsApiController.class)
+class EquipmentsApiControllerUnitTest {
+
+    // Autowire the MockMvc object to be used to perform HTTP requests
+    @Autowired
+    private MockMvc mockMvc;
+
+    // Mock the EquipmentService and SupplierService
+    @MockBean
+    private EquipmentService equipmentService;
+
+    @MockBean
+    private SupplierService supplierService;
+
+    @MockBean
+    private ListingService listingService;
+
+    // Test the controller to return an equipment with its version as the ETag
+    @Test
+    void testGetEquipment_Success() throws Exception {
+        Equipment equipment = new Equipment("1 year", LocalDate.parse("2024-01-01"), "Stethoscope", 10, 50.0,
+                new Supplier("ABC Pharma", "0412678947"));
+        equipment.setVersion(2);
+        when(equipmentService.getEquipmentById(3)).thenReturn(equipment);
+
+        mockMvc.perform(get("/api/equipments/3"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.warranty").value("1 year"));
+    }
+
+    // Test the controller to reject an If-Match header that is not a version ETag
+    @Test
+    void testUpdateEquipment_Failure_WhenIfMatchInvalid() throws Exception {
+        mockMvc.perform(put("/api/equipments/3").header("If-Match", "*")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"name\": \"Stethoscope\"}"))
+                .andExpect(status().isPreconditionRequired());
+
+        verify(equipmentService, never()).updateEquipment(any());
+    }
+}
@@ -6,12 +6,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
 import com.pharmacy.models.Equipment;
+import com.pharmacy.models.KeysetPage;
 import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.ProductImportService;
 import com.pharmacy.services.EquipmentService;
+import com.pharmacy.controllers.ModelLoader;
 import com.pharmacy.controllers.EquipmentsController;
 
 import static org.mockito.Mockito.*;
 
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +27,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 
 @WebMvcTest(EquipmentsController.class)
+@Import(ModelLoader.class)
 class EquipmentsControllerUnitTest {
 
     // Autowire the MockMvc object to be used to perform HTTP requests
@@ -36,10 +41,14 @@ class EquipmentsControllerUnitTest {
     @MockBean
     private SupplierService supplierService;
 
-    // Mock the getAllEquipments and getAllSuppliers methods to return an empty list
+    @MockBean
+    private ProductImportService productImportService;
+
+    // Mock the getEquipmentsPage and getAllSuppliers methods to return an empty page and list
     @BeforeEach
     void setUp() {
-        when(equipmentService.getAllEquipments()).thenReturn(Collections.emptyList());
+        when(equipmentService.getEquipmentsPage(any(), any(), anyInt()))
+                .thenReturn(KeysetPage.forward(Collections.emptyList(), 20, false, Equipment::getId));
         when(supplierService.getAllSuppliers()).thenReturn(Collections.emptyList());
     }
 
@@ -53,6 +62,18 @@ class EquipmentsControllerUnitTest {
                 .andExpect(view().name("equipments"));
     }
 
+    // Test the controller to display the next page of equipments after a given id
+    @Test
+    void testDisplayPage_AfterCursor() throws Exception {
+        mockMvc.perform(get("/equipments").param("after", "20").param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(model().attributeExists("page"))
+                .andExpect(view().name("equipments"));
+
+        // Verify that the cursor and page size are passed to the service
+        verify(equipmentService, times(1)).getEquipmentsPage(20, null, 10);
+    }
+
     // Test the controller to add a new equipment
     @Test
     void testAddEquipment_Success() throws Exception {
@@ -0,0 +1,80 @@
+package com.pharmacy.controllers.unit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.*;
+
+import com.pharmacy.models.ExportFormat;
+import com.pharmacy.services.ExportService;
+import com.pharmacy.controllers.ExportController;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@WebMvcTest(ExportController.class)
+class ExportControllerUnitTest {
+
+    // Autowire the MockMvc object to be used to perform HTTP requests
+    @Autowired
+    private MockMvc mockMvc;
+
+    // Mock the ExportService
+    @MockBean
+    private ExportService exportService;
+
+    // Test the controller to export the medicines as a CSV download
+    @Test
+    void testExportMedicines_Csv() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("id,name\n1,Paracetamol\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).exportMedicines(eq(ExportFormat.CSV), any());
+
+        mockMvc.perform(get("/medicines/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"medicines.csv\""))
+                .andExpect(content().string("id,name\n1,Paracetamol\n"));
+
+        // Verify that the exportMedicines method is called only once
+        verify(exportService, times(1)).exportMedicines(eq(ExportFormat.CSV), any());
+    }
+
+    // Test the controller to export the suppliers as NDJSON
+    @Test
+    void testExportSuppliers_Ndjson() throws Exception {
+        mockMvc.perform(get("/suppliers/export").param("format", "ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"suppliers.ndjson\""));
+
+        verify(exportService, times(1)).exportSuppliers(eq(ExportFormat.NDJSON), any());
+    }
+
+    // Test the controller to reject an unknown export format
+    @Test
+    void testExportProducts_UnknownFormat() throws Exception {
+        mockMvc.perform(get("/products/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(exportService, never()).exportProducts(any(), any());
+    }
+
+    // Test the controller to stop quietly when the client disconnects
+    @Test
+    void testExportEquipments_ClientDisconnected() throws Exception {
+        doThrow(new IOException("Broken pipe")).when(exportService).exportEquipments(any(), any());
+
+        mockMvc.perform(get("/equipments/export"))
+                .andExpect(status().isOk());
+    }
+}
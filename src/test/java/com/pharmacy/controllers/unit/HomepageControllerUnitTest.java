@@ -1,13 +1,25 @@
 package com.pharmacy.controllers.unit;
 
+import java.util.Map;
 import java.util.Collections;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 import org.junit.jupiter.api.Test;
 
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.DashboardSummary;
 import com.pharmacy.services.ProductService;
 import com.pharmacy.controllers.HomepageController;
 
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.hamcrest.Matchers.containsString;
 
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -24,15 +36,56 @@ class HomepageControllerUnitTest {
     @MockBean
     private ProductService productService;
 
+    // Helper method to mock the dashboard counters shown on every homepage
+    private void mockDashboard() {
+        when(productService.getDashboardSummary()).thenReturn(new DashboardSummary(11, Map.of("Medicine", 3L), 4,
+                1200, new BigDecimal("3650.00"), 1, 2, 30, 5, LocalDateTime.now()));
+    }
+
     // Test the controller to display the homepage
     @Test
     void testDisplayPage() throws Exception {
         // Mock the productService behavior
-        when(productService.getAllProducts()).thenReturn(Collections.emptyList());
+        when(productService.getProductsPage(any(), any(), anyInt()))
+                .thenReturn(KeysetPage.forward(Collections.emptyList(), 20, false, ProductInventory::getId));
+        mockDashboard();
 
         mockMvc.perform(get("/homepage"))
                 .andExpect(status().isOk())
                 .andExpect(model().attributeExists("products"))
+                .andExpect(model().attributeExists("page"))
+                .andExpect(model().attributeExists("dashboard"))
+                .andExpect(content().string(containsString("Expiring in 30 Days")))
+                .andExpect(view().name("homepage"));
+
+        // The homepage counts the products from the dashboard, never from the list
+        verify(productService, never()).getAllProducts();
+        verify(productService, never()).countProducts();
+    }
+
+    // Test the controller to display the previous page of products before a given id
+    @Test
+    void testDisplayPage_BeforeCursor() throws Exception {
+        when(productService.getProductsPage(any(), any(), anyInt()))
+                .thenReturn(KeysetPage.backward(Collections.emptyList(), 20, ProductInventory::getId));
+        mockDashboard();
+
+        mockMvc.perform(get("/homepage").param("before", "41"))
+                .andExpect(status().isOk())
                 .andExpect(view().name("homepage"));
+
+        // Verify that the cursor and the default page size are passed to the service
+        verify(productService, times(1)).getProductsPage(null, 41, 20);
+    }
+
+    // Test the controller to search products and render only the table rows
+    @Test
+    void testSearchProducts() throws Exception {
+        when(productService.searchProducts("asp", 20)).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/homepage/search").param("q", "asp"))
+                .andExpect(status().isOk())
+                .andExpect(model().attributeExists("products"))
+                .andExpect(view().name("homepage :: rows"));
     }
 }
@@ -0,0 +1,182 @@
+package com.pharmacy.controllers.unit;
+
+import java.util.List;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.pharmacy.models.ListingPage;
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.MedicinePatch;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.MedicineService;
+import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.ListingService;
+import com.pharmacy.controllers.MedicinesApiController;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+@WebMvcTest(MedicinesApiController.class)
+class MedicinesApiControllerUnitTest {
+
+    // Autowire the MockMvc object to be used to perform HTTP requests
+    @Autowired
+    private MockMvc mockMvc;
+
+    // Mock the MedicineService and SupplierService
+    @MockBean
+    private MedicineService medicineService;
+
+    @MockBean
+    private SupplierService supplierService;
+
+    @MockBean
+    private ListingService listingService;
+
+    private static final String BODY = "{\"name\": \"Aspirin\", \"quantity\": 5, \"price\": 2.5, "
+            + "\"supplier\": {\"id\": 1}, \"manufacturer\": \"Bayer\", \"expiryDate\": \"2030-01-01\"}";
+
+    // Helper method to build a stored medicine with the given version
+    private Medicine medicine(int version) {
+        Supplier supplier = new Supplier("ABC Pharma", "0412678947");
+        supplier.setId(1);
+        Medicine medicine = new Medicine("Aspirin", 5, 2.5, supplier, "Bayer", LocalDate.parse("2030-01-01"));
+        medicine.setId(7);
+        medicine.setVersion(version);
+        return medicine;
+    }
+
+    // Test the controller to return a medicine with its version as the ETag
+    @Test
+    void testGetMedicine_Success() throws Exception {
+        when(medicineService.getMedicineById(7)).thenReturn(medicine(4));
+
+        mockMvc.perform(get("/api/medicines/7"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.name").value("Aspirin"))
+                .andExpect(jsonPath("$.naturalKey").doesNotExist());
+    }
+
+    // Test the controller to write a page of medicines with the selected fields
+    @Test
+    void testListMedicines_Success() throws Exception {
+        when(listingService.listMedicines(any())).thenReturn(new ListingPage(List.of("id", "name"),
+                List.<Object[]>of(new Object[] { 7, "Aspirin" }), true, 7, 1));
+
+        MvcResult result = mockMvc.perform(get("/api/medicines").param("fields", "name").param("size", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(7))
+                .andExpect(jsonPath("$.content[0].name").value("Aspirin"))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.lastId").value(7));
+    }
+
+    // Test the controller to reject a list query the service cannot run
+    @Test
+    void testListMedicines_UnknownField() throws Exception {
+        when(listingService.listMedicines(any())).thenThrow(new RuntimeException("Unknown field: colour"));
+
+        MvcResult result = mockMvc.perform(get("/api/medicines").param("fields", "colour")).andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unknown field: colour"));
+    }
+
+    // Test the controller to return 404 for a medicine that does not exist
+    @Test
+    void testGetMedicine_NotFound() throws Exception {
+        mockMvc.perform(get("/api/medicines/7"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("The medicine does not exist"));
+    }
+
+    // Test the controller to update a medicine from the version in If-Match
+    @Test
+    void testUpdateMedicine_Success() throws Exception {
+        when(supplierService.getSupplierById(1)).thenReturn(medicine(0).getSupplier());
+        when(medicineService.updateMedicine(any(Medicine.class))).thenReturn(medicine(5));
+
+        mockMvc.perform(put("/api/medicines/7").header("If-Match", "\"4\"")
+                .contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5\""));
+
+        // Verify the id and version come from the request, not the body
+        ArgumentCaptor<Medicine> updated = ArgumentCaptor.forClass(Medicine.class);
+        verify(medicineService, times(1)).updateMedicine(updated.capture());
+        assertEquals(7, updated.getValue().getId());
+        assertEquals(4, updated.getValue().getVersion());
+        assertEquals("ABC Pharma", updated.getValue().getSupplier().getName());
+    }
+
+    // Test the controller to reject an update without an If-Match header
+    @Test
+    void testUpdateMedicine_Failure_WhenIfMatchMissing() throws Exception {
+        mockMvc.perform(put("/api/medicines/7").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(status().isPreconditionRequired());
+
+        verify(medicineService, never()).updateMedicine(any());
+    }
+
+    // Test the controller to return 412 when the medicine has a newer version
+    @Test
+    void testUpdateMedicine_Failure_WhenVersionIsStale() throws Exception {
+        when(medicineService.updateMedicine(any(Medicine.class))).thenThrow(
+                new OptimisticLockingFailureException("The medicine was changed by someone else, reload it and try again"));
+
+        mockMvc.perform(put("/api/medicines/7").header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").value("The medicine was changed by someone else, reload it and try again"));
+    }
+
+    // Test the controller to pass only the sent fields of a patch to the service
+    @Test
+    void testPatchMedicine_Success() throws Exception {
+        when(medicineService.patchMedicine(eq(7), eq(4), any(MedicinePatch.class))).thenReturn(medicine(5));
+
+        mockMvc.perform(patch("/api/medicines/7").header("If-Match", "\"4\"")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"quantity\": 5}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5\""));
+
+        ArgumentCaptor<MedicinePatch> captor = ArgumentCaptor.forClass(MedicinePatch.class);
+        verify(medicineService).patchMedicine(eq(7), eq(4), captor.capture());
+        assertEquals(5, captor.getValue().getQuantity());
+        assertNull(captor.getValue().getName());
+        assertNull(captor.getValue().getSupplier());
+    }
+
+    // Test the controller to reject a patch naming a supplier that does not exist
+    @Test
+    void testPatchMedicine_Failure_WhenSupplierDoesNotExist() throws Exception {
+        mockMvc.perform(patch("/api/medicines/7").header("If-Match", "\"4\"")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"supplier\": {\"id\": 99}}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("The supplier does not exist"));
+
+        verify(medicineService, never()).patchMedicine(anyInt(), anyInt(), any());
+    }
+}
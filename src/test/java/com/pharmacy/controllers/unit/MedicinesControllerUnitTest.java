@@ -1,18 +1,27 @@
 package com.pharmacy.controllers.unit;
 
+import java.util.List;
 import java.util.Collections;
+import java.util.function.Consumer;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
 import static org.mockito.Mockito.*;
+import static org.hamcrest.Matchers.matchesPattern;
 
 import com.pharmacy.models.Medicine;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.ImportProgress;
 import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.ProductImportService;
 import com.pharmacy.services.MedicineService;
+import com.pharmacy.controllers.ModelLoader;
 import com.pharmacy.controllers.MedicinesController;
 
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -21,8 +30,10 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 
 @WebMvcTest(MedicinesController.class)
+@Import(ModelLoader.class)
 class MedicinesControllerUnitTest {
 
     // Autowire the MockMvc object to be used to perform HTTP requests
@@ -36,10 +47,14 @@ class MedicinesControllerUnitTest {
     @MockBean
     private SupplierService supplierService;
 
-    // Mock the getAllMedicines and getAllSuppliers methods to return an empty list
+    @MockBean
+    private ProductImportService productImportService;
+
+    // Mock the getMedicinesPage and getAllSuppliers methods to return an empty page and list
     @BeforeEach
     void setUp() {
-        when(medicineService.getAllMedicines()).thenReturn(Collections.emptyList());
+        when(medicineService.getMedicinesPage(any(), any(), anyInt()))
+                .thenReturn(KeysetPage.forward(Collections.emptyList(), 20, false, Medicine::getId));
         when(supplierService.getAllSuppliers()).thenReturn(Collections.emptyList());
     }
 
@@ -53,6 +68,45 @@ class MedicinesControllerUnitTest {
                 .andExpect(view().name("medicines"));
     }
 
+    // Test the controller to display the next page of medicines after a given id
+    @Test
+    void testDisplayPage_AfterCursor() throws Exception {
+        mockMvc.perform(get("/medicines").param("after", "20").param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(model().attributeExists("page"))
+                .andExpect(view().name("medicines"));
+
+        // Verify that the cursor and page size are passed to the service
+        verify(medicineService, times(1)).getMedicinesPage(20, null, 10);
+    }
+
+    // Test the controller to load the page attributes together and report the
+    // time each one took
+    @Test
+    void testDisplayPage_ServerTiming() throws Exception {
+        when(medicineService.countMedicines()).thenReturn(0L);
+
+        mockMvc.perform(get("/medicines"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("medicineCount", 0L))
+                .andExpect(header().string("Server-Timing",
+                        matchesPattern("page;dur=[0-9.]+, medicineCount;dur=[0-9.]+, suppliers;dur=[0-9.]+")));
+    }
+
+    // Test the controller to search medicines and render only the table rows
+    @Test
+    void testSearchMedicines() throws Exception {
+        when(medicineService.searchMedicines("para", 20)).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/medicines/search").param("q", "para"))
+                .andExpect(status().isOk())
+                .andExpect(model().attributeExists("medicines"))
+                .andExpect(view().name("medicines :: rows"));
+
+        // Verify that the searchMedicines method is called only once
+        verify(medicineService, times(1)).searchMedicines("para", 20);
+    }
+
     // Test the controller to add a new medicine
     @Test
     void testAddMedicine_Success() throws Exception {
@@ -148,4 +202,39 @@ class MedicinesControllerUnitTest {
         // Verify that the deleteMedicine method is called only once
         verify(medicineService, times(1)).deleteMedicine(1);
     }
+
+    // Test the controller to import medicines and stream one progress line per batch
+    @Test
+    void testImportMedicines_StreamsProgress() throws Exception {
+        when(productImportService.importMedicines(any(), eq(100), any())).thenAnswer(invocation -> {
+            Consumer<ImportProgress> progress = invocation.getArgument(2);
+            progress.accept(new ImportProgress(1, 2, 1, 1,
+                    List.of(new ImportProgress.RowError(3, "The supplier does not exist")), false));
+            progress.accept(new ImportProgress(1, 2, 1, 1, List.of(), true));
+            return null;
+        });
+
+        MockMultipartFile file = new MockMultipartFile("file", "medicines.csv", "text/csv", new byte[0]);
+
+        mockMvc.perform(multipart("/medicines/import").file(file).param("batchSize", "100"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andExpect(content().string(
+                        "{\"batch\":1,\"rowsRead\":2,\"imported\":1,\"failed\":1,"
+                                + "\"errors\":[{\"line\":3,\"message\":\"The supplier does not exist\"}],\"done\":false}\n"
+                                + "{\"batch\":1,\"rowsRead\":2,\"imported\":1,\"failed\":1,\"errors\":[],\"done\":true}\n"));
+    }
+
+    // Test the controller to reject an import the service cannot start
+    @Test
+    void testImportMedicines_Failure() throws Exception {
+        when(productImportService.importMedicines(any(), anyInt(), any()))
+                .thenThrow(new RuntimeException("The file is missing the column: price"));
+
+        MockMultipartFile file = new MockMultipartFile("file", "medicines.csv", "text/csv", new byte[0]);
+
+        mockMvc.perform(multipart("/medicines/import").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("{\"error\":\"The file is missing the column: price\"}\n"));
+    }
 }
@@ -0,0 +1,76 @@
+package com.pharmacy.controllers.unit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.pharmacy.models.StockBufferStats;
+import com.pharmacy.services.ProductService;
+import com.pharmacy.controllers.StockController;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@WebMvcTest(StockController.class)
+class StockControllerUnitTest {
+
+    // Autowire the MockMvc object to be used to perform HTTP requests
+    @Autowired
+    private MockMvc mockMvc;
+
+    // Mock the ProductService
+    @MockBean
+    private ProductService productService;
+
+    // Test the controller to dispense a product and return the new quantity
+    @Test
+    void testDispense_Success() throws Exception {
+        when(productService.dispense(7, 3)).thenReturn(17);
+
+        mockMvc.perform(post("/products/7/dispense").param("quantity", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.quantity").value(17));
+
+        // Verify that the dispense method is called only once
+        verify(productService, times(1)).dispense(7, 3);
+    }
+
+    // Test the controller to report why the stock of a product was not changed
+    @Test
+    void testReceive_Failure() throws Exception {
+        when(productService.receive(7, 0)).thenThrow(new RuntimeException("The quantity must be greater than zero"));
+
+        mockMvc.perform(post("/products/7/receive").param("quantity", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("The quantity must be greater than zero"));
+    }
+
+    // Test the controller to return the quantity of a product in stock
+    @Test
+    void testStock_Success() throws Exception {
+        when(productService.getQuantity(7)).thenReturn(12);
+
+        mockMvc.perform(get("/products/7/stock"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(12));
+    }
+
+    // Test the controller to return the counters of the stock movement buffer
+    @Test
+    void testBufferStats_Success() throws Exception {
+        when(productService.getStockBufferStats()).thenReturn(new StockBufferStats(30, 4, 2, 1.5, 2.0, 0));
+
+        mockMvc.perform(get("/stock/buffer"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.coalescingRatio").value(7.5))
+                .andExpect(jsonPath("$.averageFlushMillis").value(1.5));
+    }
+}
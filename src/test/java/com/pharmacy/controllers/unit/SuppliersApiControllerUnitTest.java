@@ -0,0 +1,61 @@
+package com.pharmacy.controllers.unit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.*;
+
+import com.pharmacy.models.Supplier;
+import com.pharmacy.services.SupplierService;
+import com.pharmacy.services.ListingService;
+import com.pharmacy.controllers.SuppliersApiController;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@WebMvcTest(SuppliersApiController.class)
+class SuppliersApiControllerUnitTest {
+
+    // Autowire the MockMvc object to be used to perform HTTP requests
+    @Autowired
+    private MockMvc mockMvc;
+
+    // Mock the SupplierService
+    @MockBean
+    private SupplierService supplierService;
+
+    @MockBean
+    private ListingService listingService;
+
+    // Test the controller to return a supplier with its version as the ETag
+    @Test
+    void testGetSupplier_Success() throws Exception {
+        Supplier supplier = new Supplier("ABC Pharma", "0412678947");
+        supplier.setId(1);
+        supplier.setVersion(6);
+        when(supplierService.getSupplierById(1)).thenReturn(supplier);
+
+        mockMvc.perform(get("/api/suppliers/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"6\""))
+                .andExpect(jsonPath("$.contact").value("0412678947"));
+    }
+
+    // Test the controller to return the validation error of a rejected update
+    @Test
+    void testUpdateSupplier_Failure() throws Exception {
+        when(supplierService.updateSupplier(any(Supplier.class)))
+                .thenThrow(new RuntimeException("Name already used by another supplier"));
+
+        mockMvc.perform(put("/api/suppliers/1").header("If-Match", "W/\"6\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"XYZ Medical\", \"contact\": \"0412678947\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Name already used by another supplier"));
+    }
+}
@@ -48,6 +48,7 @@ class SuppliersControllerUnitTest {
                 mockMvc.perform(get("/suppliers"))
                                 .andExpect(status().isOk())
                                 .andExpect(model().attributeExists("suppliers"))
+                                .andExpect(model().attributeExists("productCounts"))
                                 .andExpect(view().name("suppliers"));
         }
 
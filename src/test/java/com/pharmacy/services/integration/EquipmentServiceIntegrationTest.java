@@ -1,5 +1,6 @@
 package com.pharmacy.services.integration;
 
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Optional;
 import java.time.LocalDate;
@@ -19,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -66,27 +68,16 @@ class EquipmentServiceIntegrationTest {
     // Test case for creating equipment
     @Test
     void testCreateEquipment() {
-        when(equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(
-                equipment.getName().trim(),
-                equipment.getSupplier(),
-                equipment.getPurchaseDate(),
-                equipment.getWarranty()))
-                .thenReturn(null); // No duplicate
-        when(equipmentRepository.save(equipment)).thenReturn(equipment);
+        when(equipmentRepository.saveAndFlush(equipment)).thenReturn(equipment);
 
         assertDoesNotThrow(() -> equipmentService.createEquipment(equipment));
-        verify(equipmentRepository, times(1)).save(equipment);
+        verify(equipmentRepository, times(1)).saveAndFlush(equipment);
     }
 
     // Test case for creating a duplicate equipment
     @Test
     void testCreateDuplicateEquipment() {
-        when(equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(
-                equipment.getName().trim(),
-                equipment.getSupplier(),
-                equipment.getPurchaseDate(),
-                equipment.getWarranty()))
-                .thenReturn(equipment); // Simulate existing equipment
+        when(equipmentRepository.saveAndFlush(equipment)).thenThrow(duplicateKeyViolation());
 
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> equipmentService.createEquipment(equipment));
@@ -98,15 +89,9 @@ class EquipmentServiceIntegrationTest {
     @Test
     void testUpdateEquipment() {
         when(equipmentRepository.findById(equipment.getId())).thenReturn(Optional.of(equipment));
-        when(equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(
-                equipment.getName().trim(),
-                equipment.getSupplier(),
-                equipment.getPurchaseDate(),
-                equipment.getWarranty()))
-                .thenReturn(null); // No duplicate
 
         assertDoesNotThrow(() -> equipmentService.updateEquipment(equipment));
-        verify(equipmentRepository, times(1)).save(equipment);
+        verify(equipmentRepository, times(1)).saveAndFlush(equipment);
     }
 
     // Test case for updating a non-existing equipment
@@ -123,12 +108,8 @@ class EquipmentServiceIntegrationTest {
     @Test
     void testUpdateDuplicateEquipment() {
         when(equipmentRepository.findById(equipment.getId())).thenReturn(Optional.of(equipment));
-        when(equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(
-                equipment.getName().trim(),
-                equipment.getSupplier(),
-                equipment.getPurchaseDate(),
-                equipment.getWarranty()))
-                .thenReturn(new Equipment()); // Simulate a duplicate equipment
+        // Simulate the database rejecting a duplicate equipment
+        when(equipmentRepository.saveAndFlush(equipment)).thenThrow(duplicateKeyViolation());
 
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> equipmentService.updateEquipment(equipment));
@@ -187,4 +168,11 @@ class EquipmentServiceIntegrationTest {
                 () -> equipmentService.createEquipment(equipment));
         assertEquals("The purchase date cannot be in the future", exception.getMessage());
     }
+
+    // Helper method to build the error the database reports for a duplicate
+    // natural key
+    private DataIntegrityViolationException duplicateKeyViolation() {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(
+                "Unique index or primary key violation: \"PUBLIC.UK_PRODUCTS_NATURAL_KEY ON PUBLIC.PRODUCTS(NATURAL_KEY)\""));
+    }
 }
@@ -1,5 +1,6 @@
 package com.pharmacy.services.integration;
 
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Optional;
 import java.time.LocalDate;
@@ -19,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -66,27 +68,16 @@ class MedicineServiceIntegrationTest {
     // Test case for creating a medicine
     @Test
     void testCreateMedicine() {
-        when(medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(
-                medicine.getName().trim(),
-                medicine.getManufacturer().trim(),
-                medicine.getSupplier(),
-                medicine.getExpiryDate()))
-                .thenReturn(null);
-        when(medicineRepository.save(medicine)).thenReturn(medicine);
+        when(medicineRepository.saveAndFlush(medicine)).thenReturn(medicine);
 
         assertDoesNotThrow(() -> medicineService.createMedicine(medicine));
-        verify(medicineRepository, times(1)).save(medicine);
+        verify(medicineRepository, times(1)).saveAndFlush(medicine);
     }
 
     // Test case for creating a duplicate medicine
     @Test
     void testCreateDuplicateMedicine() {
-        when(medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(
-                medicine.getName().trim(),
-                medicine.getManufacturer().trim(),
-                medicine.getSupplier(),
-                medicine.getExpiryDate()))
-                .thenReturn(medicine);
+        when(medicineRepository.saveAndFlush(medicine)).thenThrow(duplicateKeyViolation());
 
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> medicineService.createMedicine(medicine));
@@ -98,15 +89,9 @@ class MedicineServiceIntegrationTest {
     @Test
     void testUpdateMedicine() {
         when(medicineRepository.findById(medicine.getId())).thenReturn(Optional.of(medicine));
-        when(medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(
-                medicine.getName().trim(),
-                medicine.getManufacturer().trim(),
-                medicine.getSupplier(),
-                medicine.getExpiryDate()))
-                .thenReturn(null);
 
         assertDoesNotThrow(() -> medicineService.updateMedicine(medicine));
-        verify(medicineRepository, times(1)).save(medicine);
+        verify(medicineRepository, times(1)).saveAndFlush(medicine);
     }
 
     // Test case for updating a non-existing medicine
@@ -123,12 +108,8 @@ class MedicineServiceIntegrationTest {
     @Test
     void testUpdateDuplicateMedicine() {
         when(medicineRepository.findById(medicine.getId())).thenReturn(Optional.of(medicine));
-        when(medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(
-                medicine.getName().trim(),
-                medicine.getManufacturer().trim(),
-                medicine.getSupplier(),
-                medicine.getExpiryDate()))
-                .thenReturn(new Medicine()); // Simulate a duplicate medicine
+        // Simulate the database rejecting a duplicate medicine
+        when(medicineRepository.saveAndFlush(medicine)).thenThrow(duplicateKeyViolation());
 
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> medicineService.updateMedicine(medicine));
@@ -187,4 +168,11 @@ class MedicineServiceIntegrationTest {
                 () -> medicineService.createMedicine(medicine));
         assertEquals("The expiry date cannot be in the past", exception.getMessage());
     }
+
+    // Helper method to build the error the database reports for a duplicate
+    // natural key
+    private DataIntegrityViolationException duplicateKeyViolation() {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(
+                "Unique index or primary key violation: \"PUBLIC.UK_PRODUCTS_NATURAL_KEY ON PUBLIC.PRODUCTS(NATURAL_KEY)\""));
+    }
 }
@@ -1,15 +1,14 @@
 package com.pharmacy.services.integration;
 
+import java.util.List;
 import java.util.Arrays;
 import java.util.Collection;
 
 import static org.mockito.Mockito.*;
 import static org.mockito.ArgumentMatchers.anyString;
 
-import com.pharmacy.models.Medicine;
 import com.pharmacy.models.Supplier;
 import com.pharmacy.services.SupplierService;
-import com.pharmacy.repositories.ProductRepository;
 import com.pharmacy.repositories.SupplierRepository;
 
 import org.junit.jupiter.api.Test;
@@ -32,9 +31,6 @@ class SupplierServiceIntegrationTest {
     @MockBean
     private SupplierRepository supplierRepository;
 
-    @MockBean
-    private ProductRepository productRepository;
-
     private Supplier supplier;
 
     @BeforeEach
@@ -60,12 +56,10 @@ class SupplierServiceIntegrationTest {
     // Test case for creating a new supplier
     @Test
     void testCreateSupplier() {
-        when(supplierRepository.findByName(anyString())).thenReturn(null);
-        when(supplierRepository.findByContact(anyString())).thenReturn(null);
 
         supplierService.createSupplier(supplier);
 
-        verify(supplierRepository, times(1)).save(supplier);
+        verify(supplierRepository, times(1)).saveAndFlush(supplier);
     }
 
     /**
@@ -79,7 +73,7 @@ class SupplierServiceIntegrationTest {
         existingSupplier.setName("Supplier A");
         existingSupplier.setContact("0412345678");
 
-        when(supplierRepository.findByName(anyString())).thenReturn(existingSupplier);
+        when(supplierRepository.findByNameOrContact(anyString(), anyString())).thenReturn(List.of(existingSupplier));
 
         // Assert that an exception is thrown
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -89,7 +83,7 @@ class SupplierServiceIntegrationTest {
         // Assert the exception message
         assertEquals("Name already used by another supplier", exception.getMessage());
 
-        verify(supplierRepository, times(0)).save(supplier);
+        verify(supplierRepository, times(0)).saveAndFlush(supplier);
     }
 
     /**
@@ -103,8 +97,7 @@ class SupplierServiceIntegrationTest {
         existingSupplier.setName("Supplier B");
         existingSupplier.setContact("0412345678");
 
-        when(supplierRepository.findByName(anyString())).thenReturn(null);
-        when(supplierRepository.findByContact(anyString())).thenReturn(existingSupplier);
+        when(supplierRepository.findByNameOrContact(anyString(), anyString())).thenReturn(List.of(existingSupplier));
 
         // Assert that an exception is thrown
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -114,7 +107,7 @@ class SupplierServiceIntegrationTest {
         // Assert the exception message
         assertEquals("Phone number already used by another supplier", exception.getMessage());
 
-        verify(supplierRepository, times(0)).save(supplier);
+        verify(supplierRepository, times(0)).saveAndFlush(supplier);
     }
 
     // Test case for creating a new supplier with an invalid phone number
@@ -130,19 +123,17 @@ class SupplierServiceIntegrationTest {
         // Assert the exception message
         assertEquals("Invalid phone number (it must start with 04 followed by 8 digits)", exception.getMessage());
 
-        verify(supplierRepository, times(0)).save(supplier);
+        verify(supplierRepository, times(0)).saveAndFlush(supplier);
     }
 
     // Test case for updating a supplier
     @Test
     void testUpdateSupplier() {
         when(supplierRepository.findById(supplier.getId())).thenReturn(java.util.Optional.of(supplier));
-        when(supplierRepository.findByName(anyString())).thenReturn(null);
-        when(supplierRepository.findByContact(anyString())).thenReturn(null);
 
         supplierService.updateSupplier(supplier);
 
-        verify(supplierRepository, times(1)).save(supplier);
+        verify(supplierRepository, times(1)).saveAndFlush(supplier);
     }
 
     // Test case for updating a supplier with the same name as an existing supplier
@@ -154,7 +145,7 @@ class SupplierServiceIntegrationTest {
         existingSupplier.setContact("0412345678");
 
         when(supplierRepository.findById(supplier.getId())).thenReturn(java.util.Optional.of(supplier));
-        when(supplierRepository.findByName(anyString())).thenReturn(existingSupplier);
+        when(supplierRepository.findByNameOrContact(anyString(), anyString())).thenReturn(List.of(existingSupplier));
 
         // Assert that an exception is thrown
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -164,7 +155,7 @@ class SupplierServiceIntegrationTest {
         // Assert the exception message
         assertEquals("Name already used by another supplier", exception.getMessage());
 
-        verify(supplierRepository, times(0)).save(supplier);
+        verify(supplierRepository, times(0)).saveAndFlush(supplier);
     }
 
     /**
@@ -179,7 +170,7 @@ class SupplierServiceIntegrationTest {
         existingSupplier.setContact("0412345678");
 
         when(supplierRepository.findById(supplier.getId())).thenReturn(java.util.Optional.of(supplier));
-        when(supplierRepository.findByContact(anyString())).thenReturn(existingSupplier);
+        when(supplierRepository.findByNameOrContact(anyString(), anyString())).thenReturn(List.of(existingSupplier));
 
         // Assert that an exception is thrown
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -189,7 +180,7 @@ class SupplierServiceIntegrationTest {
         // Assert the exception message
         assertEquals("Phone number already used by another supplier", exception.getMessage());
 
-        verify(supplierRepository, times(0)).save(supplier);
+        verify(supplierRepository, times(0)).saveAndFlush(supplier);
     }
 
     // Test case for updating a supplier with an invalid phone number
@@ -210,7 +201,7 @@ class SupplierServiceIntegrationTest {
         assertEquals("Invalid phone number (it must start with 04 followed by 8 digits)", exception.getMessage());
 
         // Verify that save was never called
-        verify(supplierRepository, times(0)).save(supplier);
+        verify(supplierRepository, times(0)).saveAndFlush(supplier);
     }
 
     // Test case for updating a non-existing supplier
@@ -226,7 +217,7 @@ class SupplierServiceIntegrationTest {
         // Assert the exception message
         assertEquals("Supplier does not exist", exception.getMessage());
 
-        verify(supplierRepository, times(0)).save(supplier);
+        verify(supplierRepository, times(0)).saveAndFlush(supplier);
     }
 
     // Test case for deleting a supplier
@@ -258,15 +249,11 @@ class SupplierServiceIntegrationTest {
     // Test case for deleting a supplier with associated products
     @Test
     void testDeleteSupplierWithAssociatedProducts() {
-        // Create a mock Medicine object
-        Medicine mockMedicine = new Medicine();
-        mockMedicine.setId(1); // Set any necessary properties for the mock
-
         // Set up the supplier repository to return the supplier when looked up by ID
         when(supplierRepository.findById(supplier.getId())).thenReturn(java.util.Optional.of(supplier));
 
         // Mock to simulate that the supplier has associated medicines
-        when(productRepository.findBySupplierId(supplier.getId())).thenReturn(Arrays.asList(mockMedicine));
+        when(supplierRepository.findProductCount(supplier.getId())).thenReturn(1);
 
         // Assert that an exception is thrown
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
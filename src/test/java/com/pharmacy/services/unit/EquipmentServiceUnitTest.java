@@ -1,5 +1,6 @@
 package com.pharmacy.services.unit;
 
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Arrays;
 import java.util.Optional;
@@ -11,6 +12,7 @@ import org.mockito.Mock;
 import org.mockito.InjectMocks;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -22,10 +24,15 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.context.ApplicationEventPublisher;
 
 import com.pharmacy.models.Equipment;
+import com.pharmacy.models.EquipmentPatch;
 import com.pharmacy.models.Supplier;
 import com.pharmacy.repositories.EquipmentRepository;
+import com.pharmacy.services.servicesImplementation.StockLedger;
 import com.pharmacy.services.servicesImplementation.EquipmentServiceImpl;
 
 @SpringBootTest
@@ -33,6 +40,12 @@ class EquipmentServiceUnitTest {
     @Mock
     private EquipmentRepository equipmentRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StockLedger stockLedger;
+
     @InjectMocks
     private EquipmentServiceImpl equipmentService;
 
@@ -75,24 +88,18 @@ class EquipmentServiceUnitTest {
     // Test createEquipment with valid data
     @Test
     void testCreateEquipment_Success() {
-        when(equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(anyString(), any(), any(),
-                anyString()))
-                .thenReturn(null); // No duplicate
-
         // Act
         equipmentService.createEquipment(testEquipment);
 
         // Assert that the repository's save method was called
-        verify(equipmentRepository, times(1)).save(testEquipment);
+        verify(equipmentRepository, times(1)).saveAndFlush(testEquipment);
     }
 
     // Test createEquipment with duplicate equipment
     @Test
     void testCreateEquipment_DuplicateEquipment() {
-        // Simulate an existing duplicate equipment
-        when(equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(anyString(), any(), any(),
-                anyString()))
-                .thenReturn(testEquipment);
+        // Simulate the database rejecting a duplicate equipment
+        when(equipmentRepository.saveAndFlush(testEquipment)).thenThrow(duplicateKeyViolation());
 
         // Assert that the exception is thrown
         RuntimeException thrown = assertThrows(RuntimeException.class,
@@ -122,15 +129,12 @@ class EquipmentServiceUnitTest {
     void testUpdateEquipment_Success() {
         // Mock existing equipment
         when(equipmentRepository.findById(1)).thenReturn(Optional.of(testEquipment));
-        when(equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(anyString(), any(), any(),
-                anyString()))
-                .thenReturn(null); // No duplicate
 
         // Act
         equipmentService.updateEquipment(testEquipment);
 
         // Assert that the repository's save method was called
-        verify(equipmentRepository, times(1)).save(testEquipment);
+        verify(equipmentRepository, times(1)).saveAndFlush(testEquipment);
     }
 
     // Test updateEquipment with non-existent equipment
@@ -150,13 +154,9 @@ class EquipmentServiceUnitTest {
     // Test updateEquipment with duplicate equipment
     @Test
     void testUpdateEquipment_DuplicateEquipment() {
-        // Simulate an existing duplicate equipment with a different ID
-        Equipment duplicateEquipment = new Equipment();
-        duplicateEquipment.setId(2); // Different ID
         when(equipmentRepository.findById(1)).thenReturn(Optional.of(testEquipment));
-        when(equipmentRepository.findByNameAndSupplierAndPurchaseDateAndWarranty(anyString(), any(), any(),
-                anyString()))
-                .thenReturn(duplicateEquipment); // Duplicate with a different ID
+        // Simulate the database rejecting a duplicate equipment
+        when(equipmentRepository.saveAndFlush(testEquipment)).thenThrow(duplicateKeyViolation());
 
         // Assert that the exception is thrown
         RuntimeException thrown = assertThrows(RuntimeException.class,
@@ -249,6 +249,50 @@ class EquipmentServiceUnitTest {
         assertEquals("The supplier does not exist", thrown.getMessage());
     }
 
+    // Test updateEquipment made from an older version of the equipment
+    @Test
+    void testUpdateEquipment_StaleVersion() {
+        Equipment stored = new Equipment();
+        stored.setId(1);
+        stored.setVersion(3);
+        when(equipmentRepository.findById(1)).thenReturn(Optional.of(stored));
+
+        // The equipment being saved was read at version 0
+        RuntimeException exception = assertThrows(OptimisticLockingFailureException.class,
+                () -> equipmentService.updateEquipment(testEquipment));
+
+        assertEquals("The equipment was changed by someone else, reload it and try again", exception.getMessage());
+        verify(equipmentRepository, never()).saveAndFlush(any());
+    }
+
+    // Test patchEquipment only checks and changes the fields set in the patch
+    @Test
+    void testPatchEquipment_OnlyChecksSetFields() {
+        when(equipmentRepository.findById(1)).thenReturn(Optional.of(testEquipment));
+
+        EquipmentPatch patch = new EquipmentPatch();
+        patch.setWarranty("2 years");
+        Equipment patched = equipmentService.patchEquipment(1, 0, patch);
+
+        assertEquals("2 years", patched.getWarranty());
+        assertEquals(100, patched.getQuantity());
+        verify(equipmentRepository, times(1)).saveAndFlush(testEquipment);
+    }
+
+    // Test patchEquipment with a purchase date in the future
+    @Test
+    void testPatchEquipment_PurchaseDateInFuture() {
+        when(equipmentRepository.findById(1)).thenReturn(Optional.of(testEquipment));
+
+        EquipmentPatch patch = new EquipmentPatch();
+        patch.setPurchaseDate(LocalDate.now().plusDays(1));
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> equipmentService.patchEquipment(1, 0, patch));
+
+        assertEquals("The purchase date cannot be in the future", exception.getMessage());
+        verify(equipmentRepository, never()).saveAndFlush(any());
+    }
+
     // Test deleteEquipment with existing equipment
     @Test
     void testDeleteEquipment_Success() {
@@ -274,4 +318,11 @@ class EquipmentServiceUnitTest {
         // Assert the exception message
         assertEquals("The equipment does not exist", thrown.getMessage());
     }
-}
\ No newline at end of file
+
+    // Helper method to build the error the database reports for a duplicate
+    // natural key
+    private DataIntegrityViolationException duplicateKeyViolation() {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(
+                "Unique index or primary key violation: \"PUBLIC.UK_PRODUCTS_NATURAL_KEY ON PUBLIC.PRODUCTS(NATURAL_KEY)\""));
+    }
+}
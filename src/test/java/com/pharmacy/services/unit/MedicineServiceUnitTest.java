@@ -1,27 +1,42 @@
 package com.pharmacy.services.unit;
 
+import java.sql.SQLException;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import org.springframework.data.domain.Limit;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.context.ApplicationEventPublisher;
 
 import org.mockito.Mock;
 import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 
+import java.util.List;
 import java.util.Arrays;
 import java.util.Optional;
 import java.time.LocalDate;
 
 import com.pharmacy.models.Medicine;
+import com.pharmacy.models.MedicinePatch;
+import com.pharmacy.models.KeysetPage;
 import com.pharmacy.models.Supplier;
+import com.pharmacy.events.ProductChangedEvent;
 import com.pharmacy.repositories.MedicineRepository;
+import com.pharmacy.services.servicesImplementation.StockLedger;
+import com.pharmacy.services.servicesImplementation.ProductSearchIndex;
 import com.pharmacy.services.servicesImplementation.MedicineServiceImpl;
 
 @SpringBootTest
@@ -29,6 +44,15 @@ class MedicineServiceUnitTest {
     @Mock   
     private MedicineRepository medicineRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
     @InjectMocks
     private MedicineServiceImpl medicineService;
 
@@ -65,25 +89,88 @@ class MedicineServiceUnitTest {
         assertEquals("Test Medicine", medicines.iterator().next().getName());
     }
 
+    // Helper method to create a medicine with the given id
+    private Medicine medicineWithId(int id) {
+        Medicine medicine = new Medicine();
+        medicine.setId(id);
+        return medicine;
+    }
+
+    // Test getMedicinesPage for the first page when there are more medicines
+    @Test
+    void testGetMedicinesPage_FirstPage() {
+        // One extra row is returned to signal that a next page exists
+        when(medicineRepository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(3)))
+                .thenReturn(List.of(medicineWithId(1), medicineWithId(2), medicineWithId(3)));
+
+        KeysetPage<Medicine> page = medicineService.getMedicinesPage(null, null, 2);
+
+        assertEquals(2, page.getContent().size());
+        assertEquals(1, page.getFirstId());
+        assertEquals(2, page.getLastId());
+        assertTrue(page.isHasNext());
+        assertFalse(page.isHasPrevious());
+    }
+
+    // Test getMedicinesPage going back before a given id
+    @Test
+    void testGetMedicinesPage_BeforeCursor() {
+        // Rows come back in descending order and are reversed by the page
+        when(medicineRepository.findByIdLessThanOrderByIdDesc(5, Limit.of(3)))
+                .thenReturn(List.of(medicineWithId(4), medicineWithId(3)));
+
+        KeysetPage<Medicine> page = medicineService.getMedicinesPage(null, 5, 2);
+
+        assertEquals(3, page.getFirstId());
+        assertEquals(4, page.getLastId());
+        assertTrue(page.isHasNext());
+        assertFalse(page.isHasPrevious());
+    }
+
+    // Test searchMedicines returns nothing without loading medicines when the
+    // index has no match
+    @Test
+    void testSearchMedicines_NoMatches() {
+        when(productSearchIndex.search("  TEST ", "Medicine", 1)).thenReturn(List.of());
+
+        List<Medicine> medicines = medicineService.searchMedicines("  TEST ", 1);
+
+        assertTrue(medicines.isEmpty());
+        verify(medicineRepository, never()).findByIdIn(any());
+    }
+
+    // Test searchMedicines returns the medicines in the order ranked by the index
+    @Test
+    void testSearchMedicines_InRankOrder() {
+        Medicine other = medicineWithId(2);
+        when(productSearchIndex.search("Med", "Medicine", 5)).thenReturn(List.of(2, 1));
+        when(medicineRepository.findByIdIn(List.of(2, 1))).thenReturn(List.of(testMedicine, other));
+
+        List<Medicine> medicines = medicineService.searchMedicines("Med", 5);
+
+        assertEquals(List.of(other, testMedicine), medicines);
+    }
+
     // Test createMedicine with valid data
     @Test
     void testCreateMedicine_Success() {
-        when(medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(anyString(), anyString(), any(), any()))
-                .thenReturn(null); // No duplicate
-
         // Act
         medicineService.createMedicine(testMedicine);
 
         // Assert that the repository's save method was called
-        verify(medicineRepository, times(1)).save(testMedicine);
+        verify(medicineRepository, times(1)).saveAndFlush(testMedicine);
+
+        // Assert that the change was published with the created medicine
+        ArgumentCaptor<ProductChangedEvent> event = ArgumentCaptor.forClass(ProductChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals("Test Medicine", event.getValue().getChanges().get(0).getAfter().getName());
     }
 
     // Test createMedicine with a duplicate medicine
     @Test
     void testCreateMedicine_DuplicateMedicine() {
-        // Simulate an existing duplicate medicine
-        when(medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(anyString(), anyString(), any(), any()))
-                .thenReturn(testMedicine);
+        // Simulate the database rejecting a duplicate medicine
+        when(medicineRepository.saveAndFlush(testMedicine)).thenThrow(duplicateKeyViolation());
 
         // Assert that the exception is thrown
         assertThrows(RuntimeException.class, () -> medicineService.createMedicine(testMedicine));
@@ -104,14 +191,12 @@ class MedicineServiceUnitTest {
     void testUpdateMedicine_Success() {
         // Mock existing medicine
         when(medicineRepository.findById(1)).thenReturn(Optional.of(testMedicine));
-        when(medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(anyString(), anyString(), any(), any()))
-                .thenReturn(null); // No duplicate
 
         // Act
         medicineService.updateMedicine(testMedicine);
 
         // Assert that the repository's save method was called
-        verify(medicineRepository, times(1)).save(testMedicine);
+        verify(medicineRepository, times(1)).saveAndFlush(testMedicine);
     }
 
     // Test updateMedicine with non-existent medicine
@@ -127,17 +212,67 @@ class MedicineServiceUnitTest {
     // Test updateMedicine with duplicate medicine
     @Test
     void testUpdateMedicine_DuplicateMedicine() {
-        // Simulate an existing duplicate medicine with a different ID
-        Medicine duplicateMedicine = new Medicine();
-        duplicateMedicine.setId(2); // Different ID
         when(medicineRepository.findById(1)).thenReturn(Optional.of(testMedicine));
-        when(medicineRepository.findByNameAndManufacturerAndSupplierAndExpiryDate(anyString(), anyString(), any(), any()))
-                .thenReturn(duplicateMedicine); // Duplicate with a different ID
+        // Simulate the database rejecting a duplicate medicine
+        when(medicineRepository.saveAndFlush(testMedicine)).thenThrow(duplicateKeyViolation());
 
         // Assert that the exception is thrown
         assertThrows(RuntimeException.class, () -> medicineService.updateMedicine(testMedicine));
     }
 
+    // Test updateMedicine made from an older version of the medicine
+    @Test
+    void testUpdateMedicine_StaleVersion() {
+        Medicine stored = new Medicine();
+        stored.setId(1);
+        stored.setVersion(3);
+        when(medicineRepository.findById(1)).thenReturn(Optional.of(stored));
+
+        // The medicine being saved was read at version 0
+        RuntimeException exception = assertThrows(OptimisticLockingFailureException.class,
+                () -> medicineService.updateMedicine(testMedicine));
+
+        assertEquals("The medicine was changed by someone else, reload it and try again", exception.getMessage());
+        verify(medicineRepository, never()).saveAndFlush(any());
+    }
+
+    // Test patchMedicine only checks and changes the fields set in the patch
+    @Test
+    void testPatchMedicine_OnlyChecksSetFields() {
+        // An expired medicine would fail the full update
+        testMedicine.setExpiryDate(LocalDate.now().minusDays(1));
+        when(medicineRepository.findById(1)).thenReturn(Optional.of(testMedicine));
+
+        // The quantity is changed through the stock ledger
+        when(stockLedger.applyEdit(testMedicine, null, 0)).thenReturn(5);
+
+        MedicinePatch patch = new MedicinePatch();
+        patch.setQuantity(5);
+        Medicine patched = medicineService.patchMedicine(1, 0, patch);
+
+        assertEquals(5, patched.getQuantity());
+        assertEquals("Test Medicine", patched.getName());
+        verify(stockLedger, times(1)).lock(1);
+        verify(medicineRepository, times(1)).saveAndFlush(testMedicine);
+        verify(eventPublisher, times(1)).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    // Test patchMedicine with an invalid field leaves the medicine unchanged
+    @Test
+    void testPatchMedicine_InvalidPrice() {
+        when(medicineRepository.findById(1)).thenReturn(Optional.of(testMedicine));
+
+        MedicinePatch patch = new MedicinePatch();
+        patch.setQuantity(5);
+        patch.setPrice(-1.0);
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> medicineService.patchMedicine(1, 0, patch));
+
+        assertEquals("The price cannot be negative", exception.getMessage());
+        assertEquals(100, testMedicine.getQuantity());
+        verify(medicineRepository, never()).saveAndFlush(any());
+    }
+
     // Test deleteMedicine with existing medicine
     @Test
     void testDeleteMedicine_Success() {
@@ -160,4 +295,11 @@ class MedicineServiceUnitTest {
         // Assert that the exception is thrown
         assertThrows(RuntimeException.class, () -> medicineService.deleteMedicine(1));
     }
-}
\ No newline at end of file
+
+    // Helper method to build the error the database reports for a duplicate
+    // natural key
+    private DataIntegrityViolationException duplicateKeyViolation() {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(
+                "Unique index or primary key violation: \"PUBLIC.UK_PRODUCTS_NATURAL_KEY ON PUBLIC.PRODUCTS(NATURAL_KEY)\""));
+    }
+}
@@ -0,0 +1,227 @@
+package com.pharmacy.services.unit;
+
+import java.util.Set;
+import java.util.List;
+import java.util.ArrayList;
+import java.time.LocalDate;
+import java.sql.SQLException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.mockito.Mock;
+import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+import jakarta.persistence.EntityManager;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.models.ImportProgress;
+import com.pharmacy.repositories.ProductRepository;
+import com.pharmacy.repositories.MedicineRepository;
+import com.pharmacy.repositories.SupplierRepository;
+import com.pharmacy.repositories.EquipmentRepository;
+import com.pharmacy.services.servicesImplementation.ProductImportServiceImpl;
+
+@SpringBootTest
+class ProductImportServiceUnitTest {
+    @Mock
+    private MedicineRepository medicineRepository;
+
+    @Mock
+    private EquipmentRepository equipmentRepository;
+
+    @Mock
+    private SupplierRepository supplierRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @InjectMocks
+    private ProductImportServiceImpl productImportService;
+
+    private Supplier supplier;
+
+    private String expiryDate;
+
+    private List<ImportProgress> progress;
+
+    @BeforeEach
+    void setUp() {
+        supplier = new Supplier("ABC Pharma", "0412678947");
+        supplier.setId(1);
+        expiryDate = LocalDate.now().plusYears(1).toString();
+        progress = new ArrayList<>();
+
+        when(supplierRepository.findByNameIn(anyCollection())).thenReturn(List.of(supplier));
+    }
+
+    // Helper method to turn the lines of a CSV file into a stream
+    private InputStream csv(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Test importing valid medicines in several batches
+    @Test
+    void testImportMedicines_Success() {
+        ImportProgress result = productImportService.importMedicines(csv(
+                "name,quantity,price,supplier,manufacturer,expiry_date",
+                "Paracetamol,100,10.00,ABC Pharma,Pfizer," + expiryDate,
+                "\"Cough Syrup, Honey\",20,7.50,ABC Pharma,Bayer," + expiryDate,
+                "Aspirin,50,5.00,ABC Pharma,Bayer," + expiryDate), 2, progress::add);
+
+        assertEquals(3, result.getRowsRead());
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getFailed());
+        assertEquals(3, progress.size());
+        assertTrue(progress.get(2).isDone());
+
+        // Suppliers and duplicates are looked up once per batch, not once per row
+        verify(supplierRepository, times(2)).findByNameIn(anyCollection());
+        verify(productRepository, times(2)).findExistingNaturalKeys(anyCollection());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Medicine>> saved = ArgumentCaptor.forClass(List.class);
+        verify(medicineRepository, times(2)).saveAll(saved.capture());
+        assertEquals("Cough Syrup, Honey", saved.getAllValues().get(0).get(1).getName());
+    }
+
+    // Test invalid and duplicate rows are reported with their line numbers and
+    // the other rows are still imported
+    @Test
+    void testImportMedicines_RowErrors() {
+        Medicine existing = new Medicine("Aspirin", 50, 5.0, supplier, "Bayer", LocalDate.parse(expiryDate));
+        when(productRepository.findExistingNaturalKeys(anyCollection())).thenReturn(Set.of(existing.getNaturalKey()));
+
+        ImportProgress result = productImportService.importMedicines(csv(
+                "name,quantity,price,supplier,manufacturer,expiry_date",
+                "Paracetamol,100,10.00,ABC Pharma,Pfizer," + expiryDate,
+                "Ibuprofen,lots,5.00,ABC Pharma,GSK," + expiryDate,
+                "Antiseptic,100,5.00,Unknown Supplier,J&J," + expiryDate,
+                "Aspirin,50,5.00,ABC Pharma,Bayer," + expiryDate,
+                "Paracetamol,100,10.00,ABC Pharma,Pfizer," + expiryDate), 10, progress::add);
+
+        assertEquals(5, result.getRowsRead());
+        assertEquals(1, result.getImported());
+        assertEquals(4, result.getFailed());
+
+        List<ImportProgress.RowError> errors = progress.get(0).getErrors();
+        assertEquals(3, errors.get(0).getLine());
+        assertEquals("The quantity must be a whole number", errors.get(0).getMessage());
+        assertEquals(4, errors.get(1).getLine());
+        assertEquals("The supplier does not exist", errors.get(1).getMessage());
+        assertEquals(5, errors.get(2).getLine());
+        assertEquals("The medicine with the same name, supplier, expiry date, and manufacturer already exists",
+                errors.get(2).getMessage());
+        assertEquals(6, errors.get(3).getLine());
+    }
+
+    // Test a product saved by another transaction after the batch looked up the
+    // stored natural keys is reported as a duplicate row, and the import goes on
+    @Test
+    void testImportMedicines_DuplicateSavedConcurrently() {
+        Medicine concurrent = new Medicine("Aspirin", 50, 5.0, supplier, "Bayer", LocalDate.parse(expiryDate));
+        when(productRepository.findExistingNaturalKeys(anyCollection()))
+                .thenReturn(Set.of())
+                .thenReturn(Set.of(concurrent.getNaturalKey()));
+        doThrow(new DataIntegrityViolationException("Unique index violated",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.UK_PRODUCTS_NATURAL_KEY\"")))
+                .doNothing()
+                .when(productRepository).flush();
+
+        ImportProgress result = productImportService.importMedicines(csv(
+                "name,quantity,price,supplier,manufacturer,expiry_date",
+                "Paracetamol,100,10.00,ABC Pharma,Pfizer," + expiryDate,
+                "Aspirin,50,5.00,ABC Pharma,Bayer," + expiryDate), 10, progress::add);
+
+        assertEquals(2, result.getRowsRead());
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+
+        List<ImportProgress.RowError> errors = progress.get(0).getErrors();
+        assertEquals(1, errors.size());
+        assertEquals(3, errors.get(0).getLine());
+        assertEquals("The medicine with the same name, supplier, expiry date, and manufacturer already exists",
+                errors.get(0).getMessage());
+
+        // The batch was rolled back and imported again without the duplicate
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Medicine>> saved = ArgumentCaptor.forClass(List.class);
+        verify(medicineRepository, times(2)).saveAll(saved.capture());
+        assertEquals(1, saved.getAllValues().get(1).size());
+        assertEquals("Paracetamol", saved.getAllValues().get(1).get(0).getName());
+    }
+
+    // Test a batch that keeps losing the race stops the import with an error
+    // instead of retrying forever
+    @Test
+    void testImportMedicines_DuplicateSavedConcurrentlyEveryAttempt() {
+        doThrow(new DataIntegrityViolationException("Unique index violated",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.UK_PRODUCTS_NATURAL_KEY\"")))
+                .when(productRepository).flush();
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> productImportService.importMedicines(csv(
+                        "name,quantity,price,supplier,manufacturer,expiry_date",
+                        "Paracetamol,100,10.00,ABC Pharma,Pfizer," + expiryDate), 10, progress::add));
+
+        assertEquals("The batch starting at line 2 kept conflicting with products added by someone else, "
+                + "import the file again", exception.getMessage());
+        verify(medicineRepository, times(3)).saveAll(anyList());
+    }
+
+    // Test a file without one of the required columns is rejected before any row
+    // is imported
+    @Test
+    void testImportMedicines_MissingColumn() {
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> productImportService.importMedicines(csv(
+                        "name,quantity,supplier,manufacturer,expiry_date",
+                        "Paracetamol,100,ABC Pharma,Pfizer," + expiryDate), 10, progress::add));
+
+        assertEquals("The file is missing the column: price", exception.getMessage());
+        verify(medicineRepository, never()).saveAll(anyList());
+    }
+
+    // Test importing an equipment whose purchase date is in the future
+    @Test
+    void testImportEquipments_InvalidPurchaseDate() {
+        ImportProgress result = productImportService.importEquipments(csv(
+                "name,quantity,price,supplier,warranty,purchase_date",
+                "Stethoscope,10,50.00,ABC Pharma,1 year," + LocalDate.now().plusDays(1)), 10, progress::add);
+
+        assertEquals(0, result.getImported());
+        assertEquals("The purchase date cannot be in the future",
+                progress.get(0).getErrors().get(0).getMessage());
+        verify(equipmentRepository, never()).saveAll(any());
+    }
+}
@@ -0,0 +1,169 @@
+package com.pharmacy.services.unit;
+
+import java.util.List;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.pharmacy.models.Medicine;
+import com.pharmacy.models.Supplier;
+import com.pharmacy.models.ProductInventory;
+import com.pharmacy.models.ProductSuggestion;
+import com.pharmacy.events.ProductChangedEvent;
+import com.pharmacy.services.servicesImplementation.ProductNameIndex;
+
+@SpringBootTest
+class ProductNameIndexUnitTest {
+
+    private ProductNameIndex productNameIndex;
+
+    private Supplier supplier;
+
+    // Start each test from an empty index, the events are applied straight away
+    // as the tests run outside a transaction
+    @BeforeEach
+    void setUp() {
+        productNameIndex = new ProductNameIndex(null);
+        supplier = new Supplier("Index Supplier", "0412345606");
+        supplier.setId(1);
+    }
+
+    // Helper method to create a medicine with the given id, name and quantity
+    private Medicine medicine(int id, String name, int quantity) {
+        Medicine medicine = new Medicine(name, quantity, 1.0, supplier, "Index Manufacturer",
+                LocalDate.now().plusYears(1));
+        medicine.setId(id);
+        productNameIndex.onProductChanged(ProductChangedEvent.created(medicine));
+        return medicine;
+    }
+
+    // Helper method to get the ids of the suggestions for a query
+    private List<Integer> suggestedIds(String query, int limit) {
+        return productNameIndex.suggest(query, limit).stream().map(ProductSuggestion::getId).toList();
+    }
+
+    // Test the suggestions are the names starting with the query, ignoring case
+    // and surrounding spaces, in name order and up to the limit
+    @Test
+    void testSuggest_PrefixInNameOrder() {
+        medicine(1, "Paracetamol", 10);
+        medicine(2, "Aspirin", 10);
+        medicine(3, "Panadol", 10);
+        medicine(4, "Paracetamol Extra", 10);
+
+        assertEquals(List.of(3, 1, 4), suggestedIds("  pA ", 10));
+        assertEquals(List.of(1, 4), suggestedIds("PARACETAMOL", 10));
+        assertEquals(List.of(3, 1), suggestedIds("pa", 2));
+        assertTrue(suggestedIds("parx", 10).isEmpty());
+        assertTrue(suggestedIds("   ", 10).isEmpty());
+    }
+
+    // Test a name whose lower case is longer than itself is found from its own
+    // first letters, the query is normalised the same way as the names
+    @Test
+    void testSuggest_NameWithDottedCapitalI() {
+        medicine(1, "İzmir Salve", 10);
+        medicine(2, "Iodine", 10);
+
+        assertEquals(List.of(1), suggestedIds("İZ", 10));
+        assertEquals(List.of(1), suggestedIds("İzmir s", 10));
+        assertEquals(List.of(2), suggestedIds("io", 10));
+    }
+
+    // Test a rename moves the product and a delete removes it
+    @Test
+    void testSuggest_FollowsRenameAndDelete() {
+        Medicine medicine = medicine(1, "Ibuprofen", 10);
+        medicine(2, "Iodine", 10);
+
+        ProductInventory before = ProductInventory.of(medicine);
+        medicine.setName("Zinc Oxide");
+        productNameIndex.onProductChanged(ProductChangedEvent.updated(before, medicine));
+
+        assertEquals(List.of(2), suggestedIds("i", 10));
+        assertEquals(List.of(1), suggestedIds("zinc", 10));
+
+        productNameIndex.onProductChanged(ProductChangedEvent.deleted(ProductInventory.of(medicine)));
+        assertTrue(suggestedIds("zinc", 10).isEmpty());
+    }
+
+    // Test products written one at a time, out of name order, are suggested in
+    // name order, and an edit that keeps the name keeps a single entry
+    @Test
+    void testSuggest_WritesKeepNameOrder() {
+        for (int id = 1; id <= 50; id++) {
+            medicine(id, String.format("Tablet %02d", (id * 7) % 50), 10);
+        }
+
+        List<ProductSuggestion> suggestions = productNameIndex.suggest("tablet", 50);
+        assertEquals(50, suggestions.size());
+        for (int i = 0; i < suggestions.size(); i++) {
+            assertEquals(String.format("Tablet %02d", i), suggestions.get(i).getName());
+        }
+
+        Medicine medicine = medicine(51, "Tablet 50", 10);
+        ProductInventory before = ProductInventory.of(medicine);
+        medicine.setPrice(2.0);
+        productNameIndex.onProductChanged(ProductChangedEvent.updated(before, medicine));
+        assertEquals(List.of(51), suggestedIds("tablet 5", 10));
+    }
+
+    // Test the quantity follows dispenses and receipts, is kept by edits that do
+    // not change it and is not changed by compactions
+    @Test
+    void testSuggest_TracksAvailableQuantity() {
+        Medicine medicine = medicine(1, "Bandage", 10);
+
+        productNameIndex.addQuantity(1, -4);
+        productNameIndex.addQuantity(1, 7);
+        assertEquals(13, productNameIndex.suggest("band", 1).get(0).getQuantity());
+
+        // A price edit carries the stored quantity, which misses the movements
+        ProductInventory before = ProductInventory.of(medicine);
+        medicine.setPrice(2.0);
+        productNameIndex.onProductChanged(ProductChangedEvent.updated(before, medicine));
+        assertEquals(13, productNameIndex.suggest("band", 1).get(0).getQuantity());
+
+        productNameIndex.onProductChanged(ProductChangedEvent.quantityChanged(ProductInventory.of(medicine), 3));
+        assertEquals(13, productNameIndex.suggest("band", 1).get(0).getQuantity());
+
+        // A quantity edit folds the movements in and sets the available quantity
+        medicine.setQuantity(20);
+        productNameIndex.onProductChanged(ProductChangedEvent.updated(before, medicine));
+        assertEquals(20, productNameIndex.suggest("band", 1).get(0).getQuantity());
+    }
+
+    // Test a dispense made in a transaction changes the quantity only once the
+    // transaction commits, and not at all when it rolls back
+    @Test
+    void testAddQuantity_AppliedOnCommit() {
+        medicine(1, "Gauze", 10);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            productNameIndex.addQuantity(1, -3);
+            assertEquals(10, productNameIndex.suggest("gauze", 1).get(0).getQuantity());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(7, productNameIndex.suggest("gauze", 1).get(0).getQuantity());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            productNameIndex.addQuantity(1, -5);
+            TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertEquals(7, productNameIndex.suggest("gauze", 1).get(0).getQuantity());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
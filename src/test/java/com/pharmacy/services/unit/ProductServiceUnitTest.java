@@ -3,19 +3,41 @@ package com.pharmacy.services.unit;
 import org.mockito.Mock;
 import org.mockito.InjectMocks;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import org.springframework.data.domain.Limit;
 import org.springframework.boot.test.context.SpringBootTest;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.List;
 import java.util.Arrays;
 import java.util.Collection;
 
 import com.pharmacy.models.Product;
+import com.pharmacy.models.KeysetPage;
+import com.pharmacy.models.StockLevel;
+import com.pharmacy.models.ProductInventory;
 import com.pharmacy.models.Supplier;
+import com.pharmacy.models.StockMovementReason;
 import com.pharmacy.repositories.ProductRepository;
+import com.pharmacy.repositories.ProductInventoryRepository;
+import com.pharmacy.services.servicesImplementation.StockLedger;
+import com.pharmacy.services.servicesImplementation.LowStockTracker;
+import com.pharmacy.services.servicesImplementation.InventoryValuationTracker;
+import com.pharmacy.services.servicesImplementation.InventoryDashboard;
+import com.pharmacy.services.servicesImplementation.ProductSearchIndex;
+import com.pharmacy.services.servicesImplementation.ProductNameIndex;
 import com.pharmacy.services.servicesImplementation.ProductServiceImpl;
 
 @SpringBootTest
@@ -23,9 +45,39 @@ class ProductServiceUnitTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private ProductInventoryRepository productInventoryRepository;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private LowStockTracker lowStockTracker;
+
+    @Mock
+    private InventoryValuationTracker inventoryValuationTracker;
+
+    @Mock
+    private InventoryDashboard inventoryDashboard;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private ProductNameIndex productNameIndex;
+
     @InjectMocks
     private ProductServiceImpl productService;
 
+    // Return the inventory rows as they are, no stock movements are pending, and
+    // run the actions given the stock lock of a product
+    @BeforeEach
+    void setUp() {
+        when(stockLedger.withPendingDeltas(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(stockLedger.withLock(anyInt(), any()))
+                .thenAnswer(invocation -> ((java.util.function.Supplier<?>) invocation.getArgument(1)).get());
+    }
+
     // Mock subclass of Product class
     private class ProductMock extends Product {
         // Default constructor
@@ -43,6 +95,12 @@ class ProductServiceUnitTest {
         public String getProductType() {
             return "TestProduct";
         }
+
+        // Get the natural key for the mock product
+        @Override
+        public String getNaturalKey() {
+            return naturalKey("TestProduct", name);
+        }
     }
 
     // Test the service to construct a product object and verify the data
@@ -97,6 +155,55 @@ class ProductServiceUnitTest {
         verify(productRepository, times(1)).findAll();
     }
 
+    // Helper method to create an inventory row with the given id and name
+    private ProductInventory inventoryRow(int id, String name) {
+        return new ProductInventory(id, name, "Medicine", 10, 20.0, 1, "Supplier");
+    }
+
+    // Test the service to get a page of the product inventory after a given id
+    @Test
+    void testGetProductsPage_AfterCursor() {
+        when(productInventoryRepository.findByIdGreaterThanOrderByIdAsc(10, Limit.of(11)))
+                .thenReturn(List.of(inventoryRow(11, "Product1"), inventoryRow(12, "Product2")));
+
+        // Call the getProductsPage method
+        KeysetPage<ProductInventory> page = productService.getProductsPage(10, null, 10);
+
+        // Verify the page contains both products and is the last page
+        assertEquals(2, page.getContent().size());
+        assertEquals(11, page.getFirstId());
+        assertEquals(12, page.getLastId());
+        assertTrue(page.isHasPrevious());
+        assertFalse(page.isHasNext());
+    }
+
+    // Test the service to clamp the page size to the maximum
+    @Test
+    void testGetProductsPage_ClampsSize() {
+        when(productInventoryRepository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(KeysetPage.MAX_SIZE + 1)))
+                .thenReturn(List.of());
+
+        KeysetPage<ProductInventory> page = productService.getProductsPage(null, null, 10_000);
+
+        assertEquals(KeysetPage.MAX_SIZE, page.getSize());
+        verify(productInventoryRepository, times(1))
+                .findByIdGreaterThanOrderByIdAsc(0, Limit.of(KeysetPage.MAX_SIZE + 1));
+    }
+
+    // Test the service to search the product inventory in the order ranked by
+    // the search index, skipping ids deleted since
+    @Test
+    void testSearchProducts() {
+        ProductInventory aspirin = inventoryRow(2, "Aspirin");
+        ProductInventory paracetamol = inventoryRow(1, "Paracetamol");
+        when(productSearchIndex.search("A", null, 20)).thenReturn(List.of(2, 3, 1));
+        when(productInventoryRepository.findByIdIn(List.of(2, 3, 1))).thenReturn(List.of(paracetamol, aspirin));
+
+        List<ProductInventory> products = productService.searchProducts("A", 20);
+
+        assertEquals(List.of(aspirin, paracetamol), products);
+    }
+
     // Test the service to get products by supplier id
     @Test
     void testGetProductsBySupplierId() {
@@ -117,4 +224,54 @@ class ProductServiceUnitTest {
         assertEquals(2, products.size());
         verify(productRepository, times(1)).findBySupplierId(supplierId);
     }
+
+    // Test the service to dispense from the quantity in stock including the
+    // pending stock movements, checked by the ledger
+    @Test
+    void testDispense_Success() {
+        StockLevel level = new StockLevel(8, 6);
+        when(stockLedger.take(1, 3, StockMovementReason.DISPENSE)).thenReturn(level);
+
+        assertEquals(5, productService.dispense(1, 3));
+
+        verify(stockLedger, times(1)).withLock(eq(1), any());
+        verify(stockLedger, never()).append(anyInt(), anyInt(), any());
+        verify(lowStockTracker, times(1)).onStockChanged(1, level, 5);
+        verify(productNameIndex, times(1)).addQuantity(1, -3);
+    }
+
+    // Test the service to refuse dispensing more than is in stock
+    @Test
+    void testDispense_NotEnoughStock() {
+        when(stockLedger.take(1, 3, StockMovementReason.DISPENSE)).thenReturn(new StockLevel(2, 0));
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> productService.dispense(1, 3));
+
+        assertEquals("Not enough stock, only 2 left", exception.getMessage());
+        verify(lowStockTracker, never()).onStockChanged(anyInt(), any(), anyInt());
+        verify(productNameIndex, never()).addQuantity(anyInt(), anyInt());
+    }
+
+    // Test the service to receive stock without the stock lock when the product
+    // has no reorder threshold
+    @Test
+    void testReceive_WithoutThreshold() {
+        when(stockLedger.getStockLevel(1)).thenReturn(new StockLevel(8, 0));
+
+        assertEquals(11, productService.receive(1, 3));
+
+        verify(stockLedger, never()).withLock(anyInt(), any());
+        verify(stockLedger, times(1)).append(1, 3, StockMovementReason.RECEIVE);
+        verify(lowStockTracker, never()).onStockChanged(anyInt(), any(), anyInt());
+        verify(productNameIndex, times(1)).addQuantity(1, 3);
+    }
+
+    // Test the service to suggest product names with the limit kept to the
+    // largest page size
+    @Test
+    void testSuggestProducts() {
+        productService.suggestProducts("par", 500);
+
+        verify(productNameIndex, times(1)).suggest("par", KeysetPage.MAX_SIZE);
+    }
 }
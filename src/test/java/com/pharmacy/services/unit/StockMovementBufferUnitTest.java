@@ -0,0 +1,74 @@
+package com.pharmacy.services.unit;
+
+import java.util.List;
+
+import org.mockito.Mock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.pharmacy.models.StockMovementReason;
+import com.pharmacy.services.servicesImplementation.StockMovementBuffer;
+
+@SpringBootTest
+class StockMovementBufferUnitTest {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StockMovementBuffer buffer;
+
+    // Start each test from an empty buffer, the changes are added outside a
+    // transaction so they go into the buffer straight away
+    @BeforeEach
+    void setUp() {
+        buffer = new StockMovementBuffer(jdbcTemplate, transactionManager);
+    }
+
+    // Test the changes added after a failed flush are written without the buffer,
+    // and the buffered ones with the next flush
+    @Test
+    void testAdd_WrittenDirectlyAfterFailedFlush() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Ledger unavailable"))
+                .thenReturn(new int[] { 1 });
+
+        buffer.add(1, 5, StockMovementReason.RECEIVE);
+        assertThrows(DataAccessResourceFailureException.class, () -> buffer.flush());
+
+        buffer.add(2, 3, StockMovementReason.RECEIVE);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+        assertEquals(1, buffer.getStats().getPendingProducts());
+
+        buffer.flush();
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyList());
+        assertEquals(0, buffer.getStats().getPendingProducts());
+        assertEquals(2, buffer.getStats().getChangesWritten());
+    }
+
+    // Test a change is refused, not buffered, while the ledger cannot be written
+    @Test
+    void testAdd_FailsWhileLedgerUnavailable() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Ledger unavailable"));
+
+        buffer.add(1, 5, StockMovementReason.RECEIVE);
+        assertThrows(DataAccessResourceFailureException.class, () -> buffer.flush());
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> buffer.add(2, 3, StockMovementReason.RECEIVE));
+        assertEquals(List.of(1), List.copyOf(buffer.getPendingDeltas(List.of(1, 2)).keySet()));
+    }
+}
@@ -1,7 +1,8 @@
 package com.pharmacy.services.unit;
 
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
-import java.util.Collections;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,6 +10,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.InjectMocks;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.never;
@@ -18,11 +20,16 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
-import com.pharmacy.models.Medicine;
 import com.pharmacy.models.Supplier;
-import com.pharmacy.repositories.ProductRepository;
+import com.pharmacy.models.SupplierPatch;
 import com.pharmacy.repositories.SupplierRepository;
+import com.pharmacy.repositories.ProductInventoryRepository;
+import com.pharmacy.services.servicesImplementation.SupplierCache;
+import com.pharmacy.services.servicesImplementation.InventoryDashboard;
+import com.pharmacy.services.servicesImplementation.ProductSearchIndex;
 import com.pharmacy.services.servicesImplementation.SupplierServiceImpl;
 
 @SpringBootTest
@@ -32,7 +39,16 @@ class SupplierServiceUnitTest {
     private SupplierRepository supplierRepository;
 
     @Mock
-    private ProductRepository productRepository;
+    private ProductInventoryRepository productInventoryRepository;
+
+    @Spy
+    private SupplierCache supplierCache = new SupplierCache();
+
+    @Mock
+    private InventoryDashboard inventoryDashboard;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
 
     @InjectMocks
     private SupplierServiceImpl supplierService;
@@ -51,24 +67,42 @@ class SupplierServiceUnitTest {
     // Test case for creating a new supplier
     @Test
     void testCreateSupplier_Success() {
-        when(supplierRepository.findByName(supplier.getName().trim())).thenReturn(null);
-        when(supplierRepository.findByContact(supplier.getContact())).thenReturn(null);
-
         supplierService.createSupplier(supplier);
 
-        verify(supplierRepository, times(1)).save(supplier);
+        verify(supplierRepository, times(1)).saveAndFlush(supplier);
+        verify(inventoryDashboard, times(1)).invalidate();
     }
 
     // Test case for creating a new supplier with a name that is already used
     @Test
     void testCreateSupplier_NameAlreadyUsed() {
-        when(supplierRepository.findByName(supplier.getName().trim())).thenReturn(new Supplier());
+        Supplier other = new Supplier(supplier.getName(), "0498765432");
+        other.setId(2);
+        when(supplierRepository.findByNameOrContact(supplier.getName(), supplier.getContact()))
+                .thenReturn(List.of(other));
 
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> supplierService.createSupplier(supplier));
 
         assertEquals("Name already used by another supplier", exception.getMessage());
-        verify(supplierRepository, never()).save(any());
+        verify(supplierRepository, never()).saveAndFlush(any());
+    }
+
+    /**
+     * Test case for creating a new supplier when another supplier with the same
+     * phone number is saved at the same time and the unique index rejects it
+     */
+    @Test
+    void testCreateSupplier_ContactUsedConcurrently() {
+        when(supplierRepository.saveAndFlush(supplier)).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new SQLException(
+                        "Unique index or primary key violation: \"PUBLIC.UK_SUPPLIERS_CONTACT ON PUBLIC.SUPPLIERS(CONTACT)\"")));
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> supplierService.createSupplier(supplier));
+
+        assertEquals("Phone number already used by another supplier", exception.getMessage());
+        verify(supplierCache, never()).invalidate();
     }
 
     // Test case for creating a new supplier with an invalid phone number
@@ -79,7 +113,7 @@ class SupplierServiceUnitTest {
                 () -> supplierService.createSupplier(supplier));
 
         assertEquals("Invalid phone number (it must start with 04 followed by 8 digits)", exception.getMessage());
-        verify(supplierRepository, never()).save(any());
+        verify(supplierRepository, never()).saveAndFlush(any());
     }
 
     /**
@@ -89,12 +123,25 @@ class SupplierServiceUnitTest {
     @Test
     void testUpdateSupplier_Success() {
         when(supplierRepository.findById(supplier.getId())).thenReturn(Optional.of(supplier));
-        when(supplierRepository.findByName(supplier.getName().trim())).thenReturn(null);
-        when(supplierRepository.findByContact(supplier.getContact())).thenReturn(null);
 
         supplierService.updateSupplier(supplier);
 
-        verify(supplierRepository, times(1)).save(supplier);
+        verify(supplierRepository, times(1)).saveAndFlush(supplier);
+    }
+
+    // Test case for updating a supplier from an older version of it
+    @Test
+    void testUpdateSupplier_StaleVersion() {
+        Supplier stored = new Supplier("Chemist Pharma", "0412345678");
+        stored.setId(1);
+        stored.setVersion(2);
+        when(supplierRepository.findById(supplier.getId())).thenReturn(Optional.of(stored));
+
+        RuntimeException exception = assertThrows(OptimisticLockingFailureException.class,
+                () -> supplierService.updateSupplier(supplier));
+
+        assertEquals("The supplier was changed by someone else, reload it and try again", exception.getMessage());
+        verify(supplierRepository, never()).saveAndFlush(any());
     }
 
     // Test case for updating a supplier with a name that is already used
@@ -106,18 +153,49 @@ class SupplierServiceUnitTest {
                 () -> supplierService.updateSupplier(supplier));
 
         assertEquals("Supplier does not exist", exception.getMessage());
-        verify(supplierRepository, never()).save(any());
+        verify(supplierRepository, never()).saveAndFlush(any());
+    }
+
+    // Test case for renaming a supplier with a patch, the phone number is kept
+    @Test
+    void testPatchSupplier_Name() {
+        when(supplierRepository.findById(supplier.getId())).thenReturn(Optional.of(supplier));
+
+        SupplierPatch patch = new SupplierPatch();
+        patch.setName(" Chemist Pharma Group ");
+        Supplier patched = supplierService.patchSupplier(supplier.getId(), 0, patch);
+
+        assertEquals("Chemist Pharma Group", patched.getName());
+        assertEquals("0412345678", patched.getContact());
+        verify(supplierRepository, times(1)).saveAndFlush(supplier);
+        verify(productInventoryRepository, times(1)).renameSupplier(supplier.getId(), "Chemist Pharma Group");
+    }
+
+    // Test case for patching a supplier with an invalid phone number
+    @Test
+    void testPatchSupplier_InvalidPhoneNumber() {
+        when(supplierRepository.findById(supplier.getId())).thenReturn(Optional.of(supplier));
+
+        SupplierPatch patch = new SupplierPatch();
+        patch.setContact("123");
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> supplierService.patchSupplier(supplier.getId(), 0, patch));
+
+        assertEquals("Invalid phone number (it must start with 04 followed by 8 digits)", exception.getMessage());
+        assertEquals("0412345678", supplier.getContact());
+        verify(supplierRepository, never()).saveAndFlush(any());
     }
 
     // Test case for updating a supplier with a name that is already used
     @Test
     void testDeleteSupplier_Success() {
         when(supplierRepository.findById(supplier.getId())).thenReturn(Optional.of(supplier));
-        when(productRepository.findBySupplierId(supplier.getId())).thenReturn(Collections.emptyList());
+        when(supplierRepository.findProductCount(supplier.getId())).thenReturn(0);
 
         supplierService.deleteSupplier(supplier.getId());
 
         verify(supplierRepository, times(1)).deleteById(supplier.getId());
+        verify(inventoryDashboard, times(1)).invalidate();
     }
 
     // Test case for deleting a supplier that does not exist
@@ -136,9 +214,7 @@ class SupplierServiceUnitTest {
     @Test
     void testDeleteSupplier_HasAssociatedProducts() {
         when(supplierRepository.findById(supplier.getId())).thenReturn(Optional.of(supplier));
-        // Now using Medicine instead of Product
-        when(productRepository.findBySupplierId(supplier.getId()))
-                .thenReturn(Collections.singletonList(new Medicine()));
+        when(supplierRepository.findProductCount(supplier.getId())).thenReturn(2);
 
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> supplierService.deleteSupplier(supplier.getId()));
@@ -146,4 +222,32 @@ class SupplierServiceUnitTest {
         assertEquals("Supplier has associated products", exception.getMessage());
         verify(supplierRepository, never()).deleteById(anyInt());
     }
-}
\ No newline at end of file
+
+    // Test case for reading the suppliers from the cache after the first load
+    @Test
+    void testGetAllSuppliers_CachedAfterFirstLoad() {
+        when(supplierRepository.findAll()).thenReturn(List.of(supplier));
+
+        supplierService.getAllSuppliers();
+        assertEquals("Chemist Pharma", supplierService.getAllSuppliers().iterator().next().getName());
+
+        verify(supplierRepository, times(1)).findAll();
+        assertEquals(1, supplierCache.getHits());
+        assertEquals(1, supplierCache.getMisses());
+    }
+
+    // Test case for reloading the suppliers after a supplier is created
+    @Test
+    void testCreateSupplier_InvalidatesSupplierCache() {
+        when(supplierRepository.findAll()).thenReturn(List.of(supplier));
+        supplierService.getAllSuppliers();
+
+        Supplier newSupplier = new Supplier("New Pharma", "0487654321");
+        supplierService.createSupplier(newSupplier);
+        supplierService.getAllSuppliers();
+
+        verify(supplierRepository, times(2)).findAll();
+        assertEquals(0, supplierCache.getHits());
+        assertEquals(2, supplierCache.getMisses());
+    }
+}